@@ -2,22 +2,85 @@ package com.amadeodlp.canalradionov.app.config;
 
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.support.SimpleCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Configuration
 @EnableCaching
 public class CacheConfig {
-
+    
+    private final Environment environment;
+    
+    public CacheConfig(Environment environment) {
+        this.environment = environment;
+    }
+    
+    /**
+     * Each cache is bounded and expires on its own schedule, configured under app.cache.{name}.
+     * Entries past their TTL are served stale while one background refresh runs.
+     */
     @Bean
-    public CacheManager cacheManager() {
-        ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager(
-                "radioBrowser", 
-                "radioGenres", 
-                "radioCountries", 
-                "lastFm"
-        );
+    public CacheManager cacheManager(ExecutorService cacheRefreshExecutor) {
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(List.of(
+                cache("radioBrowser", Duration.ofMinutes(10), Duration.ofHours(1), 200_000, cacheRefreshExecutor),
+                cache("radioGenres", Duration.ofHours(24), Duration.ofDays(7), 50_000, cacheRefreshExecutor),
+                cache("radioCountries", Duration.ofHours(24), Duration.ofDays(7), 5_000, cacheRefreshExecutor),
+                cache("lastFm", Duration.ofHours(24), Duration.ofDays(7), 100_000, cacheRefreshExecutor),
+                // Wiki bodies, written by LastFmService alongside the compact tracks in lastFm and kept as long;
+                // weighed by KB, so this holds about as many tracks as lastFm at typical wiki lengths
+                cache("lastFmWiki", Duration.ofHours(24), Duration.ofDays(7), 150_000, cacheRefreshExecutor),
+                // Written directly by StreamUrlResolver, so plain expiry with no stale window
+                cache("radioStreams", Duration.ofHours(1), Duration.ZERO, 50_000, cacheRefreshExecutor),
+                // Written directly by NowPlayingService; titles change with every song
+                cache("radioNowPlaying", Duration.ofSeconds(20), Duration.ZERO, 20_000, cacheRefreshExecutor)
+        ));
         return cacheManager;
     }
+    
+    /**
+     * Small pool for stale-while-revalidate refreshes. When it is full, the stale value
+     * keeps being served and a later read tries again.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService cacheRefreshExecutor() {
+        int workers = environment.getProperty("app.cache.refresh-workers", Integer.class, 4);
+        AtomicInteger threadCount = new AtomicInteger();
+        
+        return new ThreadPoolExecutor(
+                workers,
+                workers,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(environment.getProperty("app.cache.refresh-queue-capacity", Integer.class, 100)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "cache-refresh-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+    
+    private StaleWhileRevalidateCache cache(String name, Duration ttl, Duration staleWindow, long maxWeight,
+                                            ExecutorService refreshExecutor) {
+        String prefix = "app.cache." + name + ".";
+        return new StaleWhileRevalidateCache(
+                name,
+                Duration.ofSeconds(environment.getProperty(prefix + "ttl-seconds", Long.class, ttl.getSeconds())),
+                Duration.ofSeconds(environment.getProperty(prefix + "stale-seconds", Long.class, staleWindow.getSeconds())),
+                environment.getProperty(prefix + "max-weight", Long.class, maxWeight),
+                refreshExecutor
+        );
+    }
 }
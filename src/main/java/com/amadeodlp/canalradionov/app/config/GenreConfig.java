@@ -0,0 +1,44 @@
+package com.amadeodlp.canalradionov.app.config;
+
+import com.amadeodlp.canalradionov.core.services.radio.GenreClassifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.env.Environment;
+
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+public class GenreConfig {
+    private static final Logger LOG = LoggerFactory.getLogger(GenreConfig.class);
+    
+    private static final Bindable<Map<String, List<String>>> TAXONOMY = Bindable.of(ResolvableType.forClassWithGenerics(
+            Map.class, ResolvableType.forClass(String.class), ResolvableType.forClassWithGenerics(List.class, String.class)));
+    
+    /**
+     * Genre taxonomy from app.radio.genres.taxonomy (canonical genre to keywords) and
+     * app.radio.genres.parents (genre to parent genre), or the built-in one if none is configured
+     */
+    @Bean
+    public GenreClassifier genreClassifier(Environment environment) {
+        Binder binder = Binder.get(environment);
+        Map<String, List<String>> taxonomy = binder
+                .bind("app.radio.genres.taxonomy", TAXONOMY)
+                .orElse(Map.of());
+        if (taxonomy.isEmpty()) {
+            return GenreClassifier.defaults();
+        }
+        
+        Map<String, String> parents = binder
+                .bind("app.radio.genres.parents", Bindable.mapOf(String.class, String.class))
+                .orElse(Map.of());
+        
+        LOG.info("Compiling genre taxonomy with {} genres", taxonomy.size());
+        return GenreClassifier.compile(taxonomy, parents);
+    }
+}
@@ -1,20 +1,93 @@
 package com.amadeodlp.canalradionov.app.config;
 
+import com.amadeodlp.canalradionov.app.config.http.GzipResponseInterceptor;
+import com.amadeodlp.canalradionov.app.config.http.PerHostLimitInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
 import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * One outbound client per upstream, each on its own JDK HttpClient so pools and limits are
+ * sized separately. The JDK client keeps connections alive and negotiates HTTP/2 over TLS where
+ * the server offers it. Settings live under app.http.{upstream}; request metrics come from the
+ * Boot-provided builder as http.client.requests.
+ */
 @Configuration
 public class RestTemplateConfig {
-
+    
+    private final Environment environment;
+    private final RestTemplateBuilder restTemplateBuilder;
+    private final MeterRegistry meterRegistry;
+    
+    public RestTemplateConfig(Environment environment, RestTemplateBuilder restTemplateBuilder, MeterRegistry meterRegistry) {
+        this.environment = environment;
+        this.restTemplateBuilder = restTemplateBuilder;
+        this.meterRegistry = meterRegistry;
+    }
+    
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplateBuilder()
-                .setConnectTimeout(Duration.ofSeconds(5))
-                .setReadTimeout(Duration.ofSeconds(10))
+    public RestTemplate radioBrowserRestTemplate(ExecutorService radioBrowserHttpExecutor) {
+        return restTemplate("radio-browser", 16, radioBrowserHttpExecutor);
+    }
+    
+    @Bean
+    public RestTemplate lastFmRestTemplate(ExecutorService lastFmHttpExecutor) {
+        // Last.fm allows a handful of requests per second per key, so a small pool is enough
+        return restTemplate("last-fm", 4, lastFmHttpExecutor);
+    }
+    
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService radioBrowserHttpExecutor() {
+        return httpExecutor("radio-browser");
+    }
+    
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService lastFmHttpExecutor() {
+        return httpExecutor("last-fm");
+    }
+    
+    private RestTemplate restTemplate(String upstream, int defaultMaxPerHost, ExecutorService executor) {
+        String prefix = "app.http." + upstream + ".";
+        
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(environment.getProperty(prefix + "connect-timeout-ms", Long.class, 5000L)))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor)
                 .build();
+        
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient, executor);
+        requestFactory.setReadTimeout(Duration.ofMillis(environment.getProperty(prefix + "read-timeout-ms", Long.class, 10000L)));
+        
+        PerHostLimitInterceptor limiter = new PerHostLimitInterceptor(
+                upstream,
+                environment.getProperty(prefix + "max-connections-per-host", Integer.class, defaultMaxPerHost),
+                Duration.ofMillis(environment.getProperty(prefix + "acquire-timeout-ms", Long.class, 2000L)),
+                meterRegistry
+        );
+        
+        return restTemplateBuilder
+                .requestFactory(() -> requestFactory)
+                .additionalInterceptors(limiter, new GzipResponseInterceptor())
+                .build();
+    }
+    
+    private static ExecutorService httpExecutor(String upstream) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "http-" + upstream + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 }
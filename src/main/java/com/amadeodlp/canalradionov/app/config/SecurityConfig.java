@@ -3,6 +3,7 @@ package com.amadeodlp.canalradionov.app.config;
 import com.amadeodlp.canalradionov.core.auth.JwtAuthFilter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
@@ -31,7 +32,10 @@ public class SecurityConfig {
             .and()
             .csrf().disable()
             .authorizeHttpRequests(auth -> auth
-                .requestMatchers("/login", "/session", "/error", "/actuator/**").permitAll()
+                .requestMatchers("/login", "/session", "/error", "/actuator/health/**").permitAll()
+                .requestMatchers("/actuator/**").hasRole("ADMIN") // Metrics name hosts, caches and traffic
+                .requestMatchers(HttpMethod.POST, "/api/media/shows/*/episodes/*/transcode").hasAnyRole("CREATOR", "ADMIN") // Starts encoder jobs
+                .requestMatchers("/api/media/playback/**").authenticated()
                 .requestMatchers("/api/media/**").permitAll() // Public media endpoints don't require auth
                 .requestMatchers("/api/radio/**").permitAll() // Radio endpoints are publicly accessible
                 .anyRequest().authenticated()
@@ -48,7 +52,8 @@ public class SecurityConfig {
         CorsConfiguration configuration = new CorsConfiguration();
         configuration.setAllowedOrigins(Arrays.asList("http://localhost:3000", "https://canalradionov.com"));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
-        configuration.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type", "X-Requested-With"));
+        configuration.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type", "X-Requested-With", "Range", "If-Range"));
+        configuration.setExposedHeaders(Arrays.asList("Accept-Ranges", "Content-Range", "Content-Length", "ETag"));
         configuration.setAllowCredentials(true);
         
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
@@ -0,0 +1,147 @@
+package com.amadeodlp.canalradionov.app.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Bounded Spring cache with a freshness TTL and a stale window behind it.
+ * Within the TTL an entry is served as is. Past the TTL but within the stale window it is still
+ * served straight away, and one background reload replaces it. Past both it is gone and the next
+ * caller loads it. Size is bounded by weight, where a collection weighs one per element and
+ * text one per KB.
+ * Background reloads only happen for {@code @Cacheable(sync = true)}, which hands over the loader.
+ */
+public class StaleWhileRevalidateCache extends AbstractValueAdaptingCache {
+    private static final Logger LOG = LoggerFactory.getLogger(StaleWhileRevalidateCache.class);
+    
+    private final String name;
+    private final long ttlNanos;
+    private final Cache<Object, Entry> store;
+    private final Executor refreshExecutor;
+    private final Set<Object> refreshing = ConcurrentHashMap.newKeySet();
+    
+    public StaleWhileRevalidateCache(String name, Duration ttl, Duration staleWindow, long maxWeight, Executor refreshExecutor) {
+        super(true);
+        this.name = name;
+        this.ttlNanos = ttl.toNanos();
+        this.refreshExecutor = refreshExecutor;
+        this.store = Caffeine.newBuilder()
+                .expireAfterWrite(ttl.plus(staleWindow))
+                .maximumWeight(maxWeight)
+                .weigher((Object key, Entry entry) -> entry.weight)
+                .build();
+    }
+    
+    @Override
+    public String getName() {
+        return name;
+    }
+    
+    @Override
+    public Object getNativeCache() {
+        return store;
+    }
+    
+    @Override
+    protected Object lookup(Object key) {
+        Entry entry = store.getIfPresent(key);
+        return entry != null ? entry.value : null;
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Entry entry = store.getIfPresent(key);
+        if (entry != null) {
+            if (System.nanoTime() - entry.writtenAt > ttlNanos) {
+                refreshInBackground(key, valueLoader);
+            }
+            return (T) fromStoreValue(entry.value);
+        }
+        
+        // Missing: concurrent callers for the same key wait on a single load
+        Entry loaded = store.get(key, missing -> new Entry(toStoreValue(load(missing, valueLoader))));
+        return (T) fromStoreValue(loaded.value);
+    }
+    
+    @Override
+    public void put(Object key, Object value) {
+        store.put(key, new Entry(toStoreValue(value)));
+    }
+    
+    @Override
+    public void evict(Object key) {
+        store.invalidate(key);
+    }
+    
+    @Override
+    public void clear() {
+        store.invalidateAll();
+    }
+    
+    private void refreshInBackground(Object key, Callable<?> valueLoader) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    put(key, valueLoader.call());
+                } catch (Exception e) {
+                    // Keep serving the stale value until it falls out of the stale window
+                    LOG.warn("Background refresh of {} in cache {} failed: {}", key, name, e.getMessage());
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(key);
+            LOG.debug("Refresh queue full, serving stale {} from cache {}", key, name);
+        }
+    }
+    
+    private static Object load(Object key, Callable<?> valueLoader) {
+        try {
+            return valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+    }
+    
+    private static final class Entry {
+        final Object value;
+        final long writtenAt = System.nanoTime();
+        final int weight;
+        
+        Entry(Object value) {
+            this.value = value;
+            this.weight = weigh(value);
+        }
+        
+        private static int weigh(Object value) {
+            if (value instanceof Collection<?> collection) {
+                return 1 + collection.size();
+            }
+            if (value instanceof Map<?, ?> map) {
+                return 1 + map.size();
+            }
+            if (value instanceof String text) {
+                return 1 + text.length() / 1024;
+            }
+            return 1;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.amadeodlp.canalradionov.app.config.chat;
 
+import com.amadeodlp.canalradionov.core.services.analytics.AnalyticsService;
 import com.amadeodlp.canalradionov.core.services.broadcast.BroadcastService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.context.annotation.Bean;
@@ -15,10 +16,12 @@ public class ChatConfig implements WebSocketConfigurer {
     
     private final BroadcastService broadcastService;
     private final ObjectMapper objectMapper;
+    private final AnalyticsService analyticsService;
     
-    public ChatConfig(BroadcastService broadcastService, ObjectMapper objectMapper) {
+    public ChatConfig(BroadcastService broadcastService, ObjectMapper objectMapper, AnalyticsService analyticsService) {
         this.broadcastService = broadcastService;
         this.objectMapper = objectMapper;
+        this.analyticsService = analyticsService;
     }
     
     @Override
@@ -29,6 +32,6 @@ public class ChatConfig implements WebSocketConfigurer {
     
     @Bean
     public WebSocketHandler chatWebSocketHandler() {
-        return new ChatWebSocketHandler(objectMapper, broadcastService);
+        return new ChatWebSocketHandler(objectMapper, broadcastService, analyticsService);
     }
 }
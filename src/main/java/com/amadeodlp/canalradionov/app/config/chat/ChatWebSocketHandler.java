@@ -1,6 +1,9 @@
 package com.amadeodlp.canalradionov.app.config.chat;
 
+import com.amadeodlp.canalradionov.core.model.analytics.AnalyticsEvent;
+import com.amadeodlp.canalradionov.core.model.analytics.AnalyticsEventType;
 import com.amadeodlp.canalradionov.core.model.broadcast.BroadcastSession;
+import com.amadeodlp.canalradionov.core.services.analytics.AnalyticsService;
 import com.amadeodlp.canalradionov.core.services.broadcast.BroadcastService;
 import com.amadeodlp.canalradionov.core.services.broadcast.BroadcastServiceImpl;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -30,6 +33,7 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
     
     private final ObjectMapper objectMapper;
     private final BroadcastService broadcastService;
+    private final AnalyticsService analyticsService;
     
     // Store active sessions by session ID
     private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
@@ -43,9 +47,11 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
     // Store chat history
     private final Map<String, List<ChatMessage>> chatHistory = new ConcurrentHashMap<>();
     
-    public ChatWebSocketHandler(ObjectMapper objectMapper, BroadcastService broadcastService) {
+    public ChatWebSocketHandler(ObjectMapper objectMapper, BroadcastService broadcastService,
+                                AnalyticsService analyticsService) {
         this.objectMapper = objectMapper;
         this.broadcastService = broadcastService;
+        this.analyticsService = analyticsService;
     }
     
     @Override
@@ -118,6 +124,8 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
         List<WebSocketSession> room = chatRooms.get(broadcastId);
         room.add(session);
         
+        analyticsService.record(AnalyticsEvent.of(AnalyticsEventType.CHAT_JOIN, userId, broadcastId, session.getId()));
+        
         // Send chat history to user
         sendChatHistory(session, broadcastId);
         
@@ -170,6 +178,8 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
             history.add(chatMessage);
         }
         
+        analyticsService.record(AnalyticsEvent.of(AnalyticsEventType.CHAT_MESSAGE, userId, broadcastId, session.getId()));
+        
         // Broadcast to all users in the room
         broadcastMessage(broadcastId, chatMessage);
     }
@@ -190,6 +200,8 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
         
         removeFromChatRoom(broadcastId, session);
         
+        analyticsService.record(AnalyticsEvent.of(AnalyticsEventType.CHAT_LEAVE, userInfo.userId, broadcastId, session.getId()));
+        
         // If this is a listener, update the listener count
         if (!userInfo.isHost && broadcastService instanceof BroadcastServiceImpl) {
             ((BroadcastServiceImpl) broadcastService).removeListener(broadcastId, userInfo.userId);
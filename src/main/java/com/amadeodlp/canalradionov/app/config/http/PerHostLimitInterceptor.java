@@ -0,0 +1,131 @@
+package com.amadeodlp.canalradionov.app.config.http;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Caps concurrent requests per host for one upstream.
+ * The JDK client opens a new connection whenever every pooled one is busy, so the cap is also
+ * the most connections it will hold to a host. A slot is held until the response is closed, since
+ * the connection stays busy while its body is read. Time spent waiting for a slot is recorded as
+ * http.client.pool.wait, and responses open as http.client.pool.in_use, both tagged by upstream and host.
+ */
+public class PerHostLimitInterceptor implements ClientHttpRequestInterceptor {
+    
+    private final String upstream;
+    private final int maxPerHost;
+    private final long acquireTimeoutNanos;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String, HostSlots> hosts = new ConcurrentHashMap<>();
+    
+    public PerHostLimitInterceptor(String upstream, int maxPerHost, Duration acquireTimeout, MeterRegistry meterRegistry) {
+        this.upstream = upstream;
+        this.maxPerHost = maxPerHost;
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+        this.meterRegistry = meterRegistry;
+    }
+    
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        HostSlots slots = hosts.computeIfAbsent(request.getURI().getHost(), this::register);
+        
+        long started = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = slots.permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a connection to " + request.getURI().getHost());
+        } finally {
+            slots.waitTime.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+        
+        if (!acquired) {
+            throw new IOException("No free connection to " + request.getURI().getHost() + " for " + upstream);
+        }
+        
+        try {
+            return new PermitResponse(execution.execute(request, body), slots.permits);
+        } catch (IOException | RuntimeException e) {
+            slots.permits.release();
+            throw e;
+        }
+    }
+    
+    private HostSlots register(String host) {
+        HostSlots slots = new HostSlots(
+                new Semaphore(maxPerHost),
+                Timer.builder("http.client.pool.wait")
+                        .tags("upstream", upstream, "host", host)
+                        .register(meterRegistry)
+        );
+        Gauge.builder("http.client.pool.in_use", slots.permits, permits -> maxPerHost - permits.availablePermits())
+                .tags("upstream", upstream, "host", host)
+                .register(meterRegistry);
+        return slots;
+    }
+    
+    private record HostSlots(Semaphore permits, Timer waitTime) {
+    }
+    
+    // Gives the slot back on close, once and only once
+    private static class PermitResponse implements ClientHttpResponse {
+        private final ClientHttpResponse delegate;
+        private final Semaphore permits;
+        private final AtomicBoolean released = new AtomicBoolean();
+        
+        PermitResponse(ClientHttpResponse delegate, Semaphore permits) {
+            this.delegate = delegate;
+            this.permits = permits;
+        }
+        
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+        
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+        
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+        
+        @Override
+        public InputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+        
+        @Override
+        public void close() {
+            try {
+                delegate.close();
+            } finally {
+                if (released.compareAndSet(false, true)) {
+                    permits.release();
+                }
+            }
+        }
+    }
+}
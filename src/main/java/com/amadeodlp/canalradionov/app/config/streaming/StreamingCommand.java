@@ -0,0 +1,37 @@
+package com.amadeodlp.canalradionov.app.config.streaming;
+
+/**
+ * Typed commands accepted on the streaming socket
+ */
+public sealed interface StreamingCommand {
+    
+    /**
+     * Start playing a media object
+     */
+    record Play(String mediaId) implements StreamingCommand {}
+    
+    /**
+     * Pause the current stream, optionally reporting the client's playback position
+     */
+    record Pause(Long positionMs) implements StreamingCommand {}
+    
+    /**
+     * Resume the paused stream
+     */
+    record Resume(Long positionMs) implements StreamingCommand {}
+    
+    /**
+     * Stop the current stream
+     */
+    record Stop(Long positionMs) implements StreamingCommand {}
+    
+    /**
+     * Keep the session alive, optionally reporting the client's playback position
+     */
+    record Heartbeat(Long positionMs) implements StreamingCommand {}
+    
+    /**
+     * Anything with a missing or unrecognised action
+     */
+    record Unknown(String action) implements StreamingCommand {}
+}
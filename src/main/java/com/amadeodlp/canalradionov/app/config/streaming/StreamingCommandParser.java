@@ -0,0 +1,85 @@
+package com.amadeodlp.canalradionov.app.config.streaming;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Single-pass parser for streaming socket messages.
+ * Reads the Jackson token stream once, picks out the known fields and skips everything else
+ * without building a tree.
+ */
+public class StreamingCommandParser {
+    
+    private final JsonFactory jsonFactory;
+    
+    public StreamingCommandParser(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+    
+    /**
+     * Parse a message into a command
+     * 
+     * @param payload The raw JSON text
+     * @return The command, Unknown when the action is missing or not supported
+     * @throws JsonParseException if the payload is not a JSON object
+     */
+    public StreamingCommand parse(String payload) throws IOException {
+        String action = null;
+        String mediaId = null;
+        Long positionMs = null;
+        
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a JSON object");
+            }
+            
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                
+                switch (field) {
+                    case "action":
+                        action = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                        break;
+                    case "mediaId":
+                        mediaId = value == JsonToken.VALUE_STRING || value == JsonToken.VALUE_NUMBER_INT
+                                ? parser.getText() : null;
+                        break;
+                    case "position":
+                        positionMs = value == JsonToken.VALUE_NUMBER_INT || value == JsonToken.VALUE_NUMBER_FLOAT
+                                ? parser.getValueAsLong() : null;
+                        break;
+                    default:
+                        break;
+                }
+                // Objects and arrays are skipped whole, whichever field holds them
+                parser.skipChildren();
+            }
+        }
+        
+        if (action == null) {
+            return new StreamingCommand.Unknown(null);
+        }
+        
+        switch (action) {
+            case "play":
+                return mediaId == null || mediaId.isEmpty()
+                        ? new StreamingCommand.Unknown(action)
+                        : new StreamingCommand.Play(mediaId);
+            case "pauseStream":
+                return new StreamingCommand.Pause(positionMs);
+            case "resumeStream":
+                return new StreamingCommand.Resume(positionMs);
+            case "stopStream":
+                return new StreamingCommand.Stop(positionMs);
+            case "heartbeat":
+                return new StreamingCommand.Heartbeat(positionMs);
+            default:
+                return new StreamingCommand.Unknown(action);
+        }
+    }
+}
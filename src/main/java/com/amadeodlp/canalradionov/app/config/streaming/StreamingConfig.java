@@ -1,7 +1,15 @@
 package com.amadeodlp.canalradionov.app.config.streaming;
 
+import com.amadeodlp.canalradionov.core.services.analytics.AnalyticsService;
+import com.amadeodlp.canalradionov.core.services.media.MediaDiskCache;
+import com.amadeodlp.canalradionov.core.services.media.MediaObjectIndex;
+import com.amadeodlp.canalradionov.core.services.media.UrlSigningService;
+import com.amadeodlp.canalradionov.core.services.playback.PlaybackSessionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -14,12 +22,21 @@ import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.cloudfront.CloudFrontClient;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.time.Duration;
 
 @Configuration
 @EnableWebSocket
 public class StreamingConfig implements WebSocketConfigurer {
     private static final Logger LOG = LoggerFactory.getLogger(StreamingConfig.class);
     
+    // Resolved lazily: both services depend on the AWS clients defined here
+    private final ObjectProvider<AnalyticsService> analyticsService;
+    private final ObjectProvider<UrlSigningService> urlSigningService;
+    private final PlaybackSessionService playbackSessionService;
+    private final ObjectMapper objectMapper;
+    
     @Value("${AWS_REGION:us-east-1}")
     private String awsRegion;
     
@@ -35,8 +52,33 @@ public class StreamingConfig implements WebSocketConfigurer {
     @Value("${app.media.bucket-name:canal-radio-nov-media}")
     private String mediaBucketName;
     
-    @Value("${app.media.cloudfront-domain:}")
-    private String cloudfrontDomain;
+    @Value("${app.media.disk-cache.dir:${java.io.tmpdir}/canalradionov-media}")
+    private String diskCacheDir;
+    
+    @Value("${app.media.disk-cache.max-bytes:10737418240}")
+    private long diskCacheMaxBytes;
+    
+    @Value("${app.media.index.ttl-seconds:300}")
+    private long indexTtlSeconds;
+    
+    @Value("${app.media.index.negative-ttl-seconds:30}")
+    private long indexNegativeTtlSeconds;
+    
+    @Value("${app.media.index.max-entries:100000}")
+    private int indexMaxEntries;
+    
+    @Value("${app.media.index.listing-prefix:media/}")
+    private String indexListingPrefix;
+    
+    public StreamingConfig(ObjectProvider<AnalyticsService> analyticsService,
+                           ObjectProvider<UrlSigningService> urlSigningService,
+                           PlaybackSessionService playbackSessionService,
+                           ObjectMapper objectMapper) {
+        this.analyticsService = analyticsService;
+        this.urlSigningService = urlSigningService;
+        this.playbackSessionService = playbackSessionService;
+        this.objectMapper = objectMapper;
+    }
     
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
@@ -46,7 +88,37 @@ public class StreamingConfig implements WebSocketConfigurer {
     
     @Bean
     public WebSocketHandler streamingWebSocketHandler() {
-        return new StreamingWebSocketHandler(s3Client(), cloudfrontDomain, mediaBucketName);
+        return new StreamingWebSocketHandler(
+                mediaObjectIndex(),
+                analyticsService.getObject(),
+                urlSigningService.getObject(),
+                playbackSessionService,
+                objectMapper
+        );
+    }
+    
+    @Bean
+    public MediaObjectIndex mediaObjectIndex() {
+        return new MediaObjectIndex(
+                s3Client(),
+                mediaBucketName,
+                indexListingPrefix,
+                Duration.ofSeconds(indexTtlSeconds),
+                Duration.ofSeconds(indexNegativeTtlSeconds),
+                indexMaxEntries
+        );
+    }
+    
+    @Bean
+    public MediaDiskCache mediaDiskCache(MeterRegistry meterRegistry) {
+        return new MediaDiskCache(
+                s3Client(),
+                mediaObjectIndex(),
+                mediaBucketName,
+                diskCacheDir,
+                diskCacheMaxBytes,
+                meterRegistry
+        );
     }
     
     @Bean
@@ -67,6 +139,20 @@ public class StreamingConfig implements WebSocketConfigurer {
                 .build();
     }
     
+    @Bean
+    public S3Presigner s3Presigner() {
+        AwsSessionCredentials credentials = AwsSessionCredentials.create(
+                accessKey,
+                secretKey,
+                sessionToken
+        );
+        
+        return S3Presigner.builder()
+                .region(Region.of(awsRegion))
+                .credentialsProvider(StaticCredentialsProvider.create(credentials))
+                .build();
+    }
+    
     @Bean
     public CloudFrontClient cloudFrontClient() {
         if (accessKey.equals("default-key") || secretKey.equals("default-secret")) {
@@ -1,37 +1,63 @@
 package com.amadeodlp.canalradionov.app.config.streaming;
 
+import com.amadeodlp.canalradionov.core.model.analytics.AnalyticsEvent;
+import com.amadeodlp.canalradionov.core.model.analytics.AnalyticsEventType;
+import com.amadeodlp.canalradionov.core.model.media.MediaObjectInfo;
+import com.amadeodlp.canalradionov.core.model.playback.PlaybackSession;
+import com.amadeodlp.canalradionov.core.services.analytics.AnalyticsService;
+import com.amadeodlp.canalradionov.core.services.media.MediaObjectIndex;
+import com.amadeodlp.canalradionov.core.services.media.UrlSigningService;
+import com.amadeodlp.canalradionov.core.services.playback.PlaybackSessionService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
-import java.time.Duration;
-import java.time.Instant;
+import java.security.Principal;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 public class StreamingWebSocketHandler extends TextWebSocketHandler {
     private static final Logger LOG = LoggerFactory.getLogger(StreamingWebSocketHandler.class);
     
-    private final S3Client s3Client;
-    private final String cloudfrontDomain;
-    private final String bucketName;
+    private static final Pattern SAFE_MEDIA_ID = Pattern.compile("[A-Za-z0-9_-]+");
+    
+    private final MediaObjectIndex mediaObjectIndex;
+    private final AnalyticsService analyticsService;
+    private final UrlSigningService urlSigningService;
+    private final PlaybackSessionService playbackSessionService;
+    private final ObjectMapper objectMapper;
+    private final StreamingCommandParser commandParser;
     private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
     
-    public StreamingWebSocketHandler(S3Client s3Client, String cloudfrontDomain, String bucketName) {
-        this.s3Client = s3Client;
-        this.cloudfrontDomain = cloudfrontDomain;
-        this.bucketName = bucketName;
+    // Dispatch table from command type to handler
+    private final Map<Class<? extends StreamingCommand>, CommandHandler<? extends StreamingCommand>> handlers = new HashMap<>();
+    
+    public StreamingWebSocketHandler(MediaObjectIndex mediaObjectIndex, AnalyticsService analyticsService,
+                                     UrlSigningService urlSigningService, PlaybackSessionService playbackSessionService,
+                                     ObjectMapper objectMapper) {
+        this.mediaObjectIndex = mediaObjectIndex;
+        this.analyticsService = analyticsService;
+        this.urlSigningService = urlSigningService;
+        this.playbackSessionService = playbackSessionService;
+        this.objectMapper = objectMapper;
+        this.commandParser = new StreamingCommandParser(objectMapper.getFactory());
+        
+        register(StreamingCommand.Play.class, this::handlePlay);
+        register(StreamingCommand.Pause.class, this::handlePause);
+        register(StreamingCommand.Resume.class, this::handleResume);
+        register(StreamingCommand.Stop.class, this::handleStop);
+        register(StreamingCommand.Heartbeat.class, this::handleHeartbeat);
+        register(StreamingCommand.Unknown.class, (session, command) -> sendError(session, "Unknown action"));
     }
     
     @Override
@@ -43,100 +69,138 @@ public class StreamingWebSocketHandler extends TextWebSocketHandler {
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws IOException {
         String payload = message.getPayload();
-        LOG.info("Received message from session {}: {}", session.getId(), payload);
+        LOG.debug("Received message from session {}: {}", session.getId(), payload);
         
-        // Example: Parse the payload as JSON to determine what action to take
-        // This is a simplified example; you would typically use a proper JSON library
-        if (payload.contains("\"action\":\"play\"")) {
-            String mediaId = extractMediaId(payload);
-            sendMediaStreamInfo(session, mediaId);
-        } else if (payload.contains("\"action\":\"pauseStream\"")) {
-            // Handle pause action
-            session.sendMessage(new TextMessage("{\"status\":\"paused\"}"));
-        } else if (payload.contains("\"action\":\"resumeStream\"")) {
-            // Handle resume action
-            session.sendMessage(new TextMessage("{\"status\":\"resumed\"}"));
-        } else if (payload.contains("\"action\":\"stopStream\"")) {
-            // Handle stop action
-            session.sendMessage(new TextMessage("{\"status\":\"stopped\"}"));
-        } else {
-            session.sendMessage(new TextMessage("{\"error\":\"Unknown action\"}"));
+        StreamingCommand command;
+        try {
+            command = commandParser.parse(payload);
+        } catch (JsonProcessingException e) {
+            sendError(session, "Invalid message");
+            return;
         }
+        
+        dispatch(session, command);
     }
     
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
         LOG.info("WebSocket connection closed: {} with status {}", session.getId(), status);
         sessions.remove(session.getId());
+        playbackSessionService.close(session.getId());
+    }
+    
+    private void handlePlay(WebSocketSession session, StreamingCommand.Play command) throws IOException {
+        if (!SAFE_MEDIA_ID.matcher(command.mediaId()).matches()) {
+            sendError(session, "Invalid media ID");
+            return;
+        }
+        
+        sendMediaStreamInfo(session, command.mediaId());
     }
     
-    private String extractMediaId(String payload) {
-        // Simplified extraction, you would use proper JSON parsing in production
-        int startIdx = payload.indexOf("\"mediaId\":\"") + 11;
-        int endIdx = payload.indexOf("\"", startIdx);
-        return payload.substring(startIdx, endIdx);
+    private void handlePause(WebSocketSession session, StreamingCommand.Pause command) throws IOException {
+        try {
+            sendStatus(session, "paused", playbackSessionService.pause(session.getId(), command.positionMs()));
+        } catch (IllegalStateException e) {
+            sendError(session, e.getMessage());
+        }
     }
     
+    private void handleResume(WebSocketSession session, StreamingCommand.Resume command) throws IOException {
+        try {
+            sendStatus(session, "resumed", playbackSessionService.resume(session.getId(), command.positionMs()));
+        } catch (IllegalStateException e) {
+            sendError(session, e.getMessage());
+        }
+    }
+    
+    private void handleStop(WebSocketSession session, StreamingCommand.Stop command) throws IOException {
+        try {
+            sendStatus(session, "stopped", playbackSessionService.stop(session.getId(), command.positionMs()));
+        } catch (IllegalStateException e) {
+            sendError(session, e.getMessage());
+        }
+    }
+    
+    private void handleHeartbeat(WebSocketSession session, StreamingCommand.Heartbeat command) throws IOException {
+        try {
+            // Heartbeats are frequent, so they are not acknowledged
+            playbackSessionService.heartbeat(session.getId(), command.positionMs());
+        } catch (IllegalStateException e) {
+            sendError(session, e.getMessage());
+        }
+    }
+    
+    /**
+     * Reply with the stream URL for a media object and start a playback session for it
+     */
     private void sendMediaStreamInfo(WebSocketSession session, String mediaId) throws IOException {
         try {
             // In a real implementation, this would fetch the media URL from your database
-            // and potentially sign the URL for secure access
             
             String mediaObjectKey = "media/" + mediaId + ".mp3";
             
-            // Check if the media exists in S3
-            try {
-                s3Client.getObject(GetObjectRequest.builder()
-                        .bucket(bucketName)
-                        .key(mediaObjectKey)
-                        .build());
-            } catch (Exception e) {
-                LOG.error("Media not found: {}", mediaId, e);
-                session.sendMessage(new TextMessage("{\"error\":\"Media not found\"}"));
+            // Check if the media exists, answered from the index without touching S3 on a hit
+            MediaObjectInfo mediaInfo = mediaObjectIndex.lookup(mediaObjectKey);
+            if (!mediaInfo.exists()) {
+                LOG.warn("Media not found: {}", mediaId);
+                sendError(session, "Media not found");
                 return;
             }
             
-            // Generate a streaming URL
-            String streamingUrl;
-            if (cloudfrontDomain != null && !cloudfrontDomain.isEmpty()) {
-                // Use CloudFront if configured
-                streamingUrl = "https://" + cloudfrontDomain + "/" + mediaObjectKey;
-            } else {
-                // Fallback to direct S3 URL
-                streamingUrl = "https://" + bucketName + ".s3." + s3Client.serviceClientConfiguration().region() + ".amazonaws.com/" + mediaObjectKey;
-            }
+            // Generate a streaming URL, signed when private content is enabled
+            String streamingUrl = urlSigningService.getUrl(mediaObjectKey);
             
             // Create a session record to track streaming statistics
             String sessionId = UUID.randomUUID().toString();
-            String sessionData = String.format(
-                    "{\"sessionId\":\"%s\",\"mediaId\":\"%s\",\"userId\":\"%s\",\"startTime\":\"%s\"}",
-                    sessionId,
-                    mediaId,
-                    "user123", // This would come from your authentication system
-                    Instant.now().toString()
-            );
+            Principal principal = session.getPrincipal();
+            String userId = principal != null ? principal.getName() : "anonymous";
+            analyticsService.record(AnalyticsEvent.of(AnalyticsEventType.MEDIA_PLAY, userId, mediaId, sessionId));
             
-            // Store session data in S3 for analytics
-            s3Client.putObject(
-                    PutObjectRequest.builder()
-                            .bucket(bucketName)
-                            .key("analytics/sessions/" + sessionId + ".json")
-                            .contentType("application/json")
-                            .build(),
-                    RequestBody.fromByteBuffer(ByteBuffer.wrap(sessionData.getBytes(StandardCharsets.UTF_8)))
-            );
+            // Picks up where the listener left off, on this or another device
+            PlaybackSession playback = playbackSessionService.play(session.getId(), userId, mediaId, sessionId);
             
             // Send the streaming URL to the client
-            String response = String.format(
-                    "{\"status\":\"ready\",\"streamUrl\":\"%s\",\"sessionId\":\"%s\"}",
-                    streamingUrl,
-                    sessionId
-            );
-            
-            session.sendMessage(new TextMessage(response));
+            ObjectNode response = objectMapper.createObjectNode();
+            response.put("status", "ready");
+            response.put("streamUrl", streamingUrl);
+            response.put("sessionId", sessionId);
+            response.put("resumePosition", playback.positionMs());
+            session.sendMessage(new TextMessage(objectMapper.writeValueAsString(response)));
         } catch (Exception e) {
             LOG.error("Error sending media stream info", e);
-            session.sendMessage(new TextMessage("{\"error\":\"Internal server error\"}"));
+            sendError(session, "Internal server error");
         }
     }
+    
+    private void sendStatus(WebSocketSession session, String status, PlaybackSession playback) throws IOException {
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("status", status);
+        response.put("mediaId", playback.mediaId());
+        response.put("sessionId", playback.sessionId());
+        response.put("position", playback.positionMs());
+        session.sendMessage(new TextMessage(objectMapper.writeValueAsString(response)));
+    }
+    
+    private void sendError(WebSocketSession session, String errorMessage) throws IOException {
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("error", errorMessage);
+        session.sendMessage(new TextMessage(objectMapper.writeValueAsString(response)));
+    }
+    
+    private <T extends StreamingCommand> void register(Class<T> type, CommandHandler<T> handler) {
+        handlers.put(type, handler);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private <T extends StreamingCommand> void dispatch(WebSocketSession session, T command) throws IOException {
+        // Safe: register() only pairs a type with a handler for that same type
+        CommandHandler<T> handler = (CommandHandler<T>) handlers.get(command.getClass());
+        handler.handle(session, command);
+    }
+    
+    @FunctionalInterface
+    private interface CommandHandler<T extends StreamingCommand> {
+        void handle(WebSocketSession session, T command) throws IOException;
+    }
 }
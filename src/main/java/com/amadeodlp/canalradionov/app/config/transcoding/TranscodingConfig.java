@@ -0,0 +1,60 @@
+package com.amadeodlp.canalradionov.app.config.transcoding;
+
+import com.amadeodlp.canalradionov.core.services.transcoding.AudioEncoder;
+import com.amadeodlp.canalradionov.core.services.transcoding.FfmpegAudioEncoder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class TranscodingConfig {
+    
+    @Value("${app.transcoding.workers:2}")
+    private int workers;
+    
+    @Value("${app.transcoding.queue-capacity:50}")
+    private int queueCapacity;
+    
+    @Value("${app.transcoding.encoder-command:ffmpeg}")
+    private String encoderCommand;
+    
+    @Value("${app.transcoding.segment-seconds:6}")
+    private int segmentSeconds;
+    
+    @Value("${app.transcoding.timeout-seconds:1800}")
+    private long timeoutSeconds;
+    
+    /**
+     * Fixed-size pool with a bounded queue. Transcoding never runs on request threads,
+     * and when the queue is full new jobs are rejected instead of piling up.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService transcodingExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        
+        return new ThreadPoolExecutor(
+                workers,
+                workers,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "transcoding-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+    
+    @Bean
+    public AudioEncoder audioEncoder() {
+        return new FfmpegAudioEncoder(encoderCommand, segmentSeconds, timeoutSeconds);
+    }
+}
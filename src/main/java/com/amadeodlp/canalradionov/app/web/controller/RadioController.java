@@ -1,15 +1,29 @@
 package com.amadeodlp.canalradionov.app.web.controller;
 
+import com.amadeodlp.canalradionov.core.exceptions.UpstreamUnavailableException;
 import com.amadeodlp.canalradionov.core.model.lastfm.TrackInfo;
+import com.amadeodlp.canalradionov.core.model.lastfm.TrackQuery;
+import com.amadeodlp.canalradionov.core.model.lastfm.TrackSearchPage;
+import com.amadeodlp.canalradionov.core.model.radio.NowPlaying;
 import com.amadeodlp.canalradionov.core.model.radio.RadioFilter;
 import com.amadeodlp.canalradionov.core.model.radio.RadioStationDto;
-import com.amadeodlp.canalradionov.core.services.radio.LastFmService;
+import com.amadeodlp.canalradionov.core.model.radio.ResolvedStream;
+import com.amadeodlp.canalradionov.core.model.radio.StationFacets;
+import com.amadeodlp.canalradionov.core.model.radio.StationSuggestion;
+import com.amadeodlp.canalradionov.core.services.radio.NowPlayingService;
 import com.amadeodlp.canalradionov.core.services.radio.RadioBrowserService;
+import com.amadeodlp.canalradionov.core.services.radio.StationPlayCounter;
+import com.amadeodlp.canalradionov.core.services.radio.StreamUrlResolver;
+import com.amadeodlp.canalradionov.core.services.radio.TrackInfoResolver;
+import com.amadeodlp.canalradionov.core.services.radio.TrackSearchService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.security.Principal;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,11 +33,21 @@ public class RadioController {
     private static final Logger LOG = LoggerFactory.getLogger(RadioController.class);
     
     private final RadioBrowserService radioBrowserService;
-    private final LastFmService lastFmService;
+    private final StreamUrlResolver streamUrlResolver;
+    private final StationPlayCounter playCounter;
+    private final TrackInfoResolver trackInfoResolver;
+    private final NowPlayingService nowPlayingService;
+    private final TrackSearchService trackSearchService;
     
-    public RadioController(RadioBrowserService radioBrowserService, LastFmService lastFmService) {
+    public RadioController(RadioBrowserService radioBrowserService, StreamUrlResolver streamUrlResolver,
+                           StationPlayCounter playCounter, TrackInfoResolver trackInfoResolver,
+                           NowPlayingService nowPlayingService, TrackSearchService trackSearchService) {
         this.radioBrowserService = radioBrowserService;
-        this.lastFmService = lastFmService;
+        this.streamUrlResolver = streamUrlResolver;
+        this.playCounter = playCounter;
+        this.trackInfoResolver = trackInfoResolver;
+        this.nowPlayingService = nowPlayingService;
+        this.trackSearchService = trackSearchService;
     }
     
     @GetMapping("/stations")
@@ -51,6 +75,48 @@ public class RadioController {
         return ResponseEntity.ok(stations);
     }
     
+    @GetMapping("/stations/facets")
+    public ResponseEntity<StationFacets> getStationFacets(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String country,
+            @RequestParam(required = false) String countryCode,
+            @RequestParam(required = false) List<String> genres,
+            @RequestParam(required = false) String language,
+            @RequestParam(required = false) Boolean musicOnly,
+            @RequestParam(required = false) Boolean onlyOnline,
+            @RequestParam(defaultValue = "50") int facetLimit) {
+        
+        RadioFilter filter = new RadioFilter(
+            name, country, countryCode, genres, language,
+            musicOnly, onlyOnline, null, null, null, null
+        );
+        
+        LOG.info("Getting station facets with filter: {}", filter);
+        StationFacets facets = radioBrowserService.getStationFacets(filter, Math.max(1, Math.min(facetLimit, 500)));
+        
+        if (facets == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        
+        return ResponseEntity.ok(facets);
+    }
+    
+    @GetMapping("/stations/suggest")
+    public ResponseEntity<List<StationSuggestion>> suggestStations(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "10") int limit) {
+        
+        // Called on every keystroke, so not logged at INFO
+        LOG.debug("Suggesting stations for: {}", q);
+        List<StationSuggestion> suggestions = radioBrowserService.suggestStations(q, Math.max(1, Math.min(limit, 50)));
+        
+        if (suggestions == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        
+        return ResponseEntity.ok(suggestions);
+    }
+    
     @GetMapping("/stations/{stationId}")
     public ResponseEntity<RadioStationDto> getStation(@PathVariable String stationId) {
         LOG.info("Getting radio station with ID: {}", stationId);
@@ -64,6 +130,66 @@ public class RadioController {
         return ResponseEntity.ok(station);
     }
     
+    @GetMapping("/stations/{stationId}/stream")
+    public ResponseEntity<ResolvedStream> resolveStream(@PathVariable String stationId) {
+        LOG.info("Resolving stream for station: {}", stationId);
+        
+        ResolvedStream resolved = streamUrlResolver.resolve(stationId);
+        
+        if (resolved == null) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        return ResponseEntity.ok(resolved);
+    }
+    
+    @GetMapping("/stations/{stationId}/now-playing")
+    public ResponseEntity<NowPlaying> getNowPlaying(@PathVariable String stationId) {
+        // Polled by players, so not logged at INFO
+        LOG.debug("Getting now playing for station: {}", stationId);
+        
+        return nowPlayingService.nowPlaying(stationId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+    
+    // Lets the UI resolve a whole page of stations before the user picks one
+    @PostMapping("/stations/resolve")
+    public ResponseEntity<List<ResolvedStream>> resolveStreams(@RequestBody List<String> stationIds) {
+        if (stationIds.size() > streamUrlResolver.maxBatch() || stationIds.contains(null)) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        // Only stations we list; anything else would have us fetch and probe arbitrary IDs for anonymous callers
+        List<String> known = stationIds.stream()
+                .filter(radioBrowserService::isKnownStation)
+                .toList();
+        
+        LOG.info("Resolving streams for {} of {} stations", known.size(), stationIds.size());
+        return ResponseEntity.ok(streamUrlResolver.resolveAll(known));
+    }
+    
+    // Counted in memory and flushed later, so this never waits on the database or upstream
+    @PostMapping("/stations/{stationId}/play")
+    public ResponseEntity<Void> recordPlay(@PathVariable String stationId, Principal principal,
+                                           HttpServletRequest request) {
+        if (!radioBrowserService.isKnownStation(stationId)) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        // Made-up UUIDs pass the check before the first sync, so plays wait for the index
+        if (!radioBrowserService.isIndexedStation(stationId)) {
+            LOG.debug("Station index not loaded, play of {} not counted", stationId);
+            return ResponseEntity.accepted().build();
+        }
+        
+        String listener = principal != null ? principal.getName() : request.getRemoteAddr();
+        if (playCounter.record(stationId, listener)) {
+            LOG.debug("Counted play of station {}", stationId);
+        }
+        return ResponseEntity.accepted().build();
+    }
+    
     @GetMapping("/genres")
     public ResponseEntity<List<String>> getGenres() {
         LOG.info("Getting radio genres");
@@ -89,13 +215,29 @@ public class RadioController {
         
         LOG.info("Getting track info for: {} - {}", artist, track);
         
-        Optional<TrackInfo> trackInfo = lastFmService.getTrackInfo(artist, track);
+        Optional<TrackInfo> trackInfo = trackInfoResolver.resolve(artist, track);
         
         return trackInfo
                 .map(ResponseEntity::ok)
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
     
+    // One entry per query, in order; null where the track is unknown or not resolved in time
+    @PostMapping("/track-info/batch")
+    public ResponseEntity<List<TrackInfo>> getTrackInfos(@RequestBody List<TrackQuery> queries) {
+        if (queries.size() > trackInfoResolver.maxBatch()) {
+            return ResponseEntity.badRequest().build();
+        }
+        for (TrackQuery query : queries) {
+            if (query == null || isBlank(query.artist()) || isBlank(query.track())) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        
+        LOG.info("Getting track info for {} tracks", queries.size());
+        return ResponseEntity.ok(trackInfoResolver.resolveAll(queries));
+    }
+    
     @GetMapping("/track-search")
     public ResponseEntity<List<TrackInfo>> searchTracks(
             @RequestParam String query,
@@ -103,8 +245,33 @@ public class RadioController {
         
         LOG.info("Searching for tracks matching: {}", query);
         
-        List<TrackInfo> results = lastFmService.searchTracks(query, limit);
+        int pageSize = Math.max(1, Math.min(limit, trackSearchService.maxPageSize()));
+        List<TrackInfo> results = trackSearchService.search(query, 1, pageSize).tracks();
         
         return ResponseEntity.ok(results);
     }
+    
+    // For infinite scroll: each page served starts fetching the one after it
+    @GetMapping("/track-search/page")
+    public ResponseEntity<TrackSearchPage> searchTracksPage(
+            @RequestParam String query,
+            @RequestParam(defaultValue = "1") int page,
+            @RequestParam(defaultValue = "20") int pageSize) {
+        
+        LOG.debug("Searching for tracks matching: {} (page {})", query, page);
+        
+        int size = Math.max(1, Math.min(pageSize, trackSearchService.maxPageSize()));
+        int pageNumber = Math.max(1, Math.min(page, trackSearchService.maxPage(size) + 1));
+        return ResponseEntity.ok(trackSearchService.search(query, pageNumber, size));
+    }
+    
+    @ExceptionHandler(UpstreamUnavailableException.class)
+    public ResponseEntity<Void> handleUpstreamUnavailable(UpstreamUnavailableException e) {
+        LOG.warn("Upstream unavailable: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+    }
+    
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
 }
@@ -3,13 +3,21 @@ package com.amadeodlp.canalradionov.app.web.controller.broadcast;
 import com.amadeodlp.canalradionov.core.model.broadcast.ActiveBroadcast;
 import com.amadeodlp.canalradionov.core.model.broadcast.BroadcastRequest;
 import com.amadeodlp.canalradionov.core.model.broadcast.BroadcastSession;
+import com.amadeodlp.canalradionov.core.model.transcoding.BitrateLadder;
 import com.amadeodlp.canalradionov.core.services.broadcast.BroadcastService;
+import com.amadeodlp.canalradionov.core.services.transcoding.TranscodingService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
 
 @RestController
@@ -17,10 +25,15 @@ import java.util.List;
 public class BroadcastController {
     private static final Logger LOG = LoggerFactory.getLogger(BroadcastController.class);
     
+    private static final MediaType HLS_PLAYLIST = MediaType.parseMediaType("application/vnd.apple.mpegurl");
+    private static final MediaType MPEG_TS = MediaType.parseMediaType("video/mp2t");
+    
     private final BroadcastService broadcastService;
+    private final TranscodingService transcodingService;
     
-    public BroadcastController(BroadcastService broadcastService) {
+    public BroadcastController(BroadcastService broadcastService, TranscodingService transcodingService) {
         this.broadcastService = broadcastService;
+        this.transcodingService = transcodingService;
     }
     
     /**
@@ -79,6 +92,49 @@ public class BroadcastController {
         return ResponseEntity.ok(broadcast);
     }
     
+    /**
+     * Get the HLS master playlist of a live broadcast
+     */
+    @GetMapping("/{sessionId}/master.m3u8")
+    public ResponseEntity<String> getMasterPlaylist(
+            @PathVariable String sessionId,
+            @RequestParam(required = false) Integer bandwidth) {
+        
+        LOG.info("Getting master playlist for broadcast: {}", sessionId);
+        
+        BitrateLadder ladder = transcodingService.getBroadcastLadder(sessionId);
+        if (ladder == null || !ladder.isReady()) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        return ResponseEntity.ok()
+                .contentType(HLS_PLAYLIST)
+                .cacheControl(CacheControl.noCache())
+                .body(transcodingService.buildMasterPlaylist(ladder, bandwidth));
+    }
+    
+    /**
+     * Serve a live rendition playlist or segment
+     */
+    @GetMapping("/{sessionId}/hls/{variant}/{fileName}")
+    public ResponseEntity<Resource> getLiveFile(
+            @PathVariable String sessionId,
+            @PathVariable String variant,
+            @PathVariable String fileName) {
+        
+        Path file = transcodingService.resolveLiveFile(sessionId, variant, fileName);
+        if (file == null) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        // Rolling playlists change every segment, segments themselves never change
+        boolean isPlaylist = fileName.endsWith(".m3u8");
+        return ResponseEntity.ok()
+                .contentType(isPlaylist ? HLS_PLAYLIST : MPEG_TS)
+                .cacheControl(isPlaylist ? CacheControl.noCache() : CacheControl.maxAge(Duration.ofMinutes(5)))
+                .body(new FileSystemResource(file));
+    }
+    
     /**
      * Add a co-host to a broadcast
      */
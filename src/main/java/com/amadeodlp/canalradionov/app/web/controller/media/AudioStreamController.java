@@ -0,0 +1,258 @@
+package com.amadeodlp.canalradionov.app.web.controller.media;
+
+import com.amadeodlp.canalradionov.core.model.media.CachedMedia;
+import com.amadeodlp.canalradionov.core.model.media.Episode;
+import com.amadeodlp.canalradionov.core.services.media.MediaDiskCache;
+import com.amadeodlp.canalradionov.core.services.media.MediaService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Pattern;
+
+/**
+ * Serves episode audio with HTTP range and conditional request support.
+ * Files come from the local media disk cache and are written with sendfile when the container supports it,
+ * falling back to FileChannel.transferTo otherwise.
+ */
+@RestController
+@RequestMapping("/api/media")
+public class AudioStreamController {
+    private static final Logger LOG = LoggerFactory.getLogger(AudioStreamController.class);
+    
+    private static final Pattern SAFE_NAME = Pattern.compile("[A-Za-z0-9_.-]+");
+    
+    // Tomcat's sendfile request attributes, see org.apache.catalina.Globals
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    
+    private final MediaDiskCache mediaDiskCache;
+    private final MediaService mediaService;
+    
+    public AudioStreamController(MediaDiskCache mediaDiskCache, MediaService mediaService) {
+        this.mediaDiskCache = mediaDiskCache;
+        this.mediaService = mediaService;
+    }
+    
+    @RequestMapping(value = "/audio/{fileName}", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void streamAudio(
+            @PathVariable String fileName,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        
+        if (!SAFE_NAME.matcher(fileName).matches()) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        
+        stream("audio/" + fileName, request, response);
+    }
+    
+    @RequestMapping(value = "/shows/{showId}/episodes/{episodeId}/audio", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void streamEpisode(
+            @PathVariable String showId,
+            @PathVariable String episodeId,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        
+        Episode episode = mediaService.getEpisode(showId, episodeId);
+        if (episode == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        
+        String audioUrl = episode.audioUrl();
+        stream(audioUrl.startsWith("/") ? audioUrl.substring(1) : audioUrl, request, response);
+    }
+    
+    private void stream(String key, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        CachedMedia media = mediaDiskCache.get(key);
+        if (media == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        
+        // Pinned so eviction cannot delete the file before it is opened
+        try {
+            serve(key, media, request, response);
+        } finally {
+            mediaDiskCache.release(media);
+        }
+    }
+    
+    private void serve(String key, CachedMedia media, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        long length = media.length();
+        String eTag = quote(media.eTag() != null ? media.eTag() : Long.toHexString(length) + "-" + media.lastModified().toEpochMilli());
+        
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, eTag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, media.lastModified().toEpochMilli());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=86400");
+        
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && (ifNoneMatch.equals("*") || ifNoneMatch.contains(eTag))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        
+        long start = 0;
+        long end = length - 1;
+        
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && rangeStillValid(request, eTag, media)) {
+            long[] bounds = parseRange(range, length);
+            if (bounds == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (bounds.length == 2) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+        
+        long count = end - start + 1;
+        response.setContentType(contentType(key));
+        response.setContentLengthLong(count);
+        
+        if ("HEAD".equals(request.getMethod()) || count == 0) {
+            return;
+        }
+        
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // The container writes the file straight from the page cache once the handler returns;
+            // the disk cache keeps it for a grace period after release to cover that hand-off
+            request.setAttribute(SENDFILE_FILENAME, media.file().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            mediaDiskCache.recordServed(count);
+            return;
+        }
+        
+        try (FileChannel channel = FileChannel.open(media.file(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long written = channel.transferTo(position, remaining, out);
+                if (written <= 0) {
+                    break;
+                }
+                position += written;
+                remaining -= written;
+            }
+            mediaDiskCache.recordServed(count - remaining);
+        } catch (IOException e) {
+            // Players drop connections all the time when seeking
+            LOG.debug("Client aborted while streaming {}: {}", key, e.getMessage());
+        }
+    }
+    
+    /**
+     * If-Range: only honour the range when the client's copy is still current
+     */
+    private boolean rangeStillValid(HttpServletRequest request, String eTag, CachedMedia media) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(eTag);
+        }
+        
+        try {
+            long since = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return media.lastModified().toEpochMilli() / 1000 <= since / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Parse a single byte range. Headers that are not a valid single range are ignored, as RFC 9110 allows.
+     * 
+     * @return {start, end} inclusive, an empty array to serve the whole file, or null if unsatisfiable
+     */
+    static long[] parseRange(String header, long length) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            // Multipart ranges are rare for audio; ignoring the header is allowed and serves the full body
+            return new long[0];
+        }
+        
+        String spec = header.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        
+        try {
+            long start;
+            long end;
+            if (dash == 0) {
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix == 0) {
+                    return null;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                if (dash == spec.length() - 1) {
+                    end = length - 1;
+                } else {
+                    long last = Long.parseLong(spec.substring(dash + 1));
+                    if (last < start) {
+                        // A backwards range is invalid rather than unsatisfiable, so the header is ignored
+                        return new long[0];
+                    }
+                    end = Math.min(last, length - 1);
+                }
+            }
+            
+            if (start >= length) {
+                return null;
+            }
+            return new long[] {start, end};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+    
+    private static String quote(String eTag) {
+        return eTag.startsWith("\"") ? eTag : "\"" + eTag + "\"";
+    }
+    
+    private static String contentType(String key) {
+        if (key.endsWith(".mp3")) {
+            return "audio/mpeg";
+        }
+        if (key.endsWith(".aac")) {
+            return "audio/aac";
+        }
+        if (key.endsWith(".m4a")) {
+            return "audio/mp4";
+        }
+        if (key.endsWith(".ogg")) {
+            return "audio/ogg";
+        }
+        return "application/octet-stream";
+    }
+}
@@ -2,22 +2,36 @@ package com.amadeodlp.canalradionov.app.web.controller.media;
 
 import com.amadeodlp.canalradionov.core.model.media.Episode;
 import com.amadeodlp.canalradionov.core.model.media.RadioShow;
+import com.amadeodlp.canalradionov.core.model.playback.PlaybackSession;
+import com.amadeodlp.canalradionov.core.model.transcoding.BitrateLadder;
 import com.amadeodlp.canalradionov.core.services.media.MediaService;
+import com.amadeodlp.canalradionov.core.services.playback.PlaybackSessionService;
+import com.amadeodlp.canalradionov.core.services.transcoding.TranscodingService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.security.Principal;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/media")
 public class MediaController {
     private static final Logger LOG = LoggerFactory.getLogger(MediaController.class);
+    private static final MediaType HLS_PLAYLIST = MediaType.parseMediaType("application/vnd.apple.mpegurl");
+    
     private final MediaService mediaService;
+    private final TranscodingService transcodingService;
+    private final PlaybackSessionService playbackSessionService;
 
-    public MediaController(MediaService mediaService) {
+    public MediaController(MediaService mediaService, TranscodingService transcodingService,
+                           PlaybackSessionService playbackSessionService) {
         this.mediaService = mediaService;
+        this.transcodingService = transcodingService;
+        this.playbackSessionService = playbackSessionService;
     }
 
     @GetMapping("/shows")
@@ -51,12 +65,61 @@ public class MediaController {
     }
 
     @PostMapping("/shows/{showId}/episodes/{episodeId}/play")
-    public ResponseEntity<Void> incrementPlayCount(@PathVariable String showId, @PathVariable String episodeId) {
+    public ResponseEntity<Void> incrementPlayCount(@PathVariable String showId, @PathVariable String episodeId,
+                                                   Principal principal) {
         LOG.info("Incrementing play count for episode {} of show {}", episodeId, showId);
-        mediaService.incrementPlayCount(showId, episodeId);
+        mediaService.incrementPlayCount(showId, episodeId, principal != null ? principal.getName() : "anonymous");
         return ResponseEntity.ok().build();
     }
 
+    @PostMapping("/shows/{showId}/episodes/{episodeId}/transcode")
+    public ResponseEntity<BitrateLadder> transcodeEpisode(@PathVariable String showId, @PathVariable String episodeId) {
+        LOG.info("Transcoding episode {} of show {}", episodeId, showId);
+        Episode episode = mediaService.getEpisode(showId, episodeId);
+        if (episode == null) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(transcodingService.transcodeEpisode(showId, episode));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    @GetMapping("/shows/{showId}/episodes/{episodeId}/renditions")
+    public ResponseEntity<BitrateLadder> getEpisodeRenditions(@PathVariable String showId, @PathVariable String episodeId) {
+        LOG.info("Getting renditions for episode {} of show {}", episodeId, showId);
+        BitrateLadder ladder = transcodingService.getEpisodeLadder(showId, episodeId);
+        if (ladder == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(ladder);
+    }
+
+    @GetMapping("/shows/{showId}/episodes/{episodeId}/master.m3u8")
+    public ResponseEntity<String> getEpisodeMasterPlaylist(
+            @PathVariable String showId,
+            @PathVariable String episodeId,
+            @RequestParam(required = false) Integer bandwidth) {
+        LOG.info("Getting master playlist for episode {} of show {}", episodeId, showId);
+        BitrateLadder ladder = transcodingService.getEpisodeLadder(showId, episodeId);
+        if (ladder == null || !ladder.isReady()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(HLS_PLAYLIST)
+                .body(transcodingService.buildMasterPlaylist(ladder, bandwidth));
+    }
+
+    @GetMapping("/playback/{mediaId}")
+    public ResponseEntity<PlaybackSession> getPlaybackPosition(@PathVariable String mediaId, Principal principal) {
+        LOG.info("Getting playback position for media {}", mediaId);
+        return playbackSessionService.getResumePosition(principal.getName(), mediaId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     @GetMapping("/search")
     public ResponseEntity<List<RadioShow>> searchShows(@RequestParam String q) {
         LOG.info("Searching shows with query: {}", q);
@@ -0,0 +1,12 @@
+package com.amadeodlp.canalradionov.core.exceptions;
+
+/**
+ * An external API could not be reached or answered with an error.
+ * Unchecked so it passes through cache proxies, which then store nothing.
+ */
+public class UpstreamUnavailableException extends RuntimeException {
+	
+	public UpstreamUnavailableException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
@@ -0,0 +1,16 @@
+package com.amadeodlp.canalradionov.core.model.analytics;
+
+/**
+ * A single analytics event, written as one line of the rolled NDJSON files
+ */
+public record AnalyticsEvent(
+    AnalyticsEventType type,
+    String userId,
+    String subjectId,
+    String sessionId,
+    long timestamp
+) {
+    public static AnalyticsEvent of(AnalyticsEventType type, String userId, String subjectId, String sessionId) {
+        return new AnalyticsEvent(type, userId, subjectId, sessionId, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,14 @@
+package com.amadeodlp.canalradionov.core.model.analytics;
+
+/**
+ * Kinds of events collected by the analytics pipeline.
+ */
+public enum AnalyticsEventType {
+    MEDIA_PLAY,                 // Listener started a media stream over the streaming socket
+    EPISODE_PLAY,               // Episode play count was incremented
+    CHAT_JOIN,                  // User joined a broadcast chat room
+    CHAT_MESSAGE,               // User sent a chat message
+    CHAT_LEAVE,                 // User left a broadcast chat room
+    BROADCAST_LISTENER_JOIN,    // Listener joined a live broadcast
+    BROADCAST_LISTENER_LEAVE    // Listener left a live broadcast
+}
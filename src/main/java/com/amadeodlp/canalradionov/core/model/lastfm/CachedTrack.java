@@ -0,0 +1,50 @@
+package com.amadeodlp.canalradionov.core.model.lastfm;
+
+import java.util.Optional;
+
+/**
+ * The answer to a cache-only track lookup
+ * 
+ * @param track The cached track, or null unless the status is HIT
+ */
+public record CachedTrack(
+    Status status,
+    TrackInfo track
+) {
+    public enum Status {
+        HIT,     // Cached with its details
+        ABSENT,  // Cached as unknown to Last.fm
+        MISS     // Not cached, only Last.fm can tell
+    }
+    
+    private static final CachedTrack ABSENT = new CachedTrack(Status.ABSENT, null);
+    private static final CachedTrack MISS = new CachedTrack(Status.MISS, null);
+    
+    public static CachedTrack hit(TrackInfo track) {
+        return new CachedTrack(Status.HIT, track);
+    }
+    
+    public static CachedTrack absent() {
+        return ABSENT;
+    }
+    
+    public static CachedTrack miss() {
+        return MISS;
+    }
+    
+    public boolean isMiss() {
+        return status == Status.MISS;
+    }
+    
+    /**
+     * The track, or empty if Last.fm does not know it
+     * 
+     * @throws IllegalStateException On a miss, which says nothing about the track
+     */
+    public Optional<TrackInfo> toOptional() {
+        if (isMiss()) {
+            throw new IllegalStateException("Track is not cached");
+        }
+        return Optional.ofNullable(track);
+    }
+}
@@ -0,0 +1,10 @@
+package com.amadeodlp.canalradionov.core.model.lastfm;
+
+/**
+ * An artist and track to look up on Last.fm
+ */
+public record TrackQuery(
+    String artist,
+    String track
+) {
+}
@@ -0,0 +1,18 @@
+package com.amadeodlp.canalradionov.core.model.lastfm;
+
+import java.util.List;
+
+/**
+ * One page of track search results
+ * 
+ * @param page The page number, from 1
+ * @param hasMore Whether a later page may have results
+ */
+public record TrackSearchPage(
+    String query,
+    int page,
+    int pageSize,
+    List<TrackInfo> tracks,
+    boolean hasMore
+) {
+}
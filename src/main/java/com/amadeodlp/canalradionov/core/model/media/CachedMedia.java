@@ -0,0 +1,15 @@
+package com.amadeodlp.canalradionov.core.model.media;
+
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * A media object available on local disk
+ */
+public record CachedMedia(
+    String key,
+    Path file,
+    long length,
+    String eTag,
+    Instant lastModified
+) {}
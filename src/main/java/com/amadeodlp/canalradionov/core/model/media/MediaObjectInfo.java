@@ -0,0 +1,19 @@
+package com.amadeodlp.canalradionov.core.model.media;
+
+import java.time.Instant;
+
+/**
+ * Metadata of a media object in the bucket, as known by the media index
+ */
+public record MediaObjectInfo(
+    String key,
+    boolean exists,
+    long contentLength,
+    String contentType,
+    String eTag,
+    Instant lastModified
+) {
+    public static MediaObjectInfo missing(String key) {
+        return new MediaObjectInfo(key, false, 0, null, null, null);
+    }
+}
@@ -0,0 +1,22 @@
+package com.amadeodlp.canalradionov.core.model.playback;
+
+import java.time.Instant;
+
+/**
+ * Snapshot of a listener's position in a media object
+ * 
+ * @param sessionId The stream session ID, null when read back from storage
+ * @param userId The listener
+ * @param mediaId The media being played
+ * @param state The playback state
+ * @param positionMs The playback position in milliseconds
+ * @param updatedAt When the position was last reported
+ */
+public record PlaybackSession(
+        String sessionId,
+        String userId,
+        String mediaId,
+        PlaybackState state,
+        long positionMs,
+        Instant updatedAt
+) {}
@@ -0,0 +1,10 @@
+package com.amadeodlp.canalradionov.core.model.playback;
+
+/**
+ * Lifecycle of a listener's playback session
+ */
+public enum PlaybackState {
+    PLAYING,
+    PAUSED,
+    STOPPED
+}
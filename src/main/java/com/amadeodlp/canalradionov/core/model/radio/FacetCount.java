@@ -0,0 +1,10 @@
+package com.amadeodlp.canalradionov.core.model.radio;
+
+/**
+ * Number of stations carrying one facet value
+ */
+public record FacetCount(
+    String value,
+    int count
+) {
+}
@@ -0,0 +1,20 @@
+package com.amadeodlp.canalradionov.core.model.radio;
+
+import com.amadeodlp.canalradionov.core.model.lastfm.TrackInfo;
+
+/**
+ * What a station is playing, from its stream metadata
+ * 
+ * @param streamTitle The raw ICY StreamTitle, or null if the station sends none
+ * @param artist The part before " - ", or null if the title has no separator
+ * @param title The part after " - ", or the whole title
+ * @param track Last.fm details for the artist and title, or null if unknown or not yet looked up
+ */
+public record NowPlaying(
+    String stationId,
+    String streamTitle,
+    String artist,
+    String title,
+    TrackInfo track
+) {
+}
@@ -19,10 +19,14 @@ public record RadioFilter(
     String order,
     Boolean reverse
 ) {
+    // Largest page a single search returns
+    public static final int MAX_LIMIT = 1000;
+    
     public RadioFilter {
         // Default values if not provided
         if (limit == null) limit = 100;
-        if (offset == null) offset = 0;
+        limit = Math.max(1, Math.min(limit, MAX_LIMIT));
+        if (offset == null || offset < 0) offset = 0;
         if (order == null) order = "votes";
         if (reverse == null) reverse = true;
         if (onlyOnline == null) onlyOnline = true;
@@ -1,7 +1,7 @@
 package com.amadeodlp.canalradionov.core.model.radio;
 
 /**
- * A lightweight version of RadioStation for client responses
+ * A radio station as sent to clients
  */
 public record RadioStationDto(
     String stationId,
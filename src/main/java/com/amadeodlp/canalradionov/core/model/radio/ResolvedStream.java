@@ -0,0 +1,15 @@
+package com.amadeodlp.canalradionov.core.model.radio;
+
+/**
+ * A station's listed stream URL and the endpoint it actually plays from
+ * 
+ * @param resolvedUrl The direct stream after redirects and playlist expansion, or null if it could not be reached
+ * @param fromPlaylist Whether the listed URL was a PLS or M3U playlist
+ */
+public record ResolvedStream(
+    String stationId,
+    String streamUrl,
+    String resolvedUrl,
+    boolean fromPlaylist
+) {
+}
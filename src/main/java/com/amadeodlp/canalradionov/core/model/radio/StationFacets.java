@@ -0,0 +1,14 @@
+package com.amadeodlp.canalradionov.core.model.radio;
+
+import java.util.List;
+
+/**
+ * Facet counts for the stations matching a filter, highest counts first
+ */
+public record StationFacets(
+    int total,
+    List<FacetCount> genres,
+    List<FacetCount> countryCodes,
+    List<FacetCount> languages
+) {
+}
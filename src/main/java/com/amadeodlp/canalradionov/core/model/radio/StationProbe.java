@@ -0,0 +1,16 @@
+package com.amadeodlp.canalradionov.core.model.radio;
+
+/**
+ * Outcome of opening a station's stream
+ */
+public record StationProbe(
+    String stationId,
+    boolean alive,
+    int latencyMs,
+    String contentType,
+    String detectedCodec,
+    int detectedBitrate,
+    boolean codecMatches,
+    long checkedAt
+) {
+}
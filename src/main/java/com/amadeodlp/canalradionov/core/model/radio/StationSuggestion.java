@@ -0,0 +1,13 @@
+package com.amadeodlp.canalradionov.core.model.radio;
+
+/**
+ * A station offered while the user types a name
+ */
+public record StationSuggestion(
+    String stationId,
+    String name,
+    String logoUrl,
+    String countryCode,
+    double score
+) {
+}
@@ -0,0 +1,20 @@
+package com.amadeodlp.canalradionov.core.model.transcoding;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * The set of renditions produced for an episode or a live broadcast.
+ * Renditions are kept sorted by ascending bitrate.
+ */
+public record BitrateLadder(
+    String sourceId,
+    String sourceType,
+    boolean isLive,
+    List<Rendition> renditions,
+    LocalDateTime createdAt
+) {
+    public boolean isReady() {
+        return renditions.stream().anyMatch(r -> r.status() == TranscodeStatus.READY);
+    }
+}
@@ -0,0 +1,15 @@
+package com.amadeodlp.canalradionov.core.model.transcoding;
+
+/**
+ * A single step of a bitrate ladder
+ */
+public record Rendition(
+    int bitrateKbps,
+    String codec,
+    String playlistUrl,
+    TranscodeStatus status
+) {
+    public Rendition withStatus(TranscodeStatus newStatus) {
+        return new Rendition(bitrateKbps, codec, playlistUrl, newStatus);
+    }
+}
@@ -0,0 +1,11 @@
+package com.amadeodlp.canalradionov.core.model.transcoding;
+
+/**
+ * Lifecycle of a single rendition in a bitrate ladder.
+ */
+public enum TranscodeStatus {
+    PENDING,  // Queued on the transcoding pool
+    RUNNING,  // Encoder process is working on it
+    READY,    // Rendition is published and can be played
+    FAILED    // Encoding or upload failed, see logs
+}
@@ -0,0 +1,21 @@
+package com.amadeodlp.canalradionov.core.services.analytics;
+
+import com.amadeodlp.canalradionov.core.model.analytics.AnalyticsEvent;
+
+/**
+ * Service collecting analytics events
+ */
+public interface AnalyticsService {
+    
+    /**
+     * Record an event. Never blocks and never throws; events may be dropped under overload.
+     * 
+     * @param event The event to record
+     */
+    void record(AnalyticsEvent event);
+    
+    /**
+     * Write out everything queued so far
+     */
+    void flush();
+}
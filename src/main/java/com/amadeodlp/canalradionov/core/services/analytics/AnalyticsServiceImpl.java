@@ -0,0 +1,246 @@
+package com.amadeodlp.canalradionov.core.services.analytics;
+
+import com.amadeodlp.canalradionov.core.model.analytics.AnalyticsEvent;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Batched analytics pipeline.
+ * Events go into a lock-free queue and are rolled into gzipped newline-delimited JSON files,
+ * either every flush interval or as soon as a full batch is queued, then uploaded with one PUT per file.
+ * Files that cannot be uploaded are spooled to local disk and retried on the next flush.
+ */
+@Service
+public class AnalyticsServiceImpl implements AnalyticsService {
+    private static final Logger LOG = LoggerFactory.getLogger(AnalyticsServiceImpl.class);
+    
+    private static final DateTimeFormatter PARTITION = DateTimeFormatter.ofPattern("'dt='yyyy-MM-dd'/hour='HH")
+            .withZone(ZoneOffset.UTC);
+    
+    private final S3Client s3Client;
+    private final ObjectMapper objectMapper;
+    private final String bucketName;
+    private final String keyPrefix;
+    private final int batchSize;
+    private final int maxQueued;
+    private final Path spoolDir;
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+    
+    private final ConcurrentLinkedQueue<AnalyticsEvent> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong fileSequence = new AtomicLong();
+    
+    // Only one flush writes at a time; size-triggered flushes run on their own thread
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ExecutorService flushExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "analytics-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    public AnalyticsServiceImpl(
+            S3Client s3Client,
+            ObjectMapper objectMapper,
+            @Value("${app.media.bucket-name:canal-radio-nov-media}") String bucketName,
+            @Value("${app.analytics.key-prefix:analytics/events/}") String keyPrefix,
+            @Value("${app.analytics.batch-size:5000}") int batchSize,
+            @Value("${app.analytics.max-queued:100000}") int maxQueued,
+            @Value("${app.analytics.spool-dir:${java.io.tmpdir}/canalradionov-analytics}") String spoolDir) {
+        this.s3Client = s3Client;
+        this.objectMapper = objectMapper;
+        this.bucketName = bucketName;
+        this.keyPrefix = keyPrefix;
+        this.batchSize = batchSize;
+        this.maxQueued = maxQueued;
+        this.spoolDir = Paths.get(spoolDir);
+    }
+    
+    @Override
+    public void record(AnalyticsEvent event) {
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            if (dropped.incrementAndGet() % 10_000 == 1) {
+                LOG.warn("Analytics queue is full, {} events dropped so far", dropped.get());
+            }
+            return;
+        }
+        
+        queue.offer(event);
+        
+        if (queued.get() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            try {
+                flushExecutor.execute(() -> {
+                    flushRequested.set(false);
+                    flush();
+                });
+            } catch (RejectedExecutionException e) {
+                // Shutting down; the event is already queued and goes out with the final flush
+                flushRequested.set(false);
+                LOG.debug("Early analytics flush not scheduled, executor is shut down");
+            }
+        }
+    }
+    
+    @Override
+    @Scheduled(
+        initialDelayString = "${app.analytics.flush-interval-ms:10000}",
+        fixedDelayString = "${app.analytics.flush-interval-ms:10000}"
+    )
+    public void flush() {
+        if (!flushLock.tryLock()) {
+            return;
+        }
+        
+        try {
+            flushLocked();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        flushExecutor.shutdown();
+        
+        // Waits out a flush already running, so the events queued after it are not left behind
+        flushLock.lock();
+        try {
+            flushLocked();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+    
+    private void flushLocked() {
+        uploadSpooled();
+        
+        List<AnalyticsEvent> batch = drain();
+        while (!batch.isEmpty()) {
+            roll(batch);
+            batch = batch.size() < batchSize ? List.of() : drain();
+        }
+    }
+    
+    private List<AnalyticsEvent> drain() {
+        List<AnalyticsEvent> batch = new ArrayList<>(Math.min(batchSize, queued.get()));
+        AnalyticsEvent event;
+        while (batch.size() < batchSize && (event = queue.poll()) != null) {
+            batch.add(event);
+        }
+        queued.addAndGet(-batch.size());
+        return batch;
+    }
+    
+    private void roll(List<AnalyticsEvent> batch) {
+        long now = System.currentTimeMillis();
+        String key = keyPrefix + PARTITION.format(Instant.ofEpochMilli(now)) + "/"
+                + nodeId + "-" + now + "-" + fileSequence.incrementAndGet() + ".ndjson.gz";
+        
+        byte[] body;
+        try {
+            body = encode(batch);
+        } catch (IOException e) {
+            LOG.error("Could not encode {} analytics events", batch.size(), e);
+            return;
+        }
+        
+        try {
+            upload(key, body);
+            LOG.debug("Uploaded {} analytics events to {}", batch.size(), key);
+        } catch (Exception e) {
+            LOG.warn("Analytics upload failed, spooling {} events: {}", batch.size(), e.getMessage());
+            spool(key, body);
+        }
+    }
+    
+    private byte[] encode(List<AnalyticsEvent> batch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(batch.size() * 32);
+        
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(new GZIPOutputStream(bytes))) {
+            for (AnalyticsEvent event : batch) {
+                generator.writeStartObject();
+                generator.writeStringField("type", event.type().name());
+                generator.writeStringField("userId", event.userId());
+                generator.writeStringField("subjectId", event.subjectId());
+                if (event.sessionId() != null) {
+                    generator.writeStringField("sessionId", event.sessionId());
+                }
+                generator.writeNumberField("timestamp", event.timestamp());
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            }
+        }
+        
+        return bytes.toByteArray();
+    }
+    
+    private void upload(String key, byte[] body) {
+        s3Client.putObject(
+                PutObjectRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .contentType("application/x-ndjson")
+                        .contentEncoding("gzip")
+                        .build(),
+                RequestBody.fromBytes(body)
+        );
+    }
+    
+    private void spool(String key, byte[] body) {
+        try {
+            Files.createDirectories(spoolDir);
+            Files.write(spoolDir.resolve(key.replace('/', '~')), body);
+        } catch (IOException e) {
+            LOG.error("Could not spool analytics file {}, events are lost", key, e);
+        }
+    }
+    
+    private void uploadSpooled() {
+        if (!Files.isDirectory(spoolDir)) {
+            return;
+        }
+        
+        try (Stream<Path> files = Files.list(spoolDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String key = file.getFileName().toString().replace('~', '/');
+                upload(key, Files.readAllBytes(file));
+                Files.delete(file);
+            }
+        } catch (Exception e) {
+            LOG.warn("Spooled analytics upload failed, will retry: {}", e.getMessage());
+        }
+    }
+}
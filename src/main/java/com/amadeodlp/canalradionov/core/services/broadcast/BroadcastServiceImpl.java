@@ -1,8 +1,12 @@
 package com.amadeodlp.canalradionov.core.services.broadcast;
 
+import com.amadeodlp.canalradionov.core.model.analytics.AnalyticsEvent;
+import com.amadeodlp.canalradionov.core.model.analytics.AnalyticsEventType;
 import com.amadeodlp.canalradionov.core.model.broadcast.ActiveBroadcast;
 import com.amadeodlp.canalradionov.core.model.broadcast.BroadcastRequest;
 import com.amadeodlp.canalradionov.core.model.broadcast.BroadcastSession;
+import com.amadeodlp.canalradionov.core.services.analytics.AnalyticsService;
+import com.amadeodlp.canalradionov.core.services.transcoding.TranscodingService;
 import com.amadeodlp.canalradionov.core.services.user.UserService;
 import com.amadeodlp.canalradionov.core.model.User;
 import com.amadeodlp.canalradionov.core.exceptions.UnauthorizedException;
@@ -35,9 +39,14 @@ public class BroadcastServiceImpl implements BroadcastService {
     private final Map<String, Map<String, LocalDateTime>> listenerSessions = new ConcurrentHashMap<>();
     
     private final UserService userService;
+    private final TranscodingService transcodingService;
+    private final AnalyticsService analyticsService;
     
-    public BroadcastServiceImpl(UserService userService) {
+    public BroadcastServiceImpl(UserService userService, TranscodingService transcodingService,
+                                AnalyticsService analyticsService) {
         this.userService = userService;
+        this.transcodingService = transcodingService;
+        this.analyticsService = analyticsService;
     }
     
     @Override
@@ -97,6 +106,13 @@ public class BroadcastServiceImpl implements BroadcastService {
         listenerCounts.put(sessionId, 0);
         listenerSessions.put(sessionId, new ConcurrentHashMap<>());
         
+        // Start the bitrate ladder; the broadcast still goes live at source bitrate if this fails
+        try {
+            transcodingService.startLiveLadder(sessionId);
+        } catch (IllegalStateException e) {
+            LOG.warn("Broadcast {} will not be transcoded: {}", sessionId, e.getMessage());
+        }
+        
         LOG.info("Broadcast started successfully: {}", sessionId);
         return session;
     }
@@ -145,6 +161,8 @@ public class BroadcastServiceImpl implements BroadcastService {
         listenerCounts.remove(sessionId);
         listenerSessions.remove(sessionId);
         
+        transcodingService.stopLiveLadder(sessionId);
+        
         LOG.info("Broadcast ended successfully: {}", sessionId);
         
         // In a real implementation, this would be stored in a database
@@ -387,6 +405,9 @@ public class BroadcastServiceImpl implements BroadcastService {
         int count = listeners.size();
         listenerCounts.put(sessionId, count);
         
+        analyticsService.record(AnalyticsEvent.of(
+                AnalyticsEventType.BROADCAST_LISTENER_JOIN, listenerId, sessionId, null));
+        
         return count;
     }
     
@@ -412,6 +433,9 @@ public class BroadcastServiceImpl implements BroadcastService {
         int count = listeners.size();
         listenerCounts.put(sessionId, count);
         
+        analyticsService.record(AnalyticsEvent.of(
+                AnalyticsEventType.BROADCAST_LISTENER_LEAVE, listenerId, sessionId, null));
+        
         return count;
     }
     
@@ -0,0 +1,423 @@
+package com.amadeodlp.canalradionov.core.services.media;
+
+import com.amadeodlp.canalradionov.core.model.media.CachedMedia;
+import com.amadeodlp.canalradionov.core.model.media.MediaObjectInfo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Size-bounded read-through cache of media objects on local disk.
+ * 
+ * Files mirror their bucket keys under the cache directory and are only ever replaced atomically,
+ * so a file that is being served is never seen half written. Entries are evicted least recently used first
+ * once the cache grows past its byte budget. Entries handed out by {@link #get} are pinned until
+ * {@link #release}, and for a short while after so the container can open a sendfile, and eviction
+ * passes over them. Concurrent misses for one key share a single download, and
+ * downloads are checked against the object's MD5 ETag before they are published.
+ * The entry list is persisted on shutdown and periodically, so a restarted node comes back warm;
+ * temp files a crash left behind are deleted on startup.
+ */
+public class MediaDiskCache {
+    private static final Logger LOG = LoggerFactory.getLogger(MediaDiskCache.class);
+    
+    private static final String INDEX_FILE = ".index";
+    private static final String DOWNLOAD_PREFIX = ".download-";
+    private static final String TEMP_SUFFIX = ".tmp";
+    
+    // Time for the container to open a file handed to sendfile after the handler released it
+    private static final long HANDOFF_GRACE_NANOS = TimeUnit.SECONDS.toNanos(5);
+    
+    private final S3Client s3Client;
+    private final MediaObjectIndex mediaObjectIndex;
+    private final String bucketName;
+    private final Path cacheDir;
+    private final long maxBytes;
+    
+    // Access-ordered, guarded by "this"
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+    
+    // Concurrent misses for the same key share one download
+    private final Map<String, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+    
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Counter bytesServed;
+    
+    public MediaDiskCache(S3Client s3Client, MediaObjectIndex mediaObjectIndex, String bucketName,
+                          String cacheDir, long maxBytes, MeterRegistry meterRegistry) {
+        this.s3Client = s3Client;
+        this.mediaObjectIndex = mediaObjectIndex;
+        this.bucketName = bucketName;
+        this.cacheDir = Paths.get(cacheDir).toAbsolutePath().normalize();
+        this.maxBytes = maxBytes;
+        
+        this.hits = meterRegistry.counter("media.disk_cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("media.disk_cache.requests", "result", "miss");
+        this.evictions = meterRegistry.counter("media.disk_cache.evictions");
+        this.bytesServed = meterRegistry.counter("media.disk_cache.served.bytes");
+        Gauge.builder("media.disk_cache.size.bytes", this, MediaDiskCache::sizeBytes).register(meterRegistry);
+        Gauge.builder("media.disk_cache.hit.ratio", this, MediaDiskCache::hitRatio).register(meterRegistry);
+        
+        removeTempFiles();
+        loadIndex();
+    }
+    
+    /**
+     * Get a media object from disk, downloading it first if needed.
+     * The entry is pinned against eviction until it is released.
+     * 
+     * @param key The object key in the media bucket
+     * @return The cached media or null if the object does not exist
+     */
+    public CachedMedia get(String key) {
+        MediaObjectInfo info = mediaObjectIndex.lookup(key);
+        if (!info.exists()) {
+            remove(key);
+            return null;
+        }
+        
+        Path file = resolve(key);
+        
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null) {
+                entry.pins++;
+            }
+        }
+        
+        // A changed ETag means the object was overwritten in the bucket
+        if (entry != null && (info.eTag() == null || info.eTag().equals(entry.eTag)) && Files.isRegularFile(file)) {
+            hits.increment();
+        } else {
+            if (entry != null) {
+                unpin(entry);
+            }
+            misses.increment();
+            entry = fetch(key, file, info);
+        }
+        
+        Instant lastModified = entry.lastModified != null ? entry.lastModified : Instant.EPOCH;
+        return new CachedMedia(key, file, entry.length, entry.eTag, lastModified);
+    }
+    
+    /**
+     * Let a served entry be evicted again
+     */
+    public void release(CachedMedia media) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(media.key());
+        }
+        if (entry != null) {
+            unpin(entry);
+        }
+    }
+    
+    /**
+     * Record bytes sent to clients from the cache
+     */
+    public void recordServed(long bytes) {
+        bytesServed.increment(bytes);
+    }
+    
+    public synchronized long sizeBytes() {
+        return totalBytes;
+    }
+    
+    public double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+    
+    @Scheduled(fixedDelayString = "${app.media.disk-cache.index-save-interval-ms:60000}")
+    @PreDestroy
+    public void saveIndex() {
+        List<Entry> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(entries.values());
+        }
+        
+        try {
+            Files.createDirectories(cacheDir);
+            Path temp = cacheDir.resolve(INDEX_FILE + TEMP_SUFFIX);
+            
+            // Least recently used first, the same order loadIndex restores
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Entry entry : snapshot) {
+                    writer.write(entry.key + "\t" + entry.length + "\t" + (entry.eTag != null ? entry.eTag : "")
+                            + "\t" + (entry.lastModified != null ? entry.lastModified.toEpochMilli() : 0));
+                    writer.newLine();
+                }
+            }
+            
+            Files.move(temp, cacheDir.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("Could not save media disk cache index: {}", e.getMessage());
+        }
+    }
+    
+    private Entry fetch(String key, Path file, MediaObjectInfo info) {
+        CompletableFuture<Entry> created = new CompletableFuture<>();
+        CompletableFuture<Entry> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            try {
+                return pin(existing.join());
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        
+        try {
+            Entry entry = download(key, file, info);
+            entry.pins = 1;
+            put(entry);
+            created.complete(entry);
+            return entry;
+        } catch (IOException e) {
+            UncheckedIOException failure = new UncheckedIOException(e);
+            created.completeExceptionally(failure);
+            throw failure;
+        } catch (RuntimeException e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+    
+    private Entry download(String key, Path file, MediaObjectInfo info) throws IOException {
+        LOG.info("Caching media object {} on disk", key);
+        
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), DOWNLOAD_PREFIX, TEMP_SUFFIX);
+        
+        try {
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            GetObjectResponse response;
+            
+            try (ResponseInputStream<GetObjectResponse> body = s3Client.getObject(GetObjectRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .build());
+                 InputStream digesting = new DigestInputStream(body, md5)) {
+                response = body.response();
+                Files.copy(digesting, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            
+            long length = Files.size(temp);
+            verify(key, response, length, HexFormat.of().formatHex(md5.digest()));
+            
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            
+            Instant lastModified = response.lastModified() != null ? response.lastModified() : info.lastModified();
+            return new Entry(key, length, response.eTag(), lastModified);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    private static void verify(String key, GetObjectResponse response, long length, String md5Hex) throws IOException {
+        if (response.contentLength() != null && response.contentLength() != length) {
+            throw new IOException("Truncated download of " + key + ": " + length + " of " + response.contentLength() + " bytes");
+        }
+        
+        // Single-part uploads use the MD5 of the body as ETag; multipart ETags ("...-N") are not a plain digest
+        String eTag = response.eTag() != null ? response.eTag().replace("\"", "") : "";
+        if (!eTag.isEmpty() && eTag.indexOf('-') < 0 && !eTag.equalsIgnoreCase(md5Hex)) {
+            throw new IOException("Checksum mismatch for " + key + ": expected " + eTag + ", got " + md5Hex);
+        }
+    }
+    
+    private void put(Entry entry) {
+        List<Entry> evicted = new ArrayList<>();
+        
+        synchronized (this) {
+            Entry previous = entries.put(entry.key, entry);
+            if (previous != null) {
+                totalBytes -= previous.length;
+                // Pins are per key, so readers of the replaced file stay counted
+                entry.pins += previous.pins;
+            }
+            totalBytes += entry.length;
+            
+            // Entries being served are skipped, so the cache can briefly run over budget
+            long now = System.nanoTime();
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (totalBytes > maxBytes && eldest.hasNext()) {
+                Entry candidate = eldest.next();
+                if (candidate.key.equals(entry.key) || candidate.pins > 0
+                        || now - candidate.releasedAt < HANDOFF_GRACE_NANOS) {
+                    continue;
+                }
+                eldest.remove();
+                totalBytes -= candidate.length;
+                evicted.add(candidate);
+            }
+        }
+        
+        for (Entry candidate : evicted) {
+            evictions.increment();
+            deleteQuietly(resolve(candidate.key));
+        }
+    }
+    
+    private synchronized Entry pin(Entry entry) {
+        entry.pins++;
+        return entry;
+    }
+    
+    private synchronized void unpin(Entry entry) {
+        if (entry.pins > 0) {
+            entry.pins--;
+        }
+        entry.releasedAt = System.nanoTime();
+    }
+    
+    private void remove(String key) {
+        Entry removed;
+        synchronized (this) {
+            removed = entries.remove(key);
+            if (removed != null) {
+                totalBytes -= removed.length;
+            }
+        }
+        if (removed != null) {
+            deleteQuietly(resolve(key));
+        }
+    }
+    
+    /**
+     * Delete downloads and index saves cut short by a crash. They are not in the index, so nothing
+     * else would ever count or remove them.
+     */
+    private void removeTempFiles() {
+        if (!Files.isDirectory(cacheDir)) {
+            return;
+        }
+        
+        try (Stream<Path> files = Files.walk(cacheDir)) {
+            files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.endsWith(TEMP_SUFFIX)
+                        && (name.startsWith(DOWNLOAD_PREFIX) || name.equals(INDEX_FILE + TEMP_SUFFIX))
+                        && Files.isRegularFile(file);
+            }).forEach(file -> {
+                LOG.debug("Removing leftover temp file {}", file);
+                deleteQuietly(file);
+            });
+        } catch (IOException | UncheckedIOException e) {
+            LOG.warn("Could not clean up media disk cache temp files: {}", e.getMessage());
+        }
+    }
+    
+    private void loadIndex() {
+        Path indexFile = cacheDir.resolve(INDEX_FILE);
+        if (!Files.isRegularFile(indexFile)) {
+            return;
+        }
+        
+        try (Stream<String> lines = Files.lines(indexFile, StandardCharsets.UTF_8)) {
+            lines.forEach(line -> {
+                String[] fields = line.split("\t", -1);
+                if (fields.length != 4) {
+                    return;
+                }
+                
+                try {
+                    long length = Long.parseLong(fields[1]);
+                    Path file = resolve(fields[0]);
+                    
+                    // Only trust entries whose file survived intact
+                    if (Files.isRegularFile(file) && Files.size(file) == length) {
+                        long modified = Long.parseLong(fields[3]);
+                        put(new Entry(
+                            fields[0],
+                            length,
+                            fields[2].isEmpty() ? null : fields[2],
+                            modified > 0 ? Instant.ofEpochMilli(modified) : null
+                        ));
+                    }
+                } catch (IOException | RuntimeException e) {
+                    LOG.debug("Skipping cache index line: {}", line);
+                }
+            });
+        } catch (IOException e) {
+            LOG.warn("Could not load media disk cache index: {}", e.getMessage());
+        }
+        
+        LOG.info("Media disk cache restored {} entries, {} bytes", entries.size(), totalBytes);
+    }
+    
+    private Path resolve(String key) {
+        Path file = cacheDir.resolve(key).normalize();
+        if (!file.startsWith(cacheDir) || file.equals(cacheDir.resolve(INDEX_FILE))) {
+            throw new IllegalArgumentException("Invalid media key: " + key);
+        }
+        return file;
+    }
+    
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.debug("Could not delete cached file {}", file);
+        }
+    }
+    
+    private static final class Entry {
+        final String key;
+        final long length;
+        final String eTag;
+        final Instant lastModified;
+        
+        // Guarded by the cache
+        int pins;
+        long releasedAt = System.nanoTime() - HANDOFF_GRACE_NANOS;
+        
+        Entry(String key, long length, String eTag, Instant lastModified) {
+            this.key = key;
+            this.length = length;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.amadeodlp.canalradionov.core.services.media;
+
+import com.amadeodlp.canalradionov.core.model.media.MediaObjectInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cached existence and metadata index for media objects.
+ * Lookups are answered from memory while fresh; misses and expired entries fall back to a HEAD request,
+ * and a periodic bucket listing keeps the whole media prefix warm so most plays never reach S3.
+ * Once full, the entry written longest ago makes room for the new one.
+ */
+public class MediaObjectIndex {
+    private static final Logger LOG = LoggerFactory.getLogger(MediaObjectIndex.class);
+    
+    private final S3Client s3Client;
+    private final String bucketName;
+    private final String listingPrefix;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final int maxEntries;
+    
+    // Ordered by last write, guarded by "this"
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxEntries;
+        }
+    };
+    
+    // Concurrent misses for the same key share a single HEAD request
+    private final Map<String, CompletableFuture<MediaObjectInfo>> inFlight = new ConcurrentHashMap<>();
+    
+    public MediaObjectIndex(S3Client s3Client, String bucketName, String listingPrefix,
+                            Duration ttl, Duration negativeTtl, int maxEntries) {
+        this.s3Client = s3Client;
+        this.bucketName = bucketName;
+        this.listingPrefix = listingPrefix;
+        this.ttlNanos = ttl.toNanos();
+        this.negativeTtlNanos = negativeTtl.toNanos();
+        this.maxEntries = maxEntries;
+    }
+    
+    /**
+     * Look up an object, hitting S3 only when the cached entry is missing or expired
+     */
+    public MediaObjectInfo lookup(String key) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry != null && entry.expiresAt - System.nanoTime() > 0) {
+            return entry.info;
+        }
+        
+        CompletableFuture<MediaObjectInfo> created = new CompletableFuture<>();
+        CompletableFuture<MediaObjectInfo> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing.join();
+        }
+        
+        try {
+            MediaObjectInfo info = head(key);
+            put(info);
+            created.complete(info);
+            return info;
+        } catch (RuntimeException e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+    
+    /**
+     * Drop a key, e.g. after an upload or delete
+     */
+    public synchronized void invalidate(String key) {
+        entries.remove(key);
+    }
+    
+    /**
+     * Refresh the index from a listing of the media prefix.
+     * One LIST call returns up to 1000 keys, far cheaper than a HEAD per object.
+     */
+    @Scheduled(
+        initialDelayString = "${app.media.index.listing-initial-delay-ms:5000}",
+        fixedDelayString = "${app.media.index.listing-interval-ms:300000}"
+    )
+    public void refreshFromListing() {
+        if (listingPrefix == null || listingPrefix.isEmpty()) {
+            return;
+        }
+        
+        try {
+            int count = 0;
+            ListObjectsV2Request request = ListObjectsV2Request.builder()
+                    .bucket(bucketName)
+                    .prefix(listingPrefix)
+                    .build();
+            
+            for (S3Object object : s3Client.listObjectsV2Paginator(request).contents()) {
+                if (count >= maxEntries) {
+                    break;
+                }
+                put(new MediaObjectInfo(
+                    object.key(),
+                    true,
+                    object.size(),
+                    null,
+                    object.eTag(),
+                    object.lastModified()
+                ));
+                count++;
+            }
+            
+            LOG.debug("Media index refreshed with {} objects under {}", count, listingPrefix);
+        } catch (Exception e) {
+            LOG.warn("Could not refresh media index from listing: {}", e.getMessage());
+        }
+    }
+    
+    private MediaObjectInfo head(String key) {
+        try {
+            HeadObjectResponse response = s3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .build());
+            
+            return new MediaObjectInfo(
+                key,
+                true,
+                response.contentLength(),
+                response.contentType(),
+                response.eTag(),
+                response.lastModified()
+            );
+        } catch (NoSuchKeyException e) {
+            return MediaObjectInfo.missing(key);
+        } catch (S3Exception e) {
+            // HEAD responses carry no body, so a missing key surfaces as a bare 404
+            if (e.statusCode() == 404) {
+                return MediaObjectInfo.missing(key);
+            }
+            throw e;
+        }
+    }
+    
+    private synchronized void put(MediaObjectInfo info) {
+        long ttl = info.exists() ? ttlNanos : negativeTtlNanos;
+        // Removed first so a rewritten key moves to the young end
+        entries.remove(info.key());
+        entries.put(info.key(), new Entry(info, System.nanoTime() + ttl));
+    }
+    
+    private record Entry(MediaObjectInfo info, long expiresAt) {}
+}
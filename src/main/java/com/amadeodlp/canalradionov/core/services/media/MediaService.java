@@ -16,7 +16,7 @@ public interface MediaService {
     
     Episode getEpisode(String showId, String episodeId);
     
-    void incrementPlayCount(String showId, String episodeId);
+    void incrementPlayCount(String showId, String episodeId, String userId);
     
     List<RadioShow> searchShows(String query);
     
@@ -1,7 +1,10 @@
 package com.amadeodlp.canalradionov.core.services.media;
 
+import com.amadeodlp.canalradionov.core.model.analytics.AnalyticsEvent;
+import com.amadeodlp.canalradionov.core.model.analytics.AnalyticsEventType;
 import com.amadeodlp.canalradionov.core.model.media.Episode;
 import com.amadeodlp.canalradionov.core.model.media.RadioShow;
+import com.amadeodlp.canalradionov.core.services.analytics.AnalyticsService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -18,7 +21,11 @@ public class MediaServiceImpl implements MediaService {
     private final Map<String, RadioShow> shows = new HashMap<>();
     private final Map<String, Map<String, Episode>> episodes = new HashMap<>();
     
-    public MediaServiceImpl() {
+    private final AnalyticsService analyticsService;
+    
+    public MediaServiceImpl(AnalyticsService analyticsService) {
+        this.analyticsService = analyticsService;
+        
         // Initialize with some sample data
         initializeSampleData();
     }
@@ -66,7 +73,7 @@ public class MediaServiceImpl implements MediaService {
     }
     
     @Override
-    public void incrementPlayCount(String showId, String episodeId) {
+    public void incrementPlayCount(String showId, String episodeId, String userId) {
         LOG.info("Incrementing play count for episode {} of show {}", episodeId, showId);
         Map<String, Episode> showEpisodes = episodes.get(showId);
         if (showEpisodes != null) {
@@ -83,6 +90,9 @@ public class MediaServiceImpl implements MediaService {
                         episode.imageUrl()
                 );
                 showEpisodes.put(episodeId, updatedEpisode);
+                
+                analyticsService.record(AnalyticsEvent.of(
+                        AnalyticsEventType.EPISODE_PLAY, userId, showId + "/" + episodeId, null));
             }
         }
     }
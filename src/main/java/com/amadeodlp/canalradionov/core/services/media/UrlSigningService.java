@@ -0,0 +1,16 @@
+package com.amadeodlp.canalradionov.core.services.media;
+
+/**
+ * Service producing playable URLs for media objects
+ */
+public interface UrlSigningService {
+    
+    /**
+     * Get a URL for a media object, signed when signing is enabled.
+     * Signatures are reused within an expiry window, so repeated calls for a hot key are cheap.
+     * 
+     * @param objectKey The key of the object in the media bucket
+     * @return A URL that stays valid for at least one signing window
+     */
+    String getUrl(String objectKey);
+}
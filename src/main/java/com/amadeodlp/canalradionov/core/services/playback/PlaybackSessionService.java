@@ -0,0 +1,76 @@
+package com.amadeodlp.canalradionov.core.services.playback;
+
+import com.amadeodlp.canalradionov.core.model.playback.PlaybackSession;
+
+import java.util.Optional;
+
+/**
+ * Service tracking playback sessions per connection and remembering where listeners left off.
+ * State changes that are not allowed from the current state throw IllegalStateException.
+ */
+public interface PlaybackSessionService {
+    
+    /**
+     * Start playing on a connection, replacing whatever it was playing before
+     * 
+     * @param connectionId The socket connection
+     * @param userId The listener, or null when anonymous
+     * @param mediaId The media to play
+     * @param sessionId The stream session ID handed to the client
+     * @return The new session, positioned where the listener last left off
+     */
+    PlaybackSession play(String connectionId, String userId, String mediaId, String sessionId);
+    
+    /**
+     * Pause the session on a connection
+     * 
+     * @param positionMs The position reported by the client, or null to use the server's estimate
+     * @return The paused session
+     */
+    PlaybackSession pause(String connectionId, Long positionMs);
+    
+    /**
+     * Resume the paused session on a connection
+     * 
+     * @param positionMs The position reported by the client, or null to keep the paused position
+     * @return The playing session
+     */
+    PlaybackSession resume(String connectionId, Long positionMs);
+    
+    /**
+     * Stop the session on a connection
+     * 
+     * @param positionMs The position reported by the client, or null to use the server's estimate
+     * @return The stopped session
+     */
+    PlaybackSession stop(String connectionId, Long positionMs);
+    
+    /**
+     * Record that the client is still there
+     * 
+     * @param positionMs The position reported by the client, or null to keep the server's estimate
+     * @return The current session
+     */
+    PlaybackSession heartbeat(String connectionId, Long positionMs);
+    
+    /**
+     * Drop the session of a closed connection, keeping its position for resume
+     * 
+     * @param connectionId The socket connection
+     */
+    void close(String connectionId);
+    
+    /**
+     * Where a listener left off in a media object, on any device
+     * 
+     * @param userId The listener
+     * @param mediaId The media
+     * @return The latest known position, if any
+     */
+    Optional<PlaybackSession> getResumePosition(String userId, String mediaId);
+    
+    /**
+     * Write changed positions to storage
+     */
+    void flush();
+}
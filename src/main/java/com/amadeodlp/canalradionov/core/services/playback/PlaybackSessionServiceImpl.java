@@ -0,0 +1,390 @@
+package com.amadeodlp.canalradionov.core.services.playback;
+
+import com.amadeodlp.canalradionov.core.model.playback.PlaybackSession;
+import com.amadeodlp.canalradionov.core.model.playback.PlaybackState;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Playback sessions held in parallel primitive arrays, one slot per connection.
+ * Every change marks the slot dirty; dirty slots are written to the database in one JDBC batch
+ * per flush interval, so heartbeats cost a couple of array writes rather than a row update each.
+ * Closed slots are recycled through a free list.
+ */
+@Service
+public class PlaybackSessionServiceImpl implements PlaybackSessionService {
+    private static final Logger LOG = LoggerFactory.getLogger(PlaybackSessionServiceImpl.class);
+    
+    private static final String UPSERT = "MERGE INTO playback_position (user_id, media_id, position_ms, state, updated_at) "
+            + "KEY (user_id, media_id) VALUES (?, ?, ?, ?, ?)";
+    private static final String SELECT = "SELECT position_ms, state, updated_at FROM playback_position "
+            + "WHERE user_id = ? AND media_id = ?";
+    
+    private static final PlaybackState[] STATES = PlaybackState.values();
+    
+    // Allowed transitions, indexed [from][to] by ordinal
+    private static final boolean[][] TRANSITIONS = new boolean[STATES.length][STATES.length];
+    static {
+        allow(PlaybackState.PLAYING, PlaybackState.PAUSED);
+        allow(PlaybackState.PLAYING, PlaybackState.STOPPED);
+        allow(PlaybackState.PAUSED, PlaybackState.PLAYING);
+        allow(PlaybackState.PAUSED, PlaybackState.STOPPED);
+    }
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final long idleTimeoutMs;
+    
+    // Slot columns, guarded by this
+    private String[] connectionIds;
+    private String[] sessionIds;
+    private String[] userIds;
+    private String[] mediaIds;
+    private byte[] states;
+    private long[] positions;
+    private long[] positionAt;
+    private long[] heartbeatAt;
+    private final BitSet used = new BitSet();
+    private final BitSet dirty = new BitSet();
+    private int[] freeSlots;
+    private int freeCount;
+    private int highWater;
+    
+    private final Map<String, Integer> slotByConnection = new HashMap<>();
+    private final Map<String, Integer> slotByUserMedia = new HashMap<>();
+    
+    // Rows waiting for the next flush, latest per user and media
+    private Map<String, PositionRow> pending = new LinkedHashMap<>();
+    
+    public PlaybackSessionServiceImpl(
+            JdbcTemplate jdbcTemplate,
+            @Value("${app.playback.initial-capacity:1024}") int initialCapacity,
+            @Value("${app.playback.idle-timeout-seconds:90}") long idleTimeoutSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.idleTimeoutMs = idleTimeoutSeconds * 1000;
+        allocate(Math.max(16, initialCapacity));
+    }
+    
+    @Override
+    public PlaybackSession play(String connectionId, String userId, String mediaId, String sessionId) {
+        // Looked up before taking the lock, this may hit the database
+        long startAt = getResumePosition(userId, mediaId)
+                .filter(previous -> previous.state() != PlaybackState.STOPPED)
+                .map(PlaybackSession::positionMs)
+                .orElse(0L);
+        long now = System.currentTimeMillis();
+        
+        synchronized (this) {
+            Integer previous = slotByConnection.get(connectionId);
+            if (previous != null) {
+                release(previous, PlaybackState.PAUSED, now);
+            }
+            
+            int slot = acquire();
+            connectionIds[slot] = connectionId;
+            sessionIds[slot] = sessionId;
+            userIds[slot] = userId;
+            mediaIds[slot] = mediaId;
+            states[slot] = (byte) PlaybackState.PLAYING.ordinal();
+            positions[slot] = startAt;
+            positionAt[slot] = now;
+            heartbeatAt[slot] = now;
+            slotByConnection.put(connectionId, slot);
+            if (isPersistent(userId)) {
+                slotByUserMedia.put(key(userId, mediaId), slot);
+                dirty.set(slot);
+            }
+            return snapshot(slot, now);
+        }
+    }
+    
+    @Override
+    public PlaybackSession pause(String connectionId, Long positionMs) {
+        return transition(connectionId, PlaybackState.PAUSED, positionMs);
+    }
+    
+    @Override
+    public PlaybackSession resume(String connectionId, Long positionMs) {
+        return transition(connectionId, PlaybackState.PLAYING, positionMs);
+    }
+    
+    @Override
+    public synchronized PlaybackSession stop(String connectionId, Long positionMs) {
+        long now = System.currentTimeMillis();
+        int slot = requireSlot(connectionId);
+        checkTransition(slot, PlaybackState.STOPPED);
+        
+        positions[slot] = positionMs != null ? positionMs : currentPosition(slot, now);
+        positionAt[slot] = now;
+        states[slot] = (byte) PlaybackState.STOPPED.ordinal();
+        PlaybackSession stopped = snapshot(slot, now);
+        release(slot, PlaybackState.STOPPED, now);
+        return stopped;
+    }
+    
+    @Override
+    public synchronized PlaybackSession heartbeat(String connectionId, Long positionMs) {
+        long now = System.currentTimeMillis();
+        int slot = requireSlot(connectionId);
+        
+        if (positionMs != null) {
+            positions[slot] = positionMs;
+            positionAt[slot] = now;
+            markDirty(slot);
+        }
+        heartbeatAt[slot] = now;
+        return snapshot(slot, now);
+    }
+    
+    @Override
+    public synchronized void close(String connectionId) {
+        Integer slot = slotByConnection.get(connectionId);
+        if (slot != null) {
+            // A dropped connection counts as a pause so the listener can pick up from here
+            release(slot, PlaybackState.PAUSED, System.currentTimeMillis());
+        }
+    }
+    
+    @Override
+    public Optional<PlaybackSession> getResumePosition(String userId, String mediaId) {
+        if (!isPersistent(userId)) {
+            return Optional.empty();
+        }
+        
+        String key = key(userId, mediaId);
+        synchronized (this) {
+            Integer slot = slotByUserMedia.get(key);
+            if (slot != null) {
+                return Optional.of(snapshot(slot, System.currentTimeMillis()));
+            }
+            PositionRow row = pending.get(key);
+            if (row != null) {
+                return Optional.of(row.toSession());
+            }
+        }
+        
+        try {
+            List<PlaybackSession> rows = jdbcTemplate.query(SELECT, (rs, rowNum) -> new PlaybackSession(
+                    null,
+                    userId,
+                    mediaId,
+                    PlaybackState.valueOf(rs.getString("state")),
+                    rs.getLong("position_ms"),
+                    rs.getTimestamp("updated_at").toInstant()
+            ), userId, mediaId);
+            return rows.stream().findFirst();
+        } catch (DataAccessException e) {
+            LOG.warn("Error reading playback position for user {} and media {}", userId, mediaId, e);
+            return Optional.empty();
+        }
+    }
+    
+    @Override
+    @Scheduled(fixedDelayString = "${app.playback.flush-interval-ms:5000}")
+    public void flush() {
+        Map<String, PositionRow> batch;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            for (int slot = dirty.nextSetBit(0); slot >= 0; slot = dirty.nextSetBit(slot + 1)) {
+                pending.put(key(userIds[slot], mediaIds[slot]), row(slot, now));
+            }
+            dirty.clear();
+            
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+        }
+        
+        List<Object[]> args = new ArrayList<>(batch.size());
+        for (PositionRow row : batch.values()) {
+            args.add(new Object[] {
+                    row.userId(), row.mediaId(), row.positionMs(), row.state().name(), Timestamp.from(Instant.ofEpochMilli(row.updatedAt()))
+            });
+        }
+        
+        try {
+            jdbcTemplate.batchUpdate(UPSERT, args);
+            LOG.debug("Flushed {} playback positions", args.size());
+        } catch (DataAccessException e) {
+            LOG.warn("Error flushing {} playback positions, will retry", args.size(), e);
+            synchronized (this) {
+                // Anything written since is newer than what failed
+                batch.forEach(pending::putIfAbsent);
+            }
+        }
+    }
+    
+    /**
+     * Release sessions whose client stopped sending heartbeats
+     */
+    @Scheduled(fixedDelayString = "${app.playback.reap-interval-ms:30000}")
+    public synchronized void reapIdle() {
+        long now = System.currentTimeMillis();
+        int reaped = 0;
+        for (int slot = used.nextSetBit(0); slot >= 0; slot = used.nextSetBit(slot + 1)) {
+            if (now - heartbeatAt[slot] > idleTimeoutMs) {
+                release(slot, PlaybackState.PAUSED, now);
+                reaped++;
+            }
+        }
+        if (reaped > 0) {
+            LOG.info("Released {} idle playback sessions", reaped);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+    
+    private synchronized PlaybackSession transition(String connectionId, PlaybackState target, Long positionMs) {
+        long now = System.currentTimeMillis();
+        int slot = requireSlot(connectionId);
+        checkTransition(slot, target);
+        
+        if (positionMs != null) {
+            positions[slot] = positionMs;
+        } else if (target == PlaybackState.PAUSED) {
+            positions[slot] = currentPosition(slot, now);
+        }
+        positionAt[slot] = now;
+        heartbeatAt[slot] = now;
+        states[slot] = (byte) target.ordinal();
+        markDirty(slot);
+        return snapshot(slot, now);
+    }
+    
+    private int requireSlot(String connectionId) {
+        Integer slot = slotByConnection.get(connectionId);
+        if (slot == null) {
+            throw new IllegalStateException("Nothing is playing");
+        }
+        return slot;
+    }
+    
+    private void checkTransition(int slot, PlaybackState target) {
+        PlaybackState current = STATES[states[slot]];
+        if (!TRANSITIONS[current.ordinal()][target.ordinal()]) {
+            throw new IllegalStateException("Cannot go from " + current + " to " + target);
+        }
+    }
+    
+    /**
+     * Estimated position, advancing with the clock while playing
+     */
+    private long currentPosition(int slot, long now) {
+        if (states[slot] == PlaybackState.PLAYING.ordinal()) {
+            return positions[slot] + (now - positionAt[slot]);
+        }
+        return positions[slot];
+    }
+    
+    private void markDirty(int slot) {
+        if (isPersistent(userIds[slot])) {
+            dirty.set(slot);
+        }
+    }
+    
+    /**
+     * Free a slot, queueing its final position for the next flush
+     */
+    private void release(int slot, PlaybackState finalState, long now) {
+        if (isPersistent(userIds[slot])) {
+            if (states[slot] != PlaybackState.STOPPED.ordinal()) {
+                positions[slot] = currentPosition(slot, now);
+                positionAt[slot] = now;
+                states[slot] = (byte) finalState.ordinal();
+            }
+            String key = key(userIds[slot], mediaIds[slot]);
+            pending.put(key, row(slot, now));
+            slotByUserMedia.remove(key, slot);
+        }
+        
+        slotByConnection.remove(connectionIds[slot]);
+        connectionIds[slot] = null;
+        sessionIds[slot] = null;
+        userIds[slot] = null;
+        mediaIds[slot] = null;
+        used.clear(slot);
+        dirty.clear(slot);
+        freeSlots[freeCount++] = slot;
+    }
+    
+    private int acquire() {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (highWater == positions.length) {
+                allocate(positions.length * 2);
+            }
+            slot = highWater++;
+        }
+        used.set(slot);
+        return slot;
+    }
+    
+    private void allocate(int capacity) {
+        connectionIds = connectionIds == null ? new String[capacity] : Arrays.copyOf(connectionIds, capacity);
+        sessionIds = sessionIds == null ? new String[capacity] : Arrays.copyOf(sessionIds, capacity);
+        userIds = userIds == null ? new String[capacity] : Arrays.copyOf(userIds, capacity);
+        mediaIds = mediaIds == null ? new String[capacity] : Arrays.copyOf(mediaIds, capacity);
+        states = states == null ? new byte[capacity] : Arrays.copyOf(states, capacity);
+        positions = positions == null ? new long[capacity] : Arrays.copyOf(positions, capacity);
+        positionAt = positionAt == null ? new long[capacity] : Arrays.copyOf(positionAt, capacity);
+        heartbeatAt = heartbeatAt == null ? new long[capacity] : Arrays.copyOf(heartbeatAt, capacity);
+        freeSlots = freeSlots == null ? new int[capacity] : Arrays.copyOf(freeSlots, capacity);
+    }
+    
+    private PlaybackSession snapshot(int slot, long now) {
+        return new PlaybackSession(
+                sessionIds[slot],
+                userIds[slot],
+                mediaIds[slot],
+                STATES[states[slot]],
+                currentPosition(slot, now),
+                Instant.ofEpochMilli(now)
+        );
+    }
+    
+    private PositionRow row(int slot, long now) {
+        return new PositionRow(userIds[slot], mediaIds[slot], currentPosition(slot, now), STATES[states[slot]], now);
+    }
+    
+    private static boolean isPersistent(String userId) {
+        return userId != null && !"anonymous".equals(userId);
+    }
+    
+    private static String key(String userId, String mediaId) {
+        return userId + '\u0000' + mediaId;
+    }
+    
+    private static void allow(PlaybackState from, PlaybackState to) {
+        TRANSITIONS[from.ordinal()][to.ordinal()] = true;
+    }
+    
+    private record PositionRow(String userId, String mediaId, long positionMs, PlaybackState state, long updatedAt) {
+        
+        PlaybackSession toSession() {
+            return new PlaybackSession(null, userId, mediaId, state, positionMs, Instant.ofEpochMilli(updatedAt));
+        }
+    }
+}
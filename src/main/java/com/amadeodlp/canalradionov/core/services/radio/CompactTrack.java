@@ -0,0 +1,27 @@
+package com.amadeodlp.canalradionov.core.services.radio;
+
+import com.amadeodlp.canalradionov.core.model.lastfm.TrackInfo;
+
+import java.util.List;
+
+/**
+ * The form a track takes in the lastFm cache: no wiki body, which lives in its own cache, and
+ * shared instances for the strings and tag lists that repeat across tracks.
+ */
+record CompactTrack(
+    String name,
+    String artist,
+    String album,
+    String url,
+    String imageUrl,
+    int listeners,
+    int playCount,
+    boolean isLoved,
+    List<String> tags,
+    boolean hasWiki
+) {
+    
+    TrackInfo toTrackInfo(String wiki) {
+        return new TrackInfo(name, artist, album, url, imageUrl, listeners, playCount, wiki, isLoved, tags.toArray(new String[0]));
+    }
+}
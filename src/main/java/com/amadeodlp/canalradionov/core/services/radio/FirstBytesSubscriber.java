@@ -0,0 +1,80 @@
+package com.amadeodlp.canalradionov.core.services.radio;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Collects the first bytes of a response body, then cancels the rest, so an endless stream
+ * can be sampled. A limit of 0 just waits for the first chunk.
+ */
+class FirstBytesSubscriber implements HttpResponse.BodySubscriber<byte[]> {
+    private final byte[] buffer;
+    private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+    private volatile Flow.Subscription subscription;
+    private volatile long respondedAt;
+    private int length;
+    
+    FirstBytesSubscriber(int limit) {
+        this.buffer = new byte[limit];
+    }
+    
+    /**
+     * Mark when the response headers arrived, for use as the body handler's result
+     */
+    FirstBytesSubscriber responded() {
+        respondedAt = System.nanoTime();
+        return this;
+    }
+    
+    long respondedAt() {
+        return respondedAt;
+    }
+    
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+    
+    @Override
+    public void onNext(List<ByteBuffer> items) {
+        for (ByteBuffer item : items) {
+            int count = Math.min(item.remaining(), buffer.length - length);
+            item.get(buffer, length, count);
+            length += count;
+        }
+        if (length == buffer.length) {
+            subscription.cancel();
+            result.complete(buffer);
+        } else {
+            subscription.request(1);
+        }
+    }
+    
+    @Override
+    public void onError(Throwable throwable) {
+        result.completeExceptionally(throwable);
+    }
+    
+    @Override
+    public void onComplete() {
+        result.complete(Arrays.copyOf(buffer, length));
+    }
+    
+    @Override
+    public CompletionStage<byte[]> getBody() {
+        return result;
+    }
+    
+    void cancel() {
+        Flow.Subscription current = subscription;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.amadeodlp.canalradionov.core.services.radio;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Maps free-form station tags to canonical genres.
+ * Every keyword of a taxonomy is compiled into one Aho-Corasick automaton, stored as a dense
+ * transition table, so a tag is classified in a single case-insensitive scan with no allocation,
+ * whatever the number of keywords. A keyword matches anywhere in a tag, so "80s pop" is both
+ * 80s and pop. Genres can have a parent (punk is rock), and a match also counts for its ancestors.
+ * Classifications are bit masks with one bit per genre.
+ */
+public class GenreClassifier {
+    
+    public static final int MAX_GENRES = Long.SIZE;
+    
+    private static final Map<String, List<String>> DEFAULT_TAXONOMY = new LinkedHashMap<>();
+    private static final Map<String, String> DEFAULT_PARENTS = new HashMap<>();
+    
+    static {
+        DEFAULT_TAXONOMY.put("music", List.of("music"));
+        DEFAULT_TAXONOMY.put("pop", List.of("pop"));
+        DEFAULT_TAXONOMY.put("rock", List.of("rock"));
+        DEFAULT_TAXONOMY.put("punk", List.of("punk"));
+        DEFAULT_TAXONOMY.put("metal", List.of("metal"));
+        DEFAULT_TAXONOMY.put("indie", List.of("indie"));
+        DEFAULT_TAXONOMY.put("jazz", List.of("jazz"));
+        DEFAULT_TAXONOMY.put("blues", List.of("blues"));
+        DEFAULT_TAXONOMY.put("soul", List.of("soul", "r&b"));
+        DEFAULT_TAXONOMY.put("hip-hop", List.of("hip hop"));
+        DEFAULT_TAXONOMY.put("reggae", List.of("reggae"));
+        DEFAULT_TAXONOMY.put("folk", List.of("folk"));
+        DEFAULT_TAXONOMY.put("country", List.of("country"));
+        DEFAULT_TAXONOMY.put("classical", List.of("classical"));
+        DEFAULT_TAXONOMY.put("electronic", List.of("electronic"));
+        DEFAULT_TAXONOMY.put("dance", List.of("dance"));
+        DEFAULT_TAXONOMY.put("disco", List.of("disco"));
+        DEFAULT_TAXONOMY.put("house", List.of("house"));
+        DEFAULT_TAXONOMY.put("techno", List.of("techno"));
+        DEFAULT_TAXONOMY.put("hits", List.of("hits", "top", "charts"));
+        DEFAULT_TAXONOMY.put("80s", List.of("80s"));
+        DEFAULT_TAXONOMY.put("90s", List.of("90s"));
+        DEFAULT_TAXONOMY.put("00s", List.of("00s"));
+        
+        DEFAULT_PARENTS.put("punk", "rock");
+        DEFAULT_PARENTS.put("metal", "rock");
+        DEFAULT_PARENTS.put("house", "electronic");
+        DEFAULT_PARENTS.put("techno", "electronic");
+        DEFAULT_PARENTS.put("disco", "dance");
+    }
+    
+    private final String[] genres;
+    private final Map<String, Integer> genreIds = new HashMap<>();
+    
+    // Dense class per ASCII char, -1 if no keyword uses it; other chars are looked up in the map
+    private final int[] asciiClasses = new int[128];
+    private final Map<Character, Integer> otherClasses = new HashMap<>();
+    private final int alphabetSize;
+    
+    // next[state * alphabetSize + class] and the genres matched on entering each state
+    private final int[] next;
+    private final long[] matches;
+    
+    private GenreClassifier(Map<String, List<String>> keywordsByGenre, Map<String, String> parents) {
+        if (keywordsByGenre.size() > MAX_GENRES) {
+            throw new IllegalArgumentException("At most " + MAX_GENRES + " genres are supported, got " + keywordsByGenre.size());
+        }
+        
+        this.genres = keywordsByGenre.keySet().toArray(new String[0]);
+        for (int id = 0; id < genres.length; id++) {
+            genreIds.put(genres[id].toLowerCase(Locale.ROOT), id);
+        }
+        long[] lineage = lineage(parents);
+        
+        // Alphabet: every distinct (lower-cased) char used by a keyword
+        Arrays.fill(asciiClasses, -1);
+        int classes = 0;
+        for (List<String> keywords : keywordsByGenre.values()) {
+            for (String keyword : keywords) {
+                for (char c : keyword.toLowerCase(Locale.ROOT).toCharArray()) {
+                    if (classOf(c) < 0) {
+                        if (c < 128) {
+                            asciiClasses[c] = classes++;
+                        } else {
+                            otherClasses.put(c, classes++);
+                        }
+                    }
+                }
+            }
+        }
+        this.alphabetSize = Math.max(1, classes);
+        
+        // Trie of the keywords
+        List<int[]> trie = new ArrayList<>();
+        List<Long> output = new ArrayList<>();
+        trie.add(newNode(alphabetSize));
+        output.add(0L);
+        for (int id = 0; id < genres.length; id++) {
+            for (String keyword : keywordsByGenre.get(genres[id])) {
+                String lower = keyword.toLowerCase(Locale.ROOT);
+                if (lower.isEmpty()) {
+                    continue;
+                }
+                int state = 0;
+                for (int i = 0; i < lower.length(); i++) {
+                    int c = classOf(lower.charAt(i));
+                    if (trie.get(state)[c] < 0) {
+                        trie.get(state)[c] = trie.size();
+                        trie.add(newNode(alphabetSize));
+                        output.add(0L);
+                    }
+                    state = trie.get(state)[c];
+                }
+                output.set(state, output.get(state) | lineage[id]);
+            }
+        }
+        
+        // Breadth-first: fill missing transitions from the failure state, so the table is a complete DFA
+        this.next = new int[trie.size() * alphabetSize];
+        this.matches = new long[trie.size()];
+        int[] failure = new int[trie.size()];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        
+        for (int c = 0; c < alphabetSize; c++) {
+            int child = trie.get(0)[c];
+            if (child > 0) {
+                next[c] = child;
+                failure[child] = 0;
+                queue.add(child);
+            }
+        }
+        matches[0] = output.get(0);
+        
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            matches[state] = output.get(state) | matches[failure[state]];
+            for (int c = 0; c < alphabetSize; c++) {
+                int child = trie.get(state)[c];
+                if (child > 0) {
+                    next[state * alphabetSize + c] = child;
+                    failure[child] = next[failure[state] * alphabetSize + c];
+                    queue.add(child);
+                } else {
+                    next[state * alphabetSize + c] = next[failure[state] * alphabetSize + c];
+                }
+            }
+        }
+    }
+    
+    /**
+     * Compile a taxonomy
+     * 
+     * @param keywordsByGenre Canonical genre names to the keywords that identify them, in a stable order
+     * @param parents Canonical genre to its parent genre, for genres that have one
+     */
+    public static GenreClassifier compile(Map<String, List<String>> keywordsByGenre, Map<String, String> parents) {
+        return new GenreClassifier(keywordsByGenre, parents);
+    }
+    
+    /**
+     * The built-in taxonomy, covering the keywords the music filter has always used
+     */
+    public static GenreClassifier defaults() {
+        return compile(DEFAULT_TAXONOMY, DEFAULT_PARENTS);
+    }
+    
+    /**
+     * Genres a tag belongs to, including ancestors
+     * 
+     * @return A mask with bit n set for {@link #genre(int) genre n}, 0 if the tag is not music
+     */
+    public long classify(CharSequence tag) {
+        long found = 0;
+        int state = 0;
+        for (int i = 0; i < tag.length(); i++) {
+            int c = classOf(Character.toLowerCase(tag.charAt(i)));
+            state = c < 0 ? 0 : next[state * alphabetSize + c];
+            found |= matches[state];
+        }
+        return found;
+    }
+    
+    public boolean isMusic(CharSequence tag) {
+        int state = 0;
+        for (int i = 0; i < tag.length(); i++) {
+            int c = classOf(Character.toLowerCase(tag.charAt(i)));
+            state = c < 0 ? 0 : next[state * alphabetSize + c];
+            if (matches[state] != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Canonical names of the genres in a mask
+     */
+    public List<String> genres(long mask) {
+        List<String> names = new ArrayList<>(Long.bitCount(mask));
+        for (long rest = mask; rest != 0; rest &= rest - 1) {
+            names.add(genres[Long.numberOfTrailingZeros(rest)]);
+        }
+        return names;
+    }
+    
+    public int genreCount() {
+        return genres.length;
+    }
+    
+    public String genre(int id) {
+        return genres[id];
+    }
+    
+    /**
+     * Id of a canonical genre, or -1 if the taxonomy does not have it
+     */
+    public int genreId(String genre) {
+        Integer id = genreIds.get(genre.toLowerCase(Locale.ROOT));
+        return id != null ? id : -1;
+    }
+    
+    private int classOf(char c) {
+        if (c < 128) {
+            return asciiClasses[c];
+        }
+        Integer cls = otherClasses.get(c);
+        return cls != null ? cls : -1;
+    }
+    
+    /**
+     * Mask of each genre and all its ancestors
+     */
+    private long[] lineage(Map<String, String> parents) {
+        long[] lineage = new long[genres.length];
+        for (int id = 0; id < genres.length; id++) {
+            int current = id;
+            // Bounded by the genre count, so a cycle in the configuration cannot loop forever
+            for (int depth = 0; current >= 0 && depth < genres.length; depth++) {
+                lineage[id] |= 1L << current;
+                String parent = parents.get(genres[current]);
+                current = parent != null ? genreId(parent) : -1;
+            }
+        }
+        return lineage;
+    }
+    
+    private static int[] newNode(int alphabetSize) {
+        int[] children = new int[alphabetSize];
+        Arrays.fill(children, -1);
+        return children;
+    }
+}
@@ -0,0 +1,152 @@
+package com.amadeodlp.canalradionov.core.services.radio;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Reads the StreamTitle out of an ICY stream, then cancels it.
+ * The server interleaves a metadata block after every {@code metaInt} audio bytes: one length byte
+ * (in units of 16) followed by that many bytes of text. Audio bytes are only counted and skipped,
+ * never copied. Empty blocks mean "unchanged", so up to {@code maxBlocks} blocks are read looking
+ * for a title. Completes with null if none is found.
+ */
+class IcyMetadataSubscriber implements HttpResponse.BodySubscriber<String> {
+    private static final String TITLE_START = "StreamTitle='";
+    
+    private final int metaInt;
+    private final int maxBlocks;
+    private final CompletableFuture<String> result = new CompletableFuture<>();
+    private volatile Flow.Subscription subscription;
+    
+    private long audioRemaining;
+    private byte[] metadata;
+    private int metadataLength;
+    private int blocks;
+    
+    IcyMetadataSubscriber(int metaInt, int maxBlocks) {
+        this.metaInt = metaInt;
+        this.maxBlocks = maxBlocks;
+        this.audioRemaining = metaInt;
+    }
+    
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+    
+    @Override
+    public void onNext(List<ByteBuffer> items) {
+        for (ByteBuffer item : items) {
+            if (consume(item)) {
+                subscription.cancel();
+                return;
+            }
+        }
+        subscription.request(1);
+    }
+    
+    @Override
+    public void onError(Throwable throwable) {
+        result.completeExceptionally(throwable);
+    }
+    
+    @Override
+    public void onComplete() {
+        result.complete(null);
+    }
+    
+    @Override
+    public CompletionStage<String> getBody() {
+        return result;
+    }
+    
+    void cancel() {
+        Flow.Subscription current = subscription;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+    
+    /**
+     * Advance through one chunk
+     * 
+     * @return Whether the result is settled and the stream can be dropped
+     */
+    private boolean consume(ByteBuffer item) {
+        while (item.hasRemaining()) {
+            if (audioRemaining > 0) {
+                int skip = (int) Math.min(audioRemaining, item.remaining());
+                item.position(item.position() + skip);
+                audioRemaining -= skip;
+            } else if (metadata == null) {
+                metadata = new byte[(item.get() & 0xFF) * 16];
+                metadataLength = 0;
+            } else {
+                int count = Math.min(metadata.length - metadataLength, item.remaining());
+                item.get(metadata, metadataLength, count);
+                metadataLength += count;
+            }
+            
+            if (metadata != null && metadataLength == metadata.length) {
+                String title = metadata.length > 0 ? streamTitle(decode(metadata)) : null;
+                blocks++;
+                metadata = null;
+                audioRemaining = metaInt;
+                if (title != null || blocks >= maxBlocks) {
+                    result.complete(title);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * The StreamTitle value of a metadata block, or null if it has none.
+     * Titles may contain quotes, so the value runs to the last "';" rather than the first quote.
+     */
+    static String streamTitle(String block) {
+        int start = block.indexOf(TITLE_START);
+        if (start < 0) {
+            return null;
+        }
+        start += TITLE_START.length();
+        int end = block.indexOf("';", start);
+        if (end < 0) {
+            end = block.lastIndexOf('\'');
+        }
+        if (end < start) {
+            return null;
+        }
+        String title = block.substring(start, end).trim();
+        return title.isEmpty() ? null : title;
+    }
+    
+    /**
+     * ICY has no declared charset: UTF-8 if it decodes cleanly, otherwise Latin-1. Trailing NUL padding is dropped.
+     */
+    static String decode(byte[] bytes) {
+        int length = bytes.length;
+        while (length > 0 && bytes[length - 1] == 0) {
+            length--;
+        }
+        try {
+            CharBuffer chars = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(bytes, 0, length));
+            return chars.toString();
+        } catch (CharacterCodingException e) {
+            return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.amadeodlp.canalradionov.core.services.radio;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Token bucket shared by every Last.fm call.
+ * Tokens refill at a steady rate up to a burst size, and each upstream request takes one, so
+ * the average request rate stays under the API limit however many callers there are.
+ */
+@Component
+public class LastFmRequestBudget {
+    
+    private final double tokensPerNano;
+    private final double burst;
+    
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+    
+    public LastFmRequestBudget(
+            @Value("${app.lastfm.budget.requests-per-second:4}") double requestsPerSecond,
+            @Value("${app.lastfm.budget.burst:10}") int burst) {
+        this.tokensPerNano = requestsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.tokens = burst;
+    }
+    
+    /**
+     * Take a token, waiting at most the given time for one
+     * 
+     * @return Whether a token was taken
+     */
+    public boolean acquire(long timeout, TimeUnit unit) throws InterruptedException {
+        // Elapsed time rather than a deadline, which would overflow for very long timeouts
+        long timeoutNanos = unit.toNanos(timeout);
+        long started = System.nanoTime();
+        while (true) {
+            long wait = tryAcquire();
+            if (wait == 0) {
+                return true;
+            }
+            long remaining = timeoutNanos - (System.nanoTime() - started);
+            if (remaining <= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(Math.min(wait, remaining));
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+    
+    /**
+     * Take a token if one is available
+     * 
+     * @return 0 if a token was taken, otherwise the nanoseconds until the next one
+     */
+    synchronized long tryAcquire() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerNano));
+    }
+}
@@ -1,19 +1,28 @@
 package com.amadeodlp.canalradionov.core.services.radio;
 
+import com.amadeodlp.canalradionov.core.exceptions.UpstreamUnavailableException;
+import com.amadeodlp.canalradionov.core.model.lastfm.CachedTrack;
 import com.amadeodlp.canalradionov.core.model.lastfm.TrackInfo;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.github.benmanes.caffeine.cache.Interner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.text.Normalizer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 @Service
 public class LastFmService {
@@ -23,22 +32,150 @@ public class LastFmService {
     private final String API_KEY;
     private final String BASE_URL = "https://ws.audioscrobbler.com/2.0/";
     
+    // Last.fm error code for an unknown artist or track; every other error is an outage
+    private static final int ERROR_NOT_FOUND = 6;
+    
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    
+    private final SingleFlight inFlight = new SingleFlight();
+    private final LastFmRequestBudget budget;
+    private final long budgetWaitMs;
+    
+    // Tracks are cached compact; wiki bodies are large and rarely read, so they are kept apart
+    private final Cache trackCache;
+    private final Cache wikiCache;
+    
+    // Artist, album and tag names repeat across many tracks
+    private final Interner<String> strings = Interner.newWeakInterner();
+    private final Interner<List<String>> tagLists = Interner.newWeakInterner();
+    
     public LastFmService(
-            RestTemplate restTemplate,
-            @Value("${lastfm.api.key:REPLACE_WITH_YOUR_API_KEY}") String apiKey) {
+            @Qualifier("lastFmRestTemplate") RestTemplate restTemplate,
+            LastFmRequestBudget budget,
+            CacheManager cacheManager,
+            @Value("${lastfm.api.key:REPLACE_WITH_YOUR_API_KEY}") String apiKey,
+            @Value("${app.lastfm.resolver.wait-ms:5000}") long budgetWaitMs) {
         this.restTemplate = restTemplate;
+        this.budget = budget;
+        this.trackCache = cacheManager.getCache("lastFm");
+        this.wikiCache = cacheManager.getCache("lastFmWiki");
         this.API_KEY = apiKey;
+        this.budgetWaitMs = budgetWaitMs;
+    }
+    
+    /**
+     * Key of a track in the lastFm cache. Spelling variants of the same track share one key:
+     * Unicode compatibility forms are folded, whitespace collapsed and case ignored.
+     */
+    public static String trackKey(String artist, String trackName) {
+        return "track-" + normalizeKey(artist) + '\u001f' + normalizeKey(trackName);
     }
     
-    @Cacheable(value = "lastFm", key = "'track-' + #artist + '-' + #trackName")
+    static String normalizeKey(String value) {
+        if (value == null) {
+            return "";
+        }
+        String folded = Normalizer.normalize(value, Normalizer.Form.NFKC);
+        return WHITESPACE.matcher(folded.strip()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+    
+    /**
+     * Full track details, wiki included.
+     * Uncached lookups wait for the shared request budget. Use {@link TrackInfoResolver} instead of calling
+     * this directly, so lookups are queued by priority and deduplicated.
+     */
     public Optional<TrackInfo> getTrackInfo(String artist, String trackName) {
-        LOG.info("Fetching track info for: {} - {}", artist, trackName);
-        
         if (artist == null || artist.isEmpty() || trackName == null || trackName.isEmpty()) {
             LOG.warn("Artist or track name is empty");
             return Optional.empty();
         }
         
+        String key = trackKey(artist, trackName);
+        CompactTrack track;
+        try {
+            track = trackCache.get(key, () -> compact(key, fetchShared(key, artist, trackName)));
+        } catch (Cache.ValueRetrievalException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+        
+        if (track == null) {
+            return Optional.empty();
+        }
+        if (!track.hasWiki()) {
+            return Optional.of(track.toTrackInfo(""));
+        }
+        String wiki = wikiCache.get(key, String.class);
+        if (wiki != null) {
+            return Optional.of(track.toTrackInfo(wiki));
+        }
+        
+        // The wiki was evicted on its own; fetch the track again to get it back
+        Optional<TrackInfo> full = fetchShared(key, artist, trackName);
+        trackCache.put(key, compact(key, full));
+        return full;
+    }
+    
+    /**
+     * A cached track, never calling Last.fm
+     * 
+     * @param withWiki Whether the wiki must be cached too for this to count as a hit; without it the wiki is left empty
+     */
+    public CachedTrack peekTrackInfo(String artist, String trackName, boolean withWiki) {
+        String key = trackKey(artist, trackName);
+        Cache.ValueWrapper wrapper = trackCache.get(key);
+        if (wrapper == null) {
+            return CachedTrack.miss();
+        }
+        CompactTrack track = (CompactTrack) wrapper.get();
+        if (track == null) {
+            return CachedTrack.absent();
+        }
+        if (!withWiki || !track.hasWiki()) {
+            return CachedTrack.hit(track.toTrackInfo(""));
+        }
+        String wiki = wikiCache.get(key, String.class);
+        return wiki != null ? CachedTrack.hit(track.toTrackInfo(wiki)) : CachedTrack.miss();
+    }
+    
+    private Optional<TrackInfo> fetchShared(String key, String artist, String trackName) {
+        LOG.info("Fetching track info for: {} - {}", artist, trackName);
+        return inFlight.execute(key, () -> fetchTrackInfo(artist, trackName));
+    }
+    
+    /**
+     * Cache form of a fetched track, with the wiki moved out to its own cache
+     * 
+     * @return The compact track, or null if Last.fm does not know it
+     */
+    private CompactTrack compact(String key, Optional<TrackInfo> fetched) {
+        if (fetched.isEmpty()) {
+            return null;
+        }
+        TrackInfo track = fetched.get();
+        boolean hasWiki = track.wiki() != null && !track.wiki().isEmpty();
+        if (hasWiki) {
+            wikiCache.put(key, track.wiki());
+        }
+        
+        List<String> tags = new ArrayList<>(track.tags().length);
+        for (String tag : track.tags()) {
+            tags.add(strings.intern(tag));
+        }
+        return new CompactTrack(
+            track.name(),
+            strings.intern(track.artist()),
+            strings.intern(track.album()),
+            track.url(),
+            track.imageUrl(),
+            track.listeners(),
+            track.playCount(),
+            track.isLoved(),
+            tagLists.intern(List.copyOf(tags)),
+            hasWiki
+        );
+    }
+    
+    private Optional<TrackInfo> fetchTrackInfo(String artist, String trackName) {
         try {
             String url = UriComponentsBuilder.fromHttpUrl(BASE_URL)
                     .queryParam("method", "track.getInfo")
@@ -49,13 +186,22 @@ public class LastFmService {
                     .build()
                     .toUriString();
             
+            // Taken here rather than by callers, so background cache refreshes are paced too
+            if (!budget.acquire(budgetWaitMs, TimeUnit.MILLISECONDS)) {
+                throw new UpstreamUnavailableException("Last.fm request budget exhausted", null);
+            }
             JsonNode response = restTemplate.getForObject(url, JsonNode.class);
             
-            if (response == null || response.has("error")) {
-                if (response != null && response.has("error")) {
-                    LOG.warn("LastFm API error: {}", response.get("message").asText());
+            if (response == null) {
+                throw new UpstreamUnavailableException("Empty response from Last.fm", null);
+            }
+            
+            if (response.has("error")) {
+                LOG.warn("LastFm API error: {}", response.get("message").asText());
+                if (response.get("error").asInt() == ERROR_NOT_FOUND) {
+                    return Optional.empty();
                 }
-                return Optional.empty();
+                throw new UpstreamUnavailableException("Last.fm error " + response.get("error").asInt(), null);
             }
             
             JsonNode trackNode = response.get("track");
@@ -131,35 +277,60 @@ public class LastFmService {
             
             LOG.info("Successfully fetched track info for: {} - {}", artist, trackName);
             return Optional.of(trackInfo);
-            
+        
+        } catch (UpstreamUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             LOG.error("Error fetching track info: {}", e.getMessage(), e);
-            return Optional.empty();
+            throw new UpstreamUnavailableException("Last.fm track lookup failed", e);
         }
     }
     
-    @Cacheable(value = "lastFm", key = "'search-' + #searchTerm")
-    public List<TrackInfo> searchTracks(String searchTerm, int limit) {
-        LOG.info("Searching LastFm for tracks matching: {}", searchTerm);
-        
-        if (searchTerm == null || searchTerm.isEmpty()) {
+    /**
+     * One page of Last.fm's track search, cached per normalized term, page size and page.
+     * {@link TrackSearchService} pages through these with prefetching.
+     * 
+     * @param page The page number, from 1
+     */
+    public List<TrackInfo> searchPage(String searchTerm, int page, int limit) {
+        if (searchTerm == null || searchTerm.isBlank()) {
             LOG.warn("Search term is empty");
-            return new ArrayList<>();
+            return List.of();
         }
         
+        String key = "search-" + normalizeKey(searchTerm) + '\u001f' + limit + '\u001f' + page;
+        try {
+            return trackCache.get(key, () -> inFlight.execute(key, () -> fetchSearchResults(searchTerm, page, limit)));
+        } catch (Cache.ValueRetrievalException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+    
+    private List<TrackInfo> fetchSearchResults(String searchTerm, int page, int limit) {
+        LOG.info("Searching LastFm for tracks matching: {} (page {})", searchTerm, page);
+        
         try {
             String url = UriComponentsBuilder.fromHttpUrl(BASE_URL)
                     .queryParam("method", "track.search")
                     .queryParam("api_key", API_KEY)
                     .queryParam("track", searchTerm)
                     .queryParam("limit", limit)
+                    .queryParam("page", page)
                     .queryParam("format", "json")
                     .build()
                     .toUriString();
             
+            // Searches are interactive, so they take from the shared budget directly instead of queueing
+            if (!budget.acquire(budgetWaitMs, TimeUnit.MILLISECONDS)) {
+                throw new UpstreamUnavailableException("Last.fm request budget exhausted", null);
+            }
             JsonNode response = restTemplate.getForObject(url, JsonNode.class);
             
-            if (response == null || !response.has("results") || 
+            if (response == null || response.has("error")) {
+                throw new UpstreamUnavailableException("Last.fm search returned an error", null);
+            }
+            
+            if (!response.has("results") || 
                 !response.get("results").has("trackmatches") ||
                 !response.get("results").get("trackmatches").has("track")) {
                 return new ArrayList<>();
@@ -199,10 +370,12 @@ public class LastFmService {
             }
             
             return results;
-            
+        
+        } catch (UpstreamUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             LOG.error("Error searching for tracks: {}", e.getMessage(), e);
-            return new ArrayList<>();
+            throw new UpstreamUnavailableException("Last.fm track search failed", e);
         }
     }
 }
@@ -0,0 +1,213 @@
+package com.amadeodlp.canalradionov.core.services.radio;
+
+import com.amadeodlp.canalradionov.core.model.lastfm.TrackInfo;
+import com.amadeodlp.canalradionov.core.model.radio.NowPlaying;
+import com.amadeodlp.canalradionov.core.model.radio.ResolvedStream;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tells what a station is playing from the ICY metadata in its stream.
+ * The stream is opened with {@code Icy-MetaData: 1} and read only up to the first metadata block
+ * with a title, skipping the audio in between. Titles are kept per station in the radioNowPlaying
+ * cache for a short time, and callers asking about the same station while it is being read share
+ * that one connection. Stations that fail or send no title are cached as having none, so they are
+ * not retried until the entry expires. Titles of the form "Artist - Title" are enriched with Last.fm details.
+ */
+@Service
+public class NowPlayingService {
+    private static final Logger LOG = LoggerFactory.getLogger(NowPlayingService.class);
+    
+    // Cached for stations that answer without a title or not at all, so they are not reopened on every request
+    private static final String NO_TITLE = "";
+    
+    private final RadioBrowserService radioBrowserService;
+    private final StreamUrlResolver streamUrlResolver;
+    private final TrackInfoResolver trackInfoResolver;
+    private final Cache cache;
+    private final HttpClient httpClient;
+    private final ExecutorService executor;
+    private final SingleFlight inFlight = new SingleFlight();
+    private final String userAgent;
+    private final Duration timeout;
+    private final long deadlineMs;
+    private final int maxBlocks;
+    private final int maxMetaInt;
+    private final long enrichWaitMs;
+    
+    public NowPlayingService(
+            RadioBrowserService radioBrowserService,
+            StreamUrlResolver streamUrlResolver,
+            TrackInfoResolver trackInfoResolver,
+            CacheManager cacheManager,
+            @Value("${app.radio.user-agent:CanalRadioNov/1.0}") String userAgent,
+            @Value("${app.radio.now-playing.timeout-ms:5000}") long timeoutMs,
+            @Value("${app.radio.now-playing.deadline-ms:10000}") long deadlineMs,
+            @Value("${app.radio.now-playing.max-blocks:3}") int maxBlocks,
+            @Value("${app.radio.now-playing.max-meta-int:65536}") int maxMetaInt,
+            @Value("${app.radio.now-playing.enrich-wait-ms:1000}") long enrichWaitMs) {
+        this.radioBrowserService = radioBrowserService;
+        this.streamUrlResolver = streamUrlResolver;
+        this.trackInfoResolver = trackInfoResolver;
+        this.cache = cacheManager.getCache("radioNowPlaying");
+        this.userAgent = userAgent;
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.deadlineMs = deadlineMs;
+        this.maxBlocks = maxBlocks;
+        this.maxMetaInt = maxMetaInt;
+        this.enrichWaitMs = enrichWaitMs;
+        
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "now-playing-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(executor)
+                .build();
+    }
+    
+    /**
+     * What a station is playing right now
+     * 
+     * @return The current title, with an empty title if the station sends none or cannot be reached,
+     *         or empty if the station is unknown
+     */
+    public Optional<NowPlaying> nowPlaying(String stationId) {
+        if (!radioBrowserService.isKnownStation(stationId)) {
+            return Optional.empty();
+        }
+        
+        String streamTitle = cache.get(stationId, String.class);
+        if (streamTitle == null) {
+            streamTitle = inFlight.execute(stationId, () -> readStation(stationId));
+        }
+        
+        return Optional.of(streamTitle.isEmpty()
+                ? new NowPlaying(stationId, null, null, null, null)
+                : describe(stationId, streamTitle));
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+    
+    /**
+     * Resolve the station's stream and read its title, both within the deadline. The outcome is cached
+     * either way, failures as no title.
+     * 
+     * @return The title, or NO_TITLE if there is none
+     */
+    private String readStation(String stationId) {
+        long started = System.nanoTime();
+        ResolvedStream stream = streamUrlResolver.resolve(stationId);
+        
+        long remainingMs = deadlineMs - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        String title = null;
+        if (stream != null && stream.resolvedUrl() != null && remainingMs > 0) {
+            try {
+                title = readTitle(stream.resolvedUrl(), remainingMs).join();
+            } catch (CompletionException e) {
+                LOG.debug("Could not read metadata of station {}: {}", stationId, e.getCause().getMessage());
+            }
+        }
+        String result = title != null ? title : NO_TITLE;
+        cache.put(stationId, result);
+        return result;
+    }
+    
+    private CompletableFuture<String> readTitle(String url, long timeoutMs) {
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(timeout)
+                    .header("User-Agent", userAgent)
+                    .header("Icy-MetaData", "1")
+                    .GET()
+                    .build();
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        
+        // Streams without metadata are dropped after their first chunk
+        AtomicReference<Runnable> cancel = new AtomicReference<>();
+        HttpResponse.BodyHandler<String> handler = info -> {
+            int metaInt = metaInt(info);
+            if (info.statusCode() / 100 != 2 || metaInt <= 0 || metaInt > maxMetaInt) {
+                FirstBytesSubscriber skip = new FirstBytesSubscriber(0);
+                cancel.set(skip::cancel);
+                return HttpResponse.BodySubscribers.mapping(skip, bytes -> null);
+            }
+            IcyMetadataSubscriber metadata = new IcyMetadataSubscriber(metaInt, maxBlocks);
+            cancel.set(metadata::cancel);
+            return metadata;
+        };
+        
+        return PublicHttp.send(httpClient, request, handler)
+                .orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .whenComplete((response, error) -> {
+                    if (error != null && cancel.get() != null) {
+                        cancel.get().run();
+                    }
+                })
+                .thenApply(HttpResponse::body);
+    }
+    
+    private static int metaInt(HttpResponse.ResponseInfo info) {
+        try {
+            return (int) info.headers().firstValueAsLong("icy-metaint").orElse(0);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+    
+    /**
+     * Split "Artist - Title" and add Last.fm details if they arrive in time.
+     * A lookup that takes longer still completes into the lastFm cache for the next caller.
+     */
+    private NowPlaying describe(String stationId, String streamTitle) {
+        int separator = streamTitle.indexOf(" - ");
+        if (separator < 0) {
+            return new NowPlaying(stationId, streamTitle, null, streamTitle, null);
+        }
+        
+        String artist = streamTitle.substring(0, separator).trim();
+        String title = streamTitle.substring(separator + 3).trim();
+        TrackInfo track = null;
+        try {
+            track = trackInfoResolver.lookup(artist, title, TrackInfoResolver.Priority.BATCH)
+                    .get(enrichWaitMs, TimeUnit.MILLISECONDS)
+                    .orElse(null);
+        } catch (TimeoutException | ExecutionException e) {
+            LOG.debug("No Last.fm details yet for {} - {}", artist, title);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return new NowPlaying(stationId, streamTitle, artist, title, track);
+    }
+}
@@ -0,0 +1,94 @@
+package com.amadeodlp.canalradionov.core.services.radio;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * HTTP requests to station-supplied URLs, which must not reach into our own network.
+ * Every hop is checked before it is opened: the host must resolve only to public addresses, so
+ * loopback, private, link-local (cloud metadata included), unique local and multicast targets are
+ * refused. Redirects are therefore followed here, with clients set to {@code Redirect.NEVER}.
+ */
+final class PublicHttp {
+    
+    // The same limit the JDK client applies with Redirect.NORMAL
+    static final int MAX_REDIRECTS = 5;
+    
+    private PublicHttp() {
+    }
+    
+    /**
+     * Send a GET, following redirects that stay on public addresses
+     * 
+     * @param handler Applied to the final response only; redirect bodies are discarded
+     */
+    static <T> CompletableFuture<HttpResponse<T>> send(HttpClient client, HttpRequest request,
+                                                        HttpResponse.BodyHandler<T> handler) {
+        return send(client, request, handler, MAX_REDIRECTS);
+    }
+    
+    private static <T> CompletableFuture<HttpResponse<T>> send(HttpClient client, HttpRequest request,
+                                                                HttpResponse.BodyHandler<T> handler, int redirectsLeft) {
+        try {
+            requirePublic(request.uri());
+        } catch (UnknownHostException | IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        
+        HttpResponse.BodyHandler<T> skipRedirects = info -> isRedirect(info.statusCode(), info.headers())
+                ? HttpResponse.BodySubscribers.replacing(null)
+                : handler.apply(info);
+        
+        return client.sendAsync(request, skipRedirects).thenCompose(response -> {
+            if (!isRedirect(response.statusCode(), response.headers())) {
+                return CompletableFuture.completedFuture(response);
+            }
+            if (redirectsLeft <= 0) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Too many redirects from " + request.uri()));
+            }
+            URI next = request.uri().resolve(response.headers().firstValue("Location").orElseThrow().trim());
+            HttpRequest redirected = HttpRequest.newBuilder(request, (name, value) -> true).uri(next).build();
+            return send(client, redirected, handler, redirectsLeft - 1);
+        });
+    }
+    
+    /**
+     * @throws IllegalArgumentException If the URL is not http(s) or its host resolves to a non-public address
+     */
+    static void requirePublic(URI uri) throws UnknownHostException {
+        String scheme = uri.getScheme();
+        if (!"http".equalsIgnoreCase(scheme) && !"https".equalsIgnoreCase(scheme) || uri.getHost() == null) {
+            throw new IllegalArgumentException("Not an http(s) URL: " + uri);
+        }
+        for (InetAddress address : InetAddress.getAllByName(uri.getHost())) {
+            if (!isPublic(address)) {
+                throw new IllegalArgumentException("Refusing non-public address " + address.getHostAddress() + " for " + uri.getHost());
+            }
+        }
+    }
+    
+    static boolean isPublic(InetAddress address) {
+        if (address.isAnyLocalAddress() || address.isLoopbackAddress() || address.isLinkLocalAddress()
+                || address.isSiteLocalAddress() || address.isMulticastAddress()) {
+            return false;
+        }
+        byte[] bytes = address.getAddress();
+        if (bytes.length == 16) {
+            // fc00::/7, unique local
+            return (bytes[0] & 0xfe) != 0xfc;
+        }
+        // 0.0.0.0/8 and 100.64.0.0/10, carrier-grade NAT
+        return bytes[0] != 0 && !((bytes[0] & 0xff) == 100 && (bytes[1] & 0xc0) == 64);
+    }
+    
+    private static boolean isRedirect(int status, HttpHeaders headers) {
+        return (status == 301 || status == 302 || status == 303 || status == 307 || status == 308)
+                && headers.firstValue("Location").isPresent();
+    }
+}
@@ -0,0 +1,192 @@
+package com.amadeodlp.canalradionov.core.services.radio;
+
+import com.amadeodlp.canalradionov.core.model.radio.RadioStationDto;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Incremental decoding of Radio Browser responses.
+ * Arrays are read one element at a time with Jackson's streaming parser, and each element is
+ * mapped or dropped before the next one is read. Only what is kept costs memory, however large
+ * the response is.
+ */
+final class RadioBrowserJson {
+    
+    private static final JsonFactory JSON = new JsonFactory();
+    
+    private RadioBrowserJson() {
+    }
+    
+    /**
+     * Read a station array, passing each station to the consumer.
+     * The same {@link StationFields} instance is reused for every element, so consumers must copy
+     * what they keep.
+     */
+    static void readStations(InputStream body, Consumer<StationFields> consumer) throws IOException {
+        try (JsonParser parser = JSON.createParser(body)) {
+            expectArray(parser);
+            StationFields station = new StationFields();
+            
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                station.clear();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    parser.nextToken();
+                    switch (field) {
+                        case "stationuuid" -> station.stationuuid = parser.getValueAsString();
+                        case "name" -> station.name = parser.getValueAsString();
+                        case "url" -> station.url = parser.getValueAsString();
+                        case "url_resolved" -> station.urlResolved = parser.getValueAsString();
+                        case "favicon" -> station.favicon = parser.getValueAsString();
+                        case "tags" -> station.tags = parser.getValueAsString();
+                        case "country" -> station.country = parser.getValueAsString();
+                        case "countrycode" -> station.countryCode = parser.getValueAsString();
+                        case "language" -> station.language = parser.getValueAsString();
+                        case "codec" -> station.codec = parser.getValueAsString();
+                        case "bitrate" -> station.bitrate = parser.getValueAsInt();
+                        case "hls" -> station.hls = parser.getValueAsInt() == 1;
+                        case "votes" -> station.votes = parser.getValueAsInt();
+                        case "clickcount" -> station.clickCount = parser.getValueAsInt();
+                        case "clicktrend" -> station.clickTrend = parser.getValueAsInt();
+                        case "lastcheckok" -> station.online = parser.getValueAsInt() == 1;
+                        default -> parser.skipChildren();
+                    }
+                }
+                consumer.accept(station);
+            }
+        }
+    }
+    
+    /**
+     * Read the stations of a response into client DTOs
+     */
+    static List<RadioStationDto> readStationDtos(InputStream body) throws IOException {
+        List<RadioStationDto> stations = new ArrayList<>();
+        readStations(body, station -> {
+            if (station.stationuuid != null) {
+                stations.add(station.toDto());
+            }
+        });
+        return stations;
+    }
+    
+    /**
+     * Read a /tags response, keeping only the names of tags with enough stations that pass the filter
+     */
+    static List<String> readTagNames(InputStream body, int minStations, Predicate<String> filter) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (JsonParser parser = JSON.createParser(body)) {
+            expectArray(parser);
+            
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                String name = null;
+                int count = 0;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    parser.nextToken();
+                    switch (field) {
+                        case "name" -> name = parser.getValueAsString();
+                        case "stationcount" -> count = parser.getValueAsInt();
+                        default -> parser.skipChildren();
+                    }
+                }
+                if (name != null && count >= minStations && filter.test(name)) {
+                    names.add(name);
+                }
+            }
+        }
+        return names;
+    }
+    
+    private static void expectArray(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new JsonParseException(parser, "Expected a JSON array from Radio Browser");
+        }
+    }
+    
+    /**
+     * The station fields this service uses, as named by the Radio Browser API
+     */
+    static final class StationFields {
+        String stationuuid;
+        String name;
+        String url;
+        String urlResolved;
+        String favicon;
+        String tags;
+        String country;
+        String countryCode;
+        String language;
+        String codec;
+        int bitrate;
+        boolean hls;
+        int votes;
+        int clickCount;
+        int clickTrend;
+        boolean online;
+        
+        void clear() {
+            stationuuid = name = url = urlResolved = favicon = tags = null;
+            country = countryCode = language = codec = null;
+            bitrate = votes = clickCount = clickTrend = 0;
+            hls = online = false;
+        }
+        
+        String streamUrl() {
+            return urlResolved != null && !urlResolved.isEmpty() ? urlResolved : url;
+        }
+        
+        String normalizedCountryCode() {
+            return countryCode != null && !countryCode.isEmpty() ? countryCode.toUpperCase(Locale.ROOT) : null;
+        }
+        
+        RadioStationDto toDto() {
+            String streamUrl = streamUrl();
+            return new RadioStationDto(
+                stationuuid,
+                name != null ? name.trim() : "",
+                streamUrl,
+                favicon != null && !favicon.isEmpty() ? favicon : null,
+                normalizedCountryCode(),
+                language,
+                codec,
+                bitrate,
+                streamUrl != null && streamUrl.startsWith("https://"),
+                String.join(", ", RadioStationIndex.splitList(tags)),
+                online
+            );
+        }
+        
+        void addTo(StationCatalog.Builder catalog) {
+            String streamUrl = streamUrl();
+            catalog.add(
+                stationuuid,
+                name != null ? name.trim() : "",
+                streamUrl,
+                favicon,
+                RadioStationIndex.splitList(tags),
+                country,
+                normalizedCountryCode(),
+                language,
+                codec,
+                bitrate,
+                streamUrl != null && streamUrl.startsWith("https://"),
+                votes,
+                clickCount,
+                clickTrend,
+                online,
+                hls
+            );
+        }
+    }
+}
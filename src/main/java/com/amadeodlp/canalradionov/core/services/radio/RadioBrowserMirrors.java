@@ -0,0 +1,395 @@
+package com.amadeodlp.canalradionov.core.services.radio;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Pool of Radio Browser API mirrors.
+ * Mirrors are discovered from the DNS records of the official round-robin name (or configured
+ * explicitly), picked at random weighted by their smoothed latency, and hedged: if the first
+ * mirror has not answered within the recent p95 latency, the same request goes to a second mirror
+ * and whichever answers first wins. Mirrors that keep failing, or are far slower than the rest,
+ * are ejected for a while; the last healthy mirror is never ejected.
+ */
+@Service
+public class RadioBrowserMirrors {
+    private static final Logger LOG = LoggerFactory.getLogger(RadioBrowserMirrors.class);
+    
+    // Weight of the newest sample in the smoothed latency
+    private static final double EWMA_ALPHA = 0.2;
+    
+    // A mirror this many times slower than the median is an outlier
+    private static final double OUTLIER_FACTOR = 3.0;
+    
+    private static final int SAMPLE_WINDOW = 256;
+    
+    private final List<String> configuredMirrors;
+    private final String discoveryHost;
+    private final String fallbackUrl;
+    private final Duration minHedgeDelay;
+    private final Duration maxHedgeDelay;
+    private final int failureThreshold;
+    private final Duration ejection;
+    
+    private volatile List<Mirror> mirrors = List.of();
+    
+    // Recent successful latencies across all mirrors, for the hedge delay
+    private final long[] samples = new long[SAMPLE_WINDOW];
+    private int sampleCount;
+    private volatile long p95Nanos;
+    
+    private final ExecutorService executor;
+    
+    @Autowired
+    public RadioBrowserMirrors(
+            @Value("${app.radio.mirrors:}") List<String> configuredMirrors,
+            @Value("${app.radio.discovery-host:all.api.radio-browser.info}") String discoveryHost,
+            @Value("${app.radio.base-url:https://de1.api.radio-browser.info/json}") String fallbackUrl,
+            @Value("${app.radio.hedge.min-delay-ms:50}") long minHedgeDelayMs,
+            @Value("${app.radio.hedge.max-delay-ms:2000}") long maxHedgeDelayMs,
+            @Value("${app.radio.ejection.failure-threshold:3}") int failureThreshold,
+            @Value("${app.radio.ejection.seconds:60}") long ejectionSeconds,
+            @Value("${app.radio.max-concurrent-requests:32}") int maxConcurrentRequests) {
+        this(configuredMirrors, discoveryHost, fallbackUrl, Duration.ofMillis(minHedgeDelayMs),
+                Duration.ofMillis(maxHedgeDelayMs), failureThreshold, Duration.ofSeconds(ejectionSeconds),
+                maxConcurrentRequests);
+    }
+    
+    RadioBrowserMirrors(List<String> configuredMirrors, String discoveryHost, String fallbackUrl,
+                        Duration minHedgeDelay, Duration maxHedgeDelay, int failureThreshold, Duration ejection,
+                        int maxConcurrentRequests) {
+        this.configuredMirrors = configuredMirrors.stream().filter(url -> !url.isBlank()).map(String::trim).toList();
+        this.discoveryHost = discoveryHost;
+        this.fallbackUrl = fallbackUrl;
+        this.minHedgeDelay = minHedgeDelay;
+        this.maxHedgeDelay = maxHedgeDelay;
+        this.failureThreshold = failureThreshold;
+        this.ejection = ejection;
+        this.p95Nanos = maxHedgeDelay.toNanos();
+        
+        AtomicInteger threadCount = new AtomicInteger();
+        // Saturation runs the attempt on the caller, which just means no hedge for that call
+        this.executor = new ThreadPoolExecutor(
+                0, maxConcurrentRequests, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "radio-mirror-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        
+        refresh();
+    }
+    
+    /**
+     * Run a request against the pool, hedged with a second mirror when the first is slow
+     * 
+     * @param call Performs the request given a mirror's base URL, e.g. https://de1.api.radio-browser.info/json
+     * @return The first successful result
+     */
+    public <T> T execute(Function<String, T> call) {
+        return execute(call, true);
+    }
+    
+    /**
+     * Run a request against the pool
+     * 
+     * @param call Performs the request given a mirror's base URL
+     * @param hedge Whether a second mirror may be tried while the first is still running;
+     *              use false for large transfers
+     * @return The first successful result
+     */
+    public <T> T execute(Function<String, T> call, boolean hedge) {
+        Mirror primary = pick(null);
+        CompletableFuture<T> first = attempt(primary, call);
+        
+        CompletableFuture<T> second = null;
+        try {
+            if (hedge) {
+                try {
+                    return first.get(hedgeDelay().toNanos(), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    Mirror secondary = pick(primary);
+                    if (secondary != null) {
+                        LOG.debug("Hedging request to {} after {} ms", secondary.baseUrl, hedgeDelay().toMillis());
+                        second = attempt(secondary, call);
+                    }
+                } catch (ExecutionException e) {
+                    // Failed fast: go straight to another mirror
+                    Mirror secondary = pick(primary);
+                    if (secondary == null) {
+                        throw unwrap(e);
+                    }
+                    return attempt(secondary, call).join();
+                }
+            }
+            
+            if (second == null) {
+                return first.join();
+            }
+            return firstSuccessful(first, second);
+        } catch (CompletionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for Radio Browser", e);
+        } finally {
+            first.cancel(true);
+            if (second != null) {
+                second.cancel(true);
+            }
+        }
+    }
+    
+    /**
+     * Base URLs of the mirrors currently in rotation
+     */
+    public List<String> healthyMirrors() {
+        long now = System.nanoTime();
+        return mirrors.stream().filter(mirror -> mirror.isHealthy(now)).map(mirror -> mirror.baseUrl).toList();
+    }
+    
+    /**
+     * Re-resolve the mirror list, keeping the statistics of mirrors that are still listed
+     */
+    @Scheduled(
+        initialDelayString = "${app.radio.discovery-interval-ms:600000}",
+        fixedDelayString = "${app.radio.discovery-interval-ms:600000}"
+    )
+    public void refresh() {
+        List<String> urls = configuredMirrors.isEmpty() ? discover() : configuredMirrors;
+        if (urls.isEmpty()) {
+            urls = List.of(fallbackUrl);
+        }
+        
+        Map<String, Mirror> existing = new LinkedHashMap<>();
+        for (Mirror mirror : mirrors) {
+            existing.put(mirror.baseUrl, mirror);
+        }
+        
+        List<Mirror> refreshed = new ArrayList<>();
+        for (String url : urls) {
+            refreshed.add(existing.getOrDefault(url, new Mirror(url)));
+        }
+        mirrors = List.copyOf(refreshed);
+        LOG.info("Radio Browser mirrors: {}", urls);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+    
+    private List<String> discover() {
+        try {
+            // Each A record of the round-robin name reverse-resolves to a named mirror
+            List<String> urls = Arrays.stream(InetAddress.getAllByName(discoveryHost))
+                    .map(InetAddress::getCanonicalHostName)
+                    .filter(host -> !Character.isDigit(host.charAt(host.length() - 1)) && !host.contains(":"))
+                    .distinct()
+                    .sorted()
+                    .map(host -> "https://" + host + "/json")
+                    .toList();
+            if (urls.isEmpty()) {
+                LOG.warn("No named mirrors found behind {}", discoveryHost);
+            }
+            return urls;
+        } catch (UnknownHostException e) {
+            LOG.warn("Could not resolve {}: {}", discoveryHost, e.getMessage());
+            return List.of();
+        }
+    }
+    
+    private <T> CompletableFuture<T> attempt(Mirror mirror, Function<String, T> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            long started = System.nanoTime();
+            try {
+                T result = call.apply(mirror.baseUrl);
+                long elapsed = System.nanoTime() - started;
+                mirror.recordSuccess(elapsed);
+                recordSample(elapsed);
+                ejectOutliers();
+                return result;
+            } catch (RuntimeException e) {
+                recordFailure(mirror);
+                throw e;
+            }
+        }, executor);
+    }
+    
+    private <T> T firstSuccessful(CompletableFuture<T> first, CompletableFuture<T> second) {
+        try {
+            return CompletableFuture.anyOf(first, second).thenApply(result -> {
+                @SuppressWarnings("unchecked")
+                T value = (T) result;
+                return value;
+            }).join();
+        } catch (CompletionException e) {
+            // One failed first; the other may still succeed
+            CompletableFuture<T> other = first.isCompletedExceptionally() ? second : first;
+            return other.join();
+        }
+    }
+    
+    /**
+     * Weighted random choice among healthy mirrors, weight inverse to smoothed latency
+     */
+    private Mirror pick(Mirror exclude) {
+        long now = System.nanoTime();
+        List<Mirror> candidates = new ArrayList<>();
+        for (Mirror mirror : mirrors) {
+            if (mirror != exclude && mirror.isHealthy(now)) {
+                candidates.add(mirror);
+            }
+        }
+        if (candidates.isEmpty()) {
+            if (exclude != null) {
+                return null;
+            }
+            // Everything is ejected: try the one that comes back soonest
+            return mirrors.stream().min(Comparator.comparingLong(mirror -> mirror.ejectedUntil)).orElseThrow();
+        }
+        
+        double[] weights = new double[candidates.size()];
+        double total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = 1.0 / Math.max(1.0, candidates.get(i).ewmaMillis());
+            total += weights[i];
+        }
+        double target = ThreadLocalRandom.current().nextDouble(total);
+        for (int i = 0; i < weights.length; i++) {
+            target -= weights[i];
+            if (target <= 0) {
+                return candidates.get(i);
+            }
+        }
+        return candidates.get(candidates.size() - 1);
+    }
+    
+    private Duration hedgeDelay() {
+        long nanos = Math.max(minHedgeDelay.toNanos(), Math.min(maxHedgeDelay.toNanos(), p95Nanos));
+        return Duration.ofNanos(nanos);
+    }
+    
+    private synchronized void recordSample(long nanos) {
+        samples[sampleCount % SAMPLE_WINDOW] = nanos;
+        sampleCount++;
+        
+        // Recomputed every few samples rather than on every request
+        if (sampleCount % 16 == 0 || sampleCount < 16) {
+            long[] window = Arrays.copyOf(samples, Math.min(sampleCount, SAMPLE_WINDOW));
+            Arrays.sort(window);
+            p95Nanos = window[(int) Math.ceil(window.length * 0.95) - 1];
+        }
+    }
+    
+    private void recordFailure(Mirror mirror) {
+        if (mirror.recordFailure() >= failureThreshold) {
+            eject(mirror, "failed " + failureThreshold + " times in a row");
+        }
+    }
+    
+    private void ejectOutliers() {
+        long now = System.nanoTime();
+        List<Mirror> healthy = mirrors.stream().filter(mirror -> mirror.isHealthy(now) && mirror.hasSamples()).toList();
+        if (healthy.size() < 3) {
+            return;
+        }
+        
+        double[] latencies = healthy.stream().mapToDouble(Mirror::ewmaMillis).sorted().toArray();
+        double median = latencies[latencies.length / 2];
+        for (Mirror mirror : healthy) {
+            if (mirror.ewmaMillis() > median * OUTLIER_FACTOR) {
+                eject(mirror, String.format("latency %.0f ms against median %.0f ms", mirror.ewmaMillis(), median));
+            }
+        }
+    }
+    
+    private synchronized void eject(Mirror mirror, String reason) {
+        long now = System.nanoTime();
+        long healthy = mirrors.stream().filter(other -> other.isHealthy(now)).count();
+        if (healthy <= 1 || !mirror.isHealthy(now)) {
+            return;
+        }
+        
+        // Each ejection in a row lasts twice as long as the one before, capped at 16x
+        int streak;
+        synchronized (mirror) {
+            streak = Math.min(mirror.ejections++, 4);
+        }
+        mirror.ejectedUntil = now + ejection.toNanos() * (1L << streak);
+        mirror.consecutiveFailures = 0;
+        LOG.warn("Ejecting Radio Browser mirror {}: {}", mirror.baseUrl, reason);
+    }
+    
+    private static class Mirror {
+        final String baseUrl;
+        
+        // Guarded by this
+        private double ewmaNanos;
+        private boolean sampled;
+        
+        volatile long ejectedUntil = System.nanoTime();
+        volatile int consecutiveFailures;
+        private int ejections;
+        
+        Mirror(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+        
+        boolean isHealthy(long now) {
+            return ejectedUntil - now <= 0;
+        }
+        
+        synchronized boolean hasSamples() {
+            return sampled;
+        }
+        
+        synchronized double ewmaMillis() {
+            // Unmeasured mirrors look average so they get tried
+            return sampled ? ewmaNanos / 1_000_000 : 100;
+        }
+        
+        synchronized void recordSuccess(long nanos) {
+            ewmaNanos = sampled ? EWMA_ALPHA * nanos + (1 - EWMA_ALPHA) * ewmaNanos : nanos;
+            sampled = true;
+            consecutiveFailures = 0;
+            ejections = 0;
+        }
+        
+        synchronized int recordFailure() {
+            return ++consecutiveFailures;
+        }
+    }
+    
+    private static RuntimeException unwrap(Throwable e) {
+        Throwable cause = e.getCause() != null ? e.getCause() : e;
+        return cause instanceof RuntimeException runtime ? runtime : new IllegalStateException(cause);
+    }
+}
@@ -1,11 +1,14 @@
 package com.amadeodlp.canalradionov.core.services.radio;
 
+import com.amadeodlp.canalradionov.core.exceptions.UpstreamUnavailableException;
 import com.amadeodlp.canalradionov.core.model.radio.RadioFilter;
-import com.amadeodlp.canalradionov.core.model.radio.RadioStation;
 import com.amadeodlp.canalradionov.core.model.radio.RadioStationDto;
+import com.amadeodlp.canalradionov.core.model.radio.StationFacets;
+import com.amadeodlp.canalradionov.core.model.radio.StationSuggestion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
@@ -13,11 +16,12 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.RequestCallback;
 import org.springframework.web.client.RestTemplate;
 
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Service
@@ -25,131 +29,197 @@ public class RadioBrowserService {
     private static final Logger LOG = LoggerFactory.getLogger(RadioBrowserService.class);
     
     private final RestTemplate restTemplate;
-    private final String BASE_URL = "https://de1.api.radio-browser.info/json";
+    private final RadioStationSync stationSync;
+    private final RadioBrowserMirrors mirrors;
+    private final GenreClassifier genreClassifier;
+    private final SingleFlight inFlight = new SingleFlight();
+    private static final Pattern STATION_ID = Pattern.compile("[0-9a-fA-F]{8}(-[0-9a-fA-F]{4}){3}-[0-9a-fA-F]{12}");
+    
     private final String USER_AGENT = "CanalRadioNov/1.0";
+    private final RequestCallback userAgentHeader = request -> request.getHeaders().set("User-Agent", USER_AGENT);
     
     @Autowired
-    public RadioBrowserService(RestTemplate restTemplate) {
+    public RadioBrowserService(
+            @Qualifier("radioBrowserRestTemplate") RestTemplate restTemplate,
+            RadioStationSync stationSync,
+            RadioBrowserMirrors mirrors,
+            GenreClassifier genreClassifier) {
         this.restTemplate = restTemplate;
+        this.stationSync = stationSync;
+        this.mirrors = mirrors;
+        this.genreClassifier = genreClassifier;
     }
     
-    @Cacheable(value = "radioBrowser", key = "'stations-' + #filter.toString()")
+    // Only upstream results are cached; once synced, searches are answered from the local index
+    @Cacheable(value = "radioBrowser", key = "'stations-' + #filter.toString()",
+            condition = "@radioStationSync.currentIndex() == null", sync = true)
     public List<RadioStationDto> getStations(RadioFilter filter) {
+        RadioStationIndex index = stationSync.currentIndex();
+        if (index != null) {
+            LOG.debug("Searching {} synced stations with filter: {}", index.size(), filter);
+            return index.search(filter);
+        }
+        
+        return inFlight.execute("stations-" + filter, () -> fetchStations(filter));
+    }
+    
+    private List<RadioStationDto> fetchStations(RadioFilter filter) {
         LOG.info("Fetching radio stations with filter: {}", filter);
         
         try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("User-Agent", USER_AGENT);
-            HttpEntity<Void> requestEntity = new HttpEntity<>(headers);
-            
-            String url = BASE_URL + "/stations/search?" + filter.toQueryParameters();
-            LOG.debug("Request URL: {}", url);
+            String path = "/stations/search?" + filter.toQueryParameters();
+            LOG.debug("Request path: {}", path);
             
-            ResponseEntity<RadioStation[]> response = restTemplate.exchange(
-                url,
+            // Decoded while streaming, straight into DTOs
+            List<RadioStationDto> stationDtos = mirrors.execute(baseUrl -> restTemplate.execute(
+                baseUrl + path,
                 HttpMethod.GET,
-                requestEntity,
-                RadioStation[].class
-            );
-            
-            RadioStation[] stations = response.getBody();
+                userAgentHeader,
+                response -> RadioBrowserJson.readStationDtos(response.getBody())
+            ));
             
-            if (stations == null || stations.length == 0) {
+            if (stationDtos == null || stationDtos.isEmpty()) {
                 LOG.info("No stations found for filter: {}", filter);
                 return Collections.emptyList();
             }
             
-            List<RadioStationDto> stationDtos = Arrays.stream(stations)
-                    .map(RadioStation::toDto)
-                    .collect(Collectors.toList());
-            
             LOG.info("Found {} stations matching filter", stationDtos.size());
             return stationDtos;
             
         } catch (Exception e) {
             LOG.error("Error fetching radio stations: {}", e.getMessage(), e);
-            return Collections.emptyList();
+            throw new UpstreamUnavailableException("Radio Browser station search failed", e);
+        }
+    }
+    
+    /**
+     * Facet counts for a filter, computed from the synced index
+     * 
+     * @return The counts, or null if no sync has completed yet
+     */
+    public StationFacets getStationFacets(RadioFilter filter, int limit) {
+        RadioStationIndex index = stationSync.currentIndex();
+        if (index == null) {
+            LOG.warn("Station facets requested before the first sync completed");
+            return null;
+        }
+        return index.facets(filter, limit);
+    }
+    
+    /**
+     * Name suggestions for search-as-you-type, answered from the synced index
+     * 
+     * @return The suggestions, or null if no sync has completed yet
+     */
+    public List<StationSuggestion> suggestStations(String query, int limit) {
+        RadioStationIndex index = stationSync.currentIndex();
+        if (index == null) {
+            return null;
         }
+        return index.suggest(query, limit);
     }
     
-    @Cacheable(value = "radioBrowser", key = "'station-' + #stationId")
+    @Cacheable(value = "radioBrowser", key = "'station-' + #stationId",
+            condition = "@radioStationSync.currentIndex() == null", sync = true)
     public RadioStationDto getStation(String stationId) {
+        RadioStationIndex index = stationSync.currentIndex();
+        if (index != null) {
+            RadioStationDto station = index.get(stationId);
+            if (station != null) {
+                return station;
+            }
+        }
+        
+        return inFlight.execute("station-" + stationId, () -> fetchStation(stationId));
+    }
+    
+    /**
+     * Whether a station ID can be counted without asking upstream: it must be in the synced index,
+     * or look like a Radio Browser UUID while no sync has completed
+     */
+    public boolean isKnownStation(String stationId) {
+        RadioStationIndex index = stationSync.currentIndex();
+        if (index != null) {
+            return index.catalog().positionOf(stationId) >= 0;
+        }
+        return STATION_ID.matcher(stationId).matches();
+    }
+    
+    /**
+     * Whether a station is in the synced index; always false until the first sync completes
+     */
+    public boolean isIndexedStation(String stationId) {
+        RadioStationIndex index = stationSync.currentIndex();
+        return index != null && index.catalog().positionOf(stationId) >= 0;
+    }
+    
+    private RadioStationDto fetchStation(String stationId) {
         LOG.info("Fetching radio station with ID: {}", stationId);
         
         try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("User-Agent", USER_AGENT);
-            HttpEntity<Void> requestEntity = new HttpEntity<>(headers);
-            
-            String url = BASE_URL + "/stations/byuuid/" + stationId;
+            String path = "/stations/byuuid/" + stationId;
             
-            ResponseEntity<RadioStation[]> response = restTemplate.exchange(
-                url,
+            List<RadioStationDto> stations = mirrors.execute(baseUrl -> restTemplate.execute(
+                baseUrl + path,
                 HttpMethod.GET,
-                requestEntity,
-                RadioStation[].class
-            );
-            
-            RadioStation[] stations = response.getBody();
+                userAgentHeader,
+                response -> RadioBrowserJson.readStationDtos(response.getBody())
+            ));
             
-            if (stations == null || stations.length == 0) {
+            if (stations == null || stations.isEmpty()) {
                 LOG.warn("No station found with ID: {}", stationId);
                 return null;
             }
             
-            LOG.info("Successfully fetched station: {}", stations[0].name());
-            return stations[0].toDto();
+            LOG.info("Successfully fetched station: {}", stations.get(0).name());
+            return stations.get(0);
             
         } catch (Exception e) {
             LOG.error("Error fetching radio station: {}", e.getMessage(), e);
-            return null;
+            throw new UpstreamUnavailableException("Radio Browser station lookup failed", e);
         }
     }
     
-    @Cacheable("radioGenres")
+    @Cacheable(value = "radioGenres", sync = true)
     public List<String> getGenres() {
+        return inFlight.execute("genres", this::fetchGenres);
+    }
+    
+    private List<String> fetchGenres() {
         LOG.info("Fetching available radio genres");
         
         try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("User-Agent", USER_AGENT);
-            HttpEntity<Void> requestEntity = new HttpEntity<>(headers);
-            
-            String url = BASE_URL + "/tags";
+            String path = "/tags";
             
-            ResponseEntity<List<TagCount>> response = restTemplate.exchange(
-                url,
+            // Music-related genres with at least 5 stations, filtered while the ~10k tags stream past
+            List<String> musicGenres = mirrors.execute(baseUrl -> restTemplate.execute(
+                baseUrl + path,
                 HttpMethod.GET,
-                requestEntity,
-                new ParameterizedTypeReference<List<TagCount>>() {}
-            );
-            
-            List<TagCount> tags = response.getBody();
+                userAgentHeader,
+                response -> RadioBrowserJson.readTagNames(response.getBody(), 5, genreClassifier::isMusic)
+            ));
             
-            if (tags == null || tags.isEmpty()) {
+            if (musicGenres == null || musicGenres.isEmpty()) {
                 LOG.warn("No genres found");
                 return Collections.emptyList();
             }
-            
-            // Filter to music-related genres with at least 5 stations
-            List<String> musicGenres = tags.stream()
-                    .filter(tag -> tag.count >= 5)
-                    .filter(tag -> isMusicGenre(tag.name))
-                    .map(tag -> tag.name)
-                    .sorted()
-                    .collect(Collectors.toList());
+            Collections.sort(musicGenres);
             
             LOG.info("Found {} music genres", musicGenres.size());
             return musicGenres;
             
         } catch (Exception e) {
             LOG.error("Error fetching radio genres: {}", e.getMessage(), e);
-            return Collections.emptyList();
+            throw new UpstreamUnavailableException("Radio Browser genre list failed", e);
         }
     }
     
-    @Cacheable("radioCountries")
+    @Cacheable(value = "radioCountries", sync = true)
     public List<CountryInfo> getCountries() {
+        return inFlight.execute("countries", this::fetchCountries);
+    }
+    
+    private List<CountryInfo> fetchCountries() {
         LOG.info("Fetching available radio countries");
         
         try {
@@ -157,14 +227,14 @@ public class RadioBrowserService {
             headers.set("User-Agent", USER_AGENT);
             HttpEntity<Void> requestEntity = new HttpEntity<>(headers);
             
-            String url = BASE_URL + "/countries";
+            String path = "/countries";
             
-            ResponseEntity<List<CountryInfo>> response = restTemplate.exchange(
-                url,
+            ResponseEntity<List<CountryInfo>> response = mirrors.execute(baseUrl -> restTemplate.exchange(
+                baseUrl + path,
                 HttpMethod.GET,
                 requestEntity,
                 new ParameterizedTypeReference<List<CountryInfo>>() {}
-            );
+            ));
             
             List<CountryInfo> countries = response.getBody();
             
@@ -184,27 +254,11 @@ public class RadioBrowserService {
             
         } catch (Exception e) {
             LOG.error("Error fetching radio countries: {}", e.getMessage(), e);
-            return Collections.emptyList();
+            throw new UpstreamUnavailableException("Radio Browser country list failed", e);
         }
     }
     
-    // Helper method to determine if a tag is a music genre
-    private boolean isMusicGenre(String tag) {
-        // Basic heuristic - we can expand this list
-        String[] musicKeywords = {"music", "rock", "pop", "jazz", "hip hop", "electronic", "classical", "folk", 
-                                 "indie", "blues", "country", "reggae", "metal", "punk", "soul", "r&b", "disco",
-                                 "hits", "dance", "techno", "house", "top", "charts", "80s", "90s", "00s"};
-        
-        String lowerTag = tag.toLowerCase();
-        return Arrays.stream(musicKeywords).anyMatch(lowerTag::contains);
-    }
-    
     // Helper classes for API responses
-    private static class TagCount {
-        public String name;
-        public int count;
-    }
-    
     public static class CountryInfo {
         public String name;
         public String iso_3166_1;
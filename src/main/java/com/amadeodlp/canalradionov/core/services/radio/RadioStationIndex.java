@@ -0,0 +1,437 @@
+package com.amadeodlp.canalradionov.core.services.radio;
+
+import com.amadeodlp.canalradionov.core.model.radio.RadioFilter;
+import com.amadeodlp.canalradionov.core.model.radio.FacetCount;
+import com.amadeodlp.canalradionov.core.model.radio.RadioStationDto;
+import com.amadeodlp.canalradionov.core.model.radio.StationFacets;
+import com.amadeodlp.canalradionov.core.model.radio.StationSuggestion;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Immutable search index over a {@link StationCatalog}.
+ * Stations are addressed by their catalog position; each tag, country code, country and language
+ * code maps to a compressed bitmap of positions, so a filter is a handful of bitmap ANDs and facet
+ * counts are intersection cardinalities against the result. Each supported order is a precomputed
+ * permutation. A new index is built for every sync and swapped in whole, so lookups need no locking.
+ */
+public class RadioStationIndex {
+    
+    private static final RoaringBitmap NONE = new RoaringBitmap();
+    
+    // Below this share of the catalog, matches are sorted directly instead of walking a whole order
+    private static final int SPARSE_DIVISOR = 16;
+    
+    private final StationCatalog catalog;
+    private final RoaringBitmap all;
+    private final RoaringBitmap[] byTag;
+    private final RoaringBitmap[] byCountryCode;
+    private final RoaringBitmap[] byCountry;
+    private final RoaringBitmap[] byLanguage;
+    private final RoaringBitmap musicStations;
+    private final GenreClassifier genreClassifier;
+    private final RoaringBitmap[] byGenre;
+    private final RoaringBitmap onlineStations;
+    
+    // Online flags with probe results applied, replaced whole by applyHealth
+    private volatile Health health;
+    private final StationNameSearch nameSearch;
+    
+    // Country names are matched case-insensitively
+    private final Map<String, Integer> countryByLowerName = new HashMap<>();
+    
+    // Station positions in each order, ascending, and each position's rank in that order
+    private final Map<String, int[]> orders = new HashMap<>();
+    private final Map<String, int[]> ranks = new HashMap<>();
+    
+    private RadioStationIndex(StationCatalog catalog, GenreClassifier genreClassifier) {
+        this.catalog = catalog;
+        this.genreClassifier = genreClassifier;
+        int size = catalog.size();
+        
+        for (int code = 0; code < catalog.countries().size(); code++) {
+            countryByLowerName.put(catalog.countries().value(code).toLowerCase(Locale.ROOT), code);
+        }
+        
+        IntList[] tags = lists(catalog.tags().size());
+        IntList[] languages = lists(catalog.languages().size());
+        IntList[] countryCodes = lists(catalog.countryCodes().size());
+        IntList[] countries = lists(catalog.countries().size());
+        
+        for (int i = 0; i < size; i++) {
+            for (int offset = catalog.tagStart(i); offset < catalog.tagEnd(i); offset++) {
+                tags[catalog.tagCode(offset)].add(i);
+            }
+            for (int offset = catalog.languageStart(i); offset < catalog.languageEnd(i); offset++) {
+                languages[catalog.languageCode(offset)].add(i);
+            }
+            if (catalog.countryCode(i) >= 0) {
+                countryCodes[catalog.countryCode(i)].add(i);
+            }
+            if (catalog.country(i) >= 0) {
+                countries[catalog.country(i)].add(i);
+            }
+        }
+        
+        this.byTag = toPostings(tags);
+        this.byLanguage = toPostings(languages);
+        this.byCountryCode = toPostings(countryCodes);
+        this.byCountry = toPostings(countries);
+        
+        this.all = new RoaringBitmap();
+        all.add(0L, size);
+        
+        // One pass over the distinct tags: each canonical genre is the union of the tags classified
+        // under it, and music stations are the union of every tag with any genre
+        List<List<RoaringBitmap>> genreTags = new ArrayList<>();
+        for (int id = 0; id < genreClassifier.genreCount(); id++) {
+            genreTags.add(new ArrayList<>());
+        }
+        List<RoaringBitmap> musicTags = new ArrayList<>();
+        for (int code = 0; code < byTag.length; code++) {
+            long genres = genreClassifier.classify(catalog.tags().value(code));
+            if (genres != 0) {
+                musicTags.add(byTag[code]);
+            }
+            for (long rest = genres; rest != 0; rest &= rest - 1) {
+                genreTags.get(Long.numberOfTrailingZeros(rest)).add(byTag[code]);
+            }
+        }
+        this.musicStations = FastAggregation.or(musicTags.iterator());
+        this.byGenre = new RoaringBitmap[genreTags.size()];
+        for (int id = 0; id < byGenre.length; id++) {
+            byGenre[id] = FastAggregation.or(genreTags.get(id).iterator());
+        }
+        
+        this.onlineStations = new RoaringBitmap();
+        for (int i = catalog.onlineStations().nextSetBit(0); i >= 0; i = catalog.onlineStations().nextSetBit(i + 1)) {
+            onlineStations.add(i);
+        }
+        onlineStations.runOptimize();
+        this.health = new Health(onlineStations, NONE);
+        
+        addOrder("votes", sortedBy(catalog::votes));
+        addOrder("clickcount", sortedBy(catalog::clickCount));
+        addOrder("clicktrend", sortedBy(catalog::clickTrend));
+        addOrder("bitrate", sortedBy(catalog::bitrate));
+        addOrder("name", sortedByName());
+        
+        this.nameSearch = StationNameSearch.build(catalog);
+    }
+    
+    /**
+     * Build an index over a station catalog
+     * 
+     * @param catalog All stations
+     * @param genreClassifier Decides which tags make a station a music station, and their canonical genres
+     */
+    public static RadioStationIndex build(StationCatalog catalog, GenreClassifier genreClassifier) {
+        return new RadioStationIndex(catalog, genreClassifier);
+    }
+    
+    public int size() {
+        return catalog.size();
+    }
+    
+    /**
+     * Look up a station by its Radio Browser UUID
+     * 
+     * @return The station, or null if unknown
+     */
+    public RadioStationDto get(String stationId) {
+        int position = catalog.positionOf(stationId);
+        return position >= 0 ? catalog.toDto(position) : null;
+    }
+    
+    /**
+     * Run a filter against the index, with the same meaning as the upstream search.
+     * Stations a probe found dead are left out of online-only searches and ranked last otherwise.
+     */
+    public List<RadioStationDto> search(RadioFilter filter) {
+        RoaringBitmap matches = matching(filter);
+        
+        String orderName = orders.containsKey(filter.order().toLowerCase(Locale.ROOT))
+                ? filter.order().toLowerCase(Locale.ROOT) : "votes";
+        
+        int offset = Math.max(0, filter.offset());
+        List<RadioStationDto> page = new ArrayList<>(Math.max(1, Math.min(filter.limit(), RadioFilter.MAX_LIMIT)));
+        RoaringBitmap dead = RoaringBitmap.and(matches, health.dead());
+        if (dead.isEmpty()) {
+            collect(matches, orderName, filter.reverse(), offset, filter.limit(), page);
+            return page;
+        }
+        
+        RoaringBitmap live = RoaringBitmap.andNot(matches, dead);
+        collect(live, orderName, filter.reverse(), offset, filter.limit(), page);
+        int deadOffset = Math.max(0, offset - live.getCardinality());
+        collect(dead, orderName, filter.reverse(), deadOffset, filter.limit(), page);
+        return page;
+    }
+    
+    /**
+     * Append matches in the given order, after skipping offset of them, until the page is full
+     */
+    private void collect(RoaringBitmap matches, String orderName, boolean reverse, int offset, int pageSize,
+                         List<RadioStationDto> page) {
+        if (page.size() >= pageSize) {
+            return;
+        }
+        int[] order = orders.get(orderName);
+        
+        if (matches.getCardinality() < order.length / SPARSE_DIVISOR) {
+            // Few matches: sort them by rank rather than scanning the whole order
+            int[] rank = ranks.get(orderName);
+            long[] keys = new long[matches.getCardinality()];
+            int n = 0;
+            for (IntIterator it = matches.getIntIterator(); it.hasNext(); ) {
+                int position = it.next();
+                keys[n++] = ((long) rank[position] << 32) | position;
+            }
+            Arrays.sort(keys);
+            for (int i = offset; i < keys.length && page.size() < pageSize; i++) {
+                page.add(catalog.toDto((int) keys[reverse ? keys.length - 1 - i : i]));
+            }
+            return;
+        }
+        
+        // Walk the requested order, from the top when reversed
+        int skipped = 0;
+        for (int n = 0; n < order.length && page.size() < pageSize; n++) {
+            int position = order[reverse ? order.length - 1 - n : n];
+            if (!matches.contains(position)) {
+                continue;
+            }
+            if (skipped++ < offset) {
+                continue;
+            }
+            page.add(catalog.toDto(position));
+        }
+    }
+    
+    /**
+     * Positions of all stations, most listened to first
+     */
+    public int[] byPopularity() {
+        int[] order = orders.get("clickcount");
+        int[] descending = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            descending[i] = order[order.length - 1 - i];
+        }
+        return descending;
+    }
+    
+    public StationCatalog catalog() {
+        return catalog;
+    }
+    
+    /**
+     * Overlay probe results on the upstream online flags. Stations a probe reached count as online
+     * and stations it could not reach do not, whatever the last upstream check said.
+     * 
+     * @param alive Positions of stations whose stream answered
+     * @param dead Positions of stations whose stream did not
+     */
+    public void applyHealth(RoaringBitmap alive, RoaringBitmap dead) {
+        RoaringBitmap online = RoaringBitmap.andNot(RoaringBitmap.or(onlineStations, alive), dead);
+        online.runOptimize();
+        this.health = new Health(online, dead);
+    }
+    
+    /**
+     * Stations whose name matches what the user is typing
+     * 
+     * @see StationNameSearch#suggest(String, int)
+     */
+    public List<StationSuggestion> suggest(String query, int limit) {
+        return nameSearch.suggest(query, limit);
+    }
+    
+    /**
+     * Count the stations matching a filter per genre, country code and language
+     * 
+     * @param filter The filter, paging and order are ignored
+     * @param limit The maximum number of values per facet, highest counts first
+     */
+    public StationFacets facets(RadioFilter filter, int limit) {
+        RoaringBitmap matches = matching(filter);
+        return new StationFacets(
+                matches.getCardinality(),
+                facet(matches, byTag, catalog.tags(), limit),
+                facet(matches, byCountryCode, catalog.countryCodes(), limit),
+                facet(matches, byLanguage, catalog.languages(), limit)
+        );
+    }
+    
+    private List<FacetCount> facet(RoaringBitmap matches, RoaringBitmap[] postings, StationCatalog.Dictionary values, int limit) {
+        List<FacetCount> counts = new ArrayList<>();
+        if (matches.isEmpty()) {
+            return counts;
+        }
+        for (int code = 0; code < postings.length; code++) {
+            int count = RoaringBitmap.andCardinality(matches, postings[code]);
+            if (count > 0) {
+                counts.add(new FacetCount(values.value(code), count));
+            }
+        }
+        counts.sort(Comparator.comparingInt(FacetCount::count).reversed().thenComparing(FacetCount::value));
+        return counts.size() > limit ? new ArrayList<>(counts.subList(0, limit)) : counts;
+    }
+    
+    private RoaringBitmap matching(RadioFilter filter) {
+        List<RoaringBitmap> required = new ArrayList<>();
+        
+        if (filter.countryCode() != null && !filter.countryCode().isEmpty()) {
+            required.add(postings(byCountryCode, catalog.countryCodes().codeOf(filter.countryCode().toUpperCase(Locale.ROOT))));
+        }
+        if (filter.country() != null && !filter.country().isEmpty()) {
+            required.add(postings(byCountry, countryByLowerName.getOrDefault(filter.country().toLowerCase(Locale.ROOT), -1)));
+        }
+        if (filter.language() != null && !filter.language().isEmpty()) {
+            required.add(postings(byLanguage, catalog.languages().codeOf(filter.language().toLowerCase(Locale.ROOT))));
+        }
+        
+        if (filter.musicOnly() && !filter.genres().isEmpty()) {
+            // Every requested genre has to be present, as with the upstream tagList. A canonical
+            // genre also matches the tags classified under it, so "pop" finds "80s pop"
+            for (String genre : filter.genres()) {
+                int genreId = genreClassifier.genreId(genre);
+                required.add(genreId >= 0
+                        ? byGenre[genreId]
+                        : postings(byTag, catalog.tags().codeOf(genre.toLowerCase(Locale.ROOT))));
+            }
+        } else if (filter.musicOnly()) {
+            required.add(musicStations);
+        }
+        
+        if (filter.onlyOnline()) {
+            required.add(health.online());
+        }
+        
+        RoaringBitmap matches = required.isEmpty()
+                ? all.clone()
+                : FastAggregation.and(required.toArray(new RoaringBitmap[0]));
+        
+        if (filter.name() != null && !filter.name().isEmpty()) {
+            String name = filter.name();
+            RoaringBitmap named = new RoaringBitmap();
+            for (IntIterator it = matches.getIntIterator(); it.hasNext(); ) {
+                int position = it.next();
+                if (containsIgnoreCase(catalog.name(position), name)) {
+                    named.add(position);
+                }
+            }
+            matches = named;
+        }
+        
+        return matches;
+    }
+    
+    private static boolean containsIgnoreCase(String text, String part) {
+        for (int start = 0; start <= text.length() - part.length(); start++) {
+            if (text.regionMatches(true, start, part, 0, part.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static RoaringBitmap postings(RoaringBitmap[] postings, int code) {
+        return code >= 0 ? postings[code] : NONE;
+    }
+    
+    private void addOrder(String name, int[] order) {
+        int[] rank = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            rank[order[i]] = i;
+        }
+        orders.put(name, order);
+        ranks.put(name, rank);
+    }
+    
+    /**
+     * Positions ordered by a numeric column, sorting packed (value, position) longs
+     */
+    private int[] sortedBy(IntUnaryOperator column) {
+        long[] keys = new long[catalog.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = ((long) column.applyAsInt(i) << 32) | i;
+        }
+        Arrays.sort(keys);
+        
+        int[] order = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+    
+    private int[] sortedByName() {
+        Integer[] boxed = new Integer[catalog.size()];
+        for (int i = 0; i < boxed.length; i++) {
+            boxed[i] = i;
+        }
+        Arrays.sort(boxed, Comparator.comparing(catalog::name, String.CASE_INSENSITIVE_ORDER));
+        return Arrays.stream(boxed).mapToInt(Integer::intValue).toArray();
+    }
+    
+    private static IntList[] lists(int count) {
+        IntList[] lists = new IntList[count];
+        for (int i = 0; i < count; i++) {
+            lists[i] = new IntList();
+        }
+        return lists;
+    }
+    
+    private static RoaringBitmap[] toPostings(IntList[] lists) {
+        RoaringBitmap[] postings = new RoaringBitmap[lists.length];
+        for (int i = 0; i < lists.length; i++) {
+            postings[i] = RoaringBitmap.bitmapOf(lists[i].toArray());
+            postings[i].runOptimize();
+        }
+        return postings;
+    }
+    
+    static List<String> splitList(String value) {
+        if (value == null || value.isBlank()) {
+            return List.of();
+        }
+        List<String> values = new ArrayList<>();
+        for (String part : value.split(",")) {
+            String trimmed = part.trim().toLowerCase(Locale.ROOT);
+            if (!trimmed.isEmpty()) {
+                values.add(trimmed);
+            }
+        }
+        return values;
+    }
+    
+    private record Health(RoaringBitmap online, RoaringBitmap dead) {
+    }
+    
+    // Growable int array for building posting lists without boxing
+    private static class IntList {
+        private int[] values = new int[4];
+        private int size;
+        
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+        
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
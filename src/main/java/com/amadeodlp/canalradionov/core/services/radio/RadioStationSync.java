@@ -0,0 +1,104 @@
+package com.amadeodlp.canalradionov.core.services.radio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Pulls the full Radio Browser station list in pages and keeps a local search index over it.
+ * The index is rebuilt off to the side and swapped in when complete; until the first sync
+ * finishes, {@link #currentIndex()} is null and callers fall back to the upstream search.
+ */
+@Service
+public class RadioStationSync {
+    private static final Logger LOG = LoggerFactory.getLogger(RadioStationSync.class);
+    
+    private final RestTemplate restTemplate;
+    private final RadioBrowserMirrors mirrors;
+    private final String userAgent;
+    private final int pageSize;
+    private final GenreClassifier genreClassifier;
+    private final StationPlayCounter playCounter;
+    
+    private volatile RadioStationIndex index;
+    
+    public RadioStationSync(
+            @Qualifier("radioBrowserRestTemplate") RestTemplate restTemplate,
+            RadioBrowserMirrors mirrors,
+            @Value("${app.radio.user-agent:CanalRadioNov/1.0}") String userAgent,
+            @Value("${app.radio.sync.page-size:10000}") int pageSize,
+            GenreClassifier genreClassifier,
+            StationPlayCounter playCounter) {
+        this.restTemplate = restTemplate;
+        this.mirrors = mirrors;
+        this.userAgent = userAgent;
+        this.pageSize = pageSize;
+        this.genreClassifier = genreClassifier;
+        this.playCounter = playCounter;
+    }
+    
+    /**
+     * The index from the last completed sync
+     * 
+     * @return The index, or null if no sync has completed yet
+     */
+    public RadioStationIndex currentIndex() {
+        return index;
+    }
+    
+    @Scheduled(
+        initialDelayString = "${app.radio.sync.initial-delay-ms:10000}",
+        fixedDelayString = "${app.radio.sync.interval-ms:21600000}"
+    )
+    public void sync() {
+        long started = System.currentTimeMillis();
+        StationCatalog.Builder catalog = StationCatalog.builder();
+        int count = 0;
+        
+        try {
+            RequestCallback userAgentHeader = request -> request.getHeaders().set("User-Agent", userAgent);
+            
+            for (int offset = 0; ; offset += pageSize) {
+                String path = "/stations?hidebroken=false&order=stationuuid&limit=" + pageSize + "&offset=" + offset;
+                
+                // Pages are large, so they are not hedged, and they are decoded straight into the catalog
+                Integer pageCount = mirrors.execute(baseUrl -> restTemplate.execute(
+                    baseUrl + path,
+                    HttpMethod.GET,
+                    userAgentHeader,
+                    response -> {
+                        int[] stations = new int[1];
+                        RadioBrowserJson.readStations(response.getBody(), station -> {
+                            stations[0]++;
+                            if (station.stationuuid != null) {
+                                // Our own plays rank alongside the upstream clicks
+                                long clicks = station.clickCount + playCounter.totalPlays(station.stationuuid);
+                                station.clickCount = (int) Math.min(clicks, Integer.MAX_VALUE);
+                                station.addTo(catalog);
+                            }
+                        });
+                        return stations[0];
+                    }
+                ), false);
+                
+                count += pageCount != null ? pageCount : 0;
+                if (pageCount == null || pageCount < pageSize) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            // Keep serving the previous index rather than a partial one
+            LOG.error("Station sync failed after {} stations: {}", count, e.getMessage(), e);
+            return;
+        }
+        
+        index = RadioStationIndex.build(catalog.build(), genreClassifier);
+        LOG.info("Synced {} stations in {} ms", count, System.currentTimeMillis() - started);
+    }
+}
@@ -0,0 +1,363 @@
+package com.amadeodlp.canalradionov.core.services.radio;
+
+import com.amadeodlp.canalradionov.core.model.radio.RadioStationDto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column-oriented store for the full station list.
+ * Each attribute is its own array indexed by station position: numbers are primitive arrays,
+ * flags are bitsets, and repetitive strings (country, codec, language, tags) are dictionary
+ * codes into a shared table. Multi-valued tags and languages are packed as offsets into one
+ * flat code array. DTOs are only materialized for the stations actually returned.
+ */
+public class StationCatalog {
+    
+    private final String[] ids;
+    private final String[] names;
+    private final String[] streamUrls;
+    private final String[] logoUrls;
+    private final int[] countryCodes;
+    private final int[] countries;
+    private final int[] languageLabels;
+    private final int[] codecs;
+    private final int[] bitrates;
+    private final int[] votes;
+    private final int[] clickCounts;
+    private final int[] clickTrends;
+    private final BitSet secure;
+    private final BitSet online;
+    private final BitSet hls;
+    
+    // Tags and language tokens of station i are codes[offsets[i]..offsets[i + 1])
+    private final int[] tagOffsets;
+    private final int[] tagCodes;
+    private final int[] languageOffsets;
+    private final int[] languageCodes;
+    
+    private final Dictionary countryCodeDictionary;
+    private final Dictionary countryDictionary;
+    private final Dictionary languageLabelDictionary;
+    private final Dictionary languageDictionary;
+    private final Dictionary codecDictionary;
+    private final Dictionary tagDictionary;
+    
+    private final Map<String, Integer> positionById;
+    
+    private StationCatalog(Builder builder) {
+        int size = builder.ids.size();
+        this.ids = builder.ids.toArray(new String[0]);
+        this.names = builder.names.toArray(new String[0]);
+        this.streamUrls = builder.streamUrls.toArray(new String[0]);
+        this.logoUrls = builder.logoUrls.toArray(new String[0]);
+        this.countryCodes = Arrays.copyOf(builder.countryCodes, size);
+        this.countries = Arrays.copyOf(builder.countries, size);
+        this.languageLabels = Arrays.copyOf(builder.languageLabels, size);
+        this.codecs = Arrays.copyOf(builder.codecs, size);
+        this.bitrates = Arrays.copyOf(builder.bitrates, size);
+        this.votes = Arrays.copyOf(builder.votes, size);
+        this.clickCounts = Arrays.copyOf(builder.clickCounts, size);
+        this.clickTrends = Arrays.copyOf(builder.clickTrends, size);
+        this.secure = builder.secure;
+        this.online = builder.online;
+        this.hls = builder.hls;
+        this.tagOffsets = Arrays.copyOf(builder.tagOffsets, size + 1);
+        this.tagCodes = Arrays.copyOf(builder.tagCodes, builder.tagCount);
+        this.languageOffsets = Arrays.copyOf(builder.languageOffsets, size + 1);
+        this.languageCodes = Arrays.copyOf(builder.languageCodes, builder.languageCount);
+        this.countryCodeDictionary = builder.countryCodeDictionary;
+        this.countryDictionary = builder.countryDictionary;
+        this.languageLabelDictionary = builder.languageLabelDictionary;
+        this.languageDictionary = builder.languageDictionary;
+        this.codecDictionary = builder.codecDictionary;
+        this.tagDictionary = builder.tagDictionary;
+        
+        this.positionById = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            positionById.put(ids[i], i);
+        }
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    public int size() {
+        return ids.length;
+    }
+    
+    /**
+     * Position of a station by its Radio Browser UUID, or -1 if unknown
+     */
+    public int positionOf(String stationId) {
+        Integer position = positionById.get(stationId);
+        return position != null ? position : -1;
+    }
+    
+    public String id(int position) {
+        return ids[position];
+    }
+
+    public String streamUrl(int position) {
+        return streamUrls[position];
+    }
+    
+    public String logoUrl(int position) {
+        return logoUrls[position];
+    }
+
+    public String name(int position) {
+        return names[position];
+    }
+    
+    public int votes(int position) {
+        return votes[position];
+    }
+    
+    public int clickCount(int position) {
+        return clickCounts[position];
+    }
+    
+    public int clickTrend(int position) {
+        return clickTrends[position];
+    }
+    
+    public int bitrate(int position) {
+        return bitrates[position];
+    }
+    
+    public String codec(int position) {
+        return codecDictionary.value(codecs[position]);
+    }
+    
+    public int countryCode(int position) {
+        return countryCodes[position];
+    }
+    
+    public int country(int position) {
+        return countries[position];
+    }
+    
+    public boolean isOnline(int position) {
+        return online.get(position);
+    }
+    
+    public boolean isHls(int position) {
+        return hls.get(position);
+    }
+    
+    public BitSet onlineStations() {
+        return online;
+    }
+    
+    public int tagStart(int position) {
+        return tagOffsets[position];
+    }
+    
+    public int tagEnd(int position) {
+        return tagOffsets[position + 1];
+    }
+    
+    public int tagCode(int offset) {
+        return tagCodes[offset];
+    }
+    
+    public int languageStart(int position) {
+        return languageOffsets[position];
+    }
+    
+    public int languageEnd(int position) {
+        return languageOffsets[position + 1];
+    }
+    
+    public int languageCode(int offset) {
+        return languageCodes[offset];
+    }
+    
+    public Dictionary tags() {
+        return tagDictionary;
+    }
+    
+    public Dictionary languages() {
+        return languageDictionary;
+    }
+    
+    public Dictionary countryCodes() {
+        return countryCodeDictionary;
+    }
+    
+    public Dictionary countries() {
+        return countryDictionary;
+    }
+    
+    /**
+     * Materialize the client view of one station
+     */
+    public RadioStationDto toDto(int position) {
+        StringBuilder genres = new StringBuilder();
+        for (int offset = tagOffsets[position]; offset < tagOffsets[position + 1]; offset++) {
+            if (genres.length() > 0) {
+                genres.append(", ");
+            }
+            genres.append(tagDictionary.value(tagCodes[offset]));
+        }
+        
+        return new RadioStationDto(
+            ids[position],
+            names[position],
+            streamUrls[position],
+            logoUrls[position],
+            countryCodeDictionary.value(countryCodes[position]),
+            languageLabelDictionary.value(languageLabels[position]),
+            codecDictionary.value(codecs[position]),
+            bitrates[position],
+            secure.get(position),
+            genres.toString(),
+            online.get(position)
+        );
+    }
+    
+    /**
+     * Two-way mapping between repeated strings and dense int codes.
+     * Null is stored as code -1.
+     */
+    public static class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+        
+        int encode(String value) {
+            if (value == null) {
+                return -1;
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            return code;
+        }
+        
+        /**
+         * Code of a value, or -1 if it never occurs
+         */
+        public int codeOf(String value) {
+            Integer code = codes.get(value);
+            return code != null ? code : -1;
+        }
+        
+        public String value(int code) {
+            return code >= 0 ? values.get(code) : null;
+        }
+        
+        public int size() {
+            return values.size();
+        }
+    }
+    
+    /**
+     * Appends stations column by column
+     */
+    public static class Builder {
+        private final List<String> ids = new ArrayList<>();
+        private final List<String> names = new ArrayList<>();
+        private final List<String> streamUrls = new ArrayList<>();
+        private final List<String> logoUrls = new ArrayList<>();
+        private int[] countryCodes = new int[1024];
+        private int[] countries = new int[1024];
+        private int[] languageLabels = new int[1024];
+        private int[] codecs = new int[1024];
+        private int[] bitrates = new int[1024];
+        private int[] votes = new int[1024];
+        private int[] clickCounts = new int[1024];
+        private int[] clickTrends = new int[1024];
+        private final BitSet secure = new BitSet();
+        private final BitSet online = new BitSet();
+        private final BitSet hls = new BitSet();
+        private int[] tagOffsets = new int[1025];
+        private int[] tagCodes = new int[4096];
+        private int tagCount;
+        private int[] languageOffsets = new int[1025];
+        private int[] languageCodes = new int[1024];
+        private int languageCount;
+        
+        private final Dictionary countryCodeDictionary = new Dictionary();
+        private final Dictionary countryDictionary = new Dictionary();
+        private final Dictionary languageLabelDictionary = new Dictionary();
+        private final Dictionary languageDictionary = new Dictionary();
+        private final Dictionary codecDictionary = new Dictionary();
+        private final Dictionary tagDictionary = new Dictionary();
+        
+        private Builder() {
+        }
+        
+        public Builder add(String id, String name, String streamUrl, String logoUrl, List<String> tags,
+                           String country, String countryCode, String language, String codec, int bitrate,
+                           boolean isSecure, int voteCount, int clickCount, int clickTrend, boolean isOnline,
+                           boolean isHls) {
+            int i = ids.size();
+            if (i == votes.length) {
+                grow(votes.length * 2);
+            }
+            
+            ids.add(id);
+            names.add(name);
+            streamUrls.add(streamUrl);
+            logoUrls.add(logoUrl != null && !logoUrl.isEmpty() ? logoUrl : null);
+            countryCodes[i] = countryCodeDictionary.encode(emptyToNull(countryCode));
+            countries[i] = countryDictionary.encode(emptyToNull(country));
+            languageLabels[i] = languageLabelDictionary.encode(emptyToNull(language));
+            codecs[i] = codecDictionary.encode(emptyToNull(codec));
+            bitrates[i] = bitrate;
+            votes[i] = voteCount;
+            clickCounts[i] = clickCount;
+            clickTrends[i] = clickTrend;
+            secure.set(i, isSecure);
+            online.set(i, isOnline);
+            hls.set(i, isHls);
+            
+            for (String tag : tags) {
+                if (tagCount == tagCodes.length) {
+                    tagCodes = Arrays.copyOf(tagCodes, tagCodes.length * 2);
+                }
+                tagCodes[tagCount++] = tagDictionary.encode(tag);
+            }
+            tagOffsets[i + 1] = tagCount;
+            
+            for (String token : RadioStationIndex.splitList(language)) {
+                if (languageCount == languageCodes.length) {
+                    languageCodes = Arrays.copyOf(languageCodes, languageCodes.length * 2);
+                }
+                languageCodes[languageCount++] = languageDictionary.encode(token);
+            }
+            languageOffsets[i + 1] = languageCount;
+            return this;
+        }
+        
+        public StationCatalog build() {
+            return new StationCatalog(this);
+        }
+        
+        private void grow(int capacity) {
+            countryCodes = Arrays.copyOf(countryCodes, capacity);
+            countries = Arrays.copyOf(countries, capacity);
+            languageLabels = Arrays.copyOf(languageLabels, capacity);
+            codecs = Arrays.copyOf(codecs, capacity);
+            bitrates = Arrays.copyOf(bitrates, capacity);
+            votes = Arrays.copyOf(votes, capacity);
+            clickCounts = Arrays.copyOf(clickCounts, capacity);
+            clickTrends = Arrays.copyOf(clickTrends, capacity);
+            tagOffsets = Arrays.copyOf(tagOffsets, capacity + 1);
+            languageOffsets = Arrays.copyOf(languageOffsets, capacity + 1);
+        }
+        
+        private static String emptyToNull(String value) {
+            return value == null || value.isEmpty() ? null : value;
+        }
+    }
+}
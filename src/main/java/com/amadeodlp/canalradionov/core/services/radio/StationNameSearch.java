@@ -0,0 +1,290 @@
+package com.amadeodlp.canalradionov.core.services.radio;
+
+import com.amadeodlp.canalradionov.core.model.radio.StationSuggestion;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.regex.Pattern;
+
+/**
+ * Typo-tolerant, search-as-you-type lookup over station names.
+ * Names are normalized (case, accents, punctuation) and indexed two ways: every word goes into
+ * one sorted array so a prefix is a binary search plus a short scan, and every trigram maps to the
+ * stations containing it so misspelled queries still find candidates by overlap. Matches are
+ * ranked by blending the match score with votes and click count.
+ */
+public class StationNameSearch {
+    
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{L}\\p{N}]+");
+    
+    // Minimum trigram similarity for a fuzzy match to count
+    private static final double MIN_SIMILARITY = 0.3;
+    private static final double POPULARITY_WEIGHT = 0.3;
+    
+    // Overlap counters are catalog-sized, so only a few are kept for reuse; extra queries allocate their own
+    private static final int MAX_POOLED_SCRATCH = 4;
+    
+    private final StationCatalog catalog;
+    private final String[] normalizedNames;
+    
+    // All (word, station) pairs sorted by word
+    private final String[] words;
+    private final int[] wordStations;
+    
+    private final Map<Long, int[]> trigramPostings;
+    private final int[] trigramCounts;
+    
+    // log-scaled votes and clicks, 0..1
+    private final float[] popularity;
+    
+    private final Queue<Scratch> scratchPool = new ArrayBlockingQueue<>(MAX_POOLED_SCRATCH);
+    
+    private StationNameSearch(StationCatalog catalog) {
+        this.catalog = catalog;
+        int size = catalog.size();
+        this.normalizedNames = new String[size];
+        this.trigramCounts = new int[size];
+        this.popularity = new float[size];
+        
+        List<long[]> wordEntries = new ArrayList<>();
+        List<String> wordValues = new ArrayList<>();
+        Map<Long, IntBuffer> trigrams = new HashMap<>();
+        double maxPopularity = 0;
+        
+        for (int i = 0; i < size; i++) {
+            String normalized = normalize(catalog.name(i));
+            normalizedNames[i] = normalized;
+            
+            for (String word : normalized.split(" ")) {
+                if (!word.isEmpty()) {
+                    wordEntries.add(new long[] {wordValues.size(), i});
+                    wordValues.add(word);
+                }
+            }
+            
+            long[] stationTrigrams = trigrams(normalized);
+            trigramCounts[i] = stationTrigrams.length;
+            for (long trigram : stationTrigrams) {
+                trigrams.computeIfAbsent(trigram, key -> new IntBuffer()).add(i);
+            }
+            
+            double score = Math.log1p(Math.max(0, catalog.votes(i))) + Math.log1p(Math.max(0, catalog.clickCount(i)));
+            popularity[i] = (float) score;
+            maxPopularity = Math.max(maxPopularity, score);
+        }
+        
+        for (int i = 0; i < size && maxPopularity > 0; i++) {
+            popularity[i] /= (float) maxPopularity;
+        }
+        
+        wordEntries.sort(Comparator.comparing(entry -> wordValues.get((int) entry[0])));
+        this.words = new String[wordEntries.size()];
+        this.wordStations = new int[wordEntries.size()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = wordValues.get((int) wordEntries.get(i)[0]);
+            wordStations[i] = (int) wordEntries.get(i)[1];
+        }
+        
+        this.trigramPostings = new HashMap<>(trigrams.size() * 2);
+        trigrams.forEach((trigram, stations) -> trigramPostings.put(trigram, stations.toArray()));
+    }
+    
+    public static StationNameSearch build(StationCatalog catalog) {
+        return new StationNameSearch(catalog);
+    }
+    
+    /**
+     * Best matching stations for a partly typed, possibly misspelled name
+     * 
+     * @param query What the user has typed so far
+     * @param limit The maximum number of suggestions
+     * @return Suggestions, best first
+     */
+    public List<StationSuggestion> suggest(String query, int limit) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        
+        Scratch scratch = scratchPool.poll();
+        if (scratch == null) {
+            scratch = new Scratch();
+        }
+        try {
+            return rank(normalized, limit, scratch);
+        } finally {
+            scratchPool.offer(scratch);
+        }
+    }
+    
+    private List<StationSuggestion> rank(String normalized, int limit, Scratch scratch) {
+        scratch.reset(catalog.size());
+        String[] queryWords = normalized.split(" ");
+        
+        // Prefix matches: each station scores the share of query words that start one of its words
+        for (String word : queryWords) {
+            int from = lowerBound(word);
+            for (int n = from; n < words.length && words[n].startsWith(word); n++) {
+                scratch.markPrefix(wordStations[n], word);
+            }
+        }
+        
+        // Fuzzy matches: trigram overlap with the query
+        long[] queryTrigrams = normalized.length() >= 2 ? trigrams(normalized) : new long[0];
+        for (long trigram : queryTrigrams) {
+            int[] stations = trigramPostings.get(trigram);
+            if (stations != null) {
+                for (int station : stations) {
+                    scratch.addOverlap(station);
+                }
+            }
+        }
+        
+        PriorityQueue<StationSuggestion> best = new PriorityQueue<>(limit + 1, Comparator.comparingDouble(StationSuggestion::score));
+        for (int t = 0; t < scratch.touchedCount; t++) {
+            int station = scratch.touched[t];
+            
+            double prefixScore = Math.min(1.0, (double) scratch.prefixWords[station] / queryWords.length);
+            int shared = scratch.overlap[station];
+            double similarity = shared == 0 ? 0
+                    : (double) shared / (queryTrigrams.length + trigramCounts[station] - shared);
+            if (prefixScore == 0 && similarity < MIN_SIMILARITY) {
+                continue;
+            }
+            
+            double match = Math.max(prefixScore, similarity);
+            if (normalizedNames[station].startsWith(normalized)) {
+                match = 1.0;
+            }
+            double score = (1 - POPULARITY_WEIGHT) * match + POPULARITY_WEIGHT * popularity[station];
+            
+            if (best.size() < limit || score > best.peek().score()) {
+                best.add(new StationSuggestion(
+                        catalog.id(station),
+                        catalog.name(station),
+                        catalog.logoUrl(station),
+                        catalog.countryCodes().value(catalog.countryCode(station)),
+                        score
+                ));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        }
+        
+        List<StationSuggestion> suggestions = new ArrayList<>(best);
+        suggestions.sort(Comparator.comparingDouble(StationSuggestion::score).reversed());
+        return suggestions;
+    }
+    
+    /**
+     * Lower-case, strip accents and collapse everything but letters and digits to single spaces
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        String plain = MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+        return NON_ALPHANUMERIC.matcher(plain).replaceAll(" ").trim();
+    }
+    
+    /**
+     * Distinct trigrams of a normalized name, padded so word starts and ends count
+     */
+    private static long[] trigrams(String normalized) {
+        String padded = "  " + normalized + " ";
+        long[] trigrams = new long[padded.length() - 2];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+        }
+        return Arrays.stream(trigrams).distinct().toArray();
+    }
+    
+    private int lowerBound(String word) {
+        int low = 0;
+        int high = words.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (words[mid].compareTo(word) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    private static class Scratch {
+        int[] overlap = new int[0];
+        int[] prefixWords = new int[0];
+        int[] touched = new int[0];
+        int touchedCount;
+        
+        // Last query word credited to each station, so one word counts once per station
+        String[] lastPrefixWord = new String[0];
+        
+        void reset(int size) {
+            if (overlap.length < size) {
+                overlap = new int[size];
+                prefixWords = new int[size];
+                touched = new int[size];
+                lastPrefixWord = new String[size];
+            } else {
+                for (int t = 0; t < touchedCount; t++) {
+                    int station = touched[t];
+                    overlap[station] = 0;
+                    prefixWords[station] = 0;
+                    lastPrefixWord[station] = null;
+                }
+            }
+            touchedCount = 0;
+        }
+        
+        void markPrefix(int station, String word) {
+            touch(station);
+            if (lastPrefixWord[station] != word) {
+                lastPrefixWord[station] = word;
+                prefixWords[station]++;
+            }
+        }
+        
+        void addOverlap(int station) {
+            touch(station);
+            overlap[station]++;
+        }
+        
+        private void touch(int station) {
+            if (overlap[station] == 0 && prefixWords[station] == 0) {
+                touched[touchedCount++] = station;
+            }
+        }
+    }
+    
+    // Growable int array for building postings without boxing
+    private static class IntBuffer {
+        private int[] values = new int[4];
+        private int size;
+        
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+        
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
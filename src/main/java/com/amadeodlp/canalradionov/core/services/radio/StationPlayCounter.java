@@ -0,0 +1,205 @@
+package com.amadeodlp.canalradionov.core.services.radio;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpMethod;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts our own listeners' station plays.
+ * A play is one LongAdder increment after a per-listener dedup check, so the request path
+ * never touches the database or the network. On a schedule the counts are added to the
+ * station_plays table in one JDBC batch, and stations with new plays are queued for a click
+ * on Radio Browser, at most one per station per upstream dedup window. Stored totals are
+ * added to the upstream click counts on the next sync, so they feed the popularity ranking.
+ */
+@Service
+public class StationPlayCounter {
+    private static final Logger LOG = LoggerFactory.getLogger(StationPlayCounter.class);
+    
+    private static final String ADD_PLAYS = "MERGE INTO station_plays t "
+            + "USING (SELECT CAST(? AS VARCHAR(64)) AS station_id, CAST(? AS BIGINT) AS plays, CAST(? AS TIMESTAMP) AS updated_at) s "
+            + "ON t.station_id = s.station_id "
+            + "WHEN MATCHED THEN UPDATE SET play_count = t.play_count + s.plays, updated_at = s.updated_at "
+            + "WHEN NOT MATCHED THEN INSERT (station_id, play_count, updated_at) VALUES (s.station_id, s.plays, s.updated_at)";
+    private static final String SELECT_TOTALS = "SELECT station_id, play_count FROM station_plays";
+    
+    // Radio Browser counts one click per client IP and station per day
+    private static final long UPSTREAM_CLICK_WINDOW_MS = TimeUnit.DAYS.toMillis(1);
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final RestTemplate restTemplate;
+    private final RadioBrowserMirrors mirrors;
+    private final String userAgent;
+    private final int clicksPerRound;
+    
+    // Plays since the last flush; an adder is removed once a flush finds it idle
+    private final Map<String, LongAdder> pending = new ConcurrentHashMap<>();
+    
+    // Stored totals, for ranking
+    private final Map<String, Long> totals = new ConcurrentHashMap<>();
+    
+    // listener + station -> seen, expiring after the dedup window
+    private final Cache<String, Boolean> recentPlays;
+    
+    private final Set<String> clickQueue = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> lastUpstreamClick = new ConcurrentHashMap<>();
+    
+    public StationPlayCounter(
+            JdbcTemplate jdbcTemplate,
+            @Qualifier("radioBrowserRestTemplate") RestTemplate restTemplate,
+            RadioBrowserMirrors mirrors,
+            @Value("${app.radio.user-agent:CanalRadioNov/1.0}") String userAgent,
+            @Value("${app.radio.plays.dedup-window-minutes:30}") long dedupWindowMinutes,
+            @Value("${app.radio.plays.max-tracked-listeners:200000}") long maxTracked,
+            @Value("${app.radio.plays.upstream-clicks-per-round:20}") int clicksPerRound) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.restTemplate = restTemplate;
+        this.mirrors = mirrors;
+        this.userAgent = userAgent;
+        this.clicksPerRound = clicksPerRound;
+        this.recentPlays = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMinutes(dedupWindowMinutes))
+                .maximumSize(maxTracked)
+                .build();
+    }
+    
+    @PostConstruct
+    public void loadTotals() {
+        try {
+            jdbcTemplate.query(SELECT_TOTALS, rs -> {
+                totals.put(rs.getString("station_id"), rs.getLong("play_count"));
+            });
+            LOG.info("Loaded play totals for {} stations", totals.size());
+        } catch (DataAccessException e) {
+            LOG.warn("Could not load station play totals, starting from zero", e);
+        }
+    }
+    
+    /**
+     * Count a play unless the same listener played the station within the dedup window
+     * 
+     * @param listener The user name, or another stable key such as the client address
+     * @return Whether the play was counted
+     */
+    public boolean record(String stationId, String listener) {
+        if (recentPlays.asMap().putIfAbsent(listener + '|' + stationId, Boolean.TRUE) != null) {
+            return false;
+        }
+        LongAdder adder;
+        do {
+            adder = pending.computeIfAbsent(stationId, id -> new LongAdder());
+            adder.increment();
+            // A flush removed the adder before the increment landed, count it in a new one
+        } while (pending.get(stationId) != adder);
+        return true;
+    }
+    
+    /**
+     * Plays stored for a station, not counting the ones waiting for the next flush
+     */
+    public long totalPlays(String stationId) {
+        return totals.getOrDefault(stationId, 0L);
+    }
+    
+    /**
+     * Add pending plays to the table in one batch and queue the stations for an upstream click
+     */
+    @Scheduled(fixedDelayString = "${app.radio.plays.flush-interval-ms:10000}")
+    public void flush() {
+        List<Object[]> args = new ArrayList<>();
+        Timestamp now = Timestamp.from(Instant.now());
+        for (Map.Entry<String, LongAdder> entry : pending.entrySet()) {
+            long plays = entry.getValue().sumThenReset();
+            if (plays > 0) {
+                args.add(new Object[] {entry.getKey(), plays, now});
+            } else {
+                // No plays since the last flush, forget the station unless one just came in
+                pending.computeIfPresent(entry.getKey(), (id, adder) -> adder.sum() == 0 ? null : adder);
+            }
+        }
+        if (args.isEmpty()) {
+            return;
+        }
+        
+        try {
+            jdbcTemplate.batchUpdate(ADD_PLAYS, args);
+        } catch (DataAccessException e) {
+            LOG.warn("Error storing plays for {} stations, will retry", args.size(), e);
+            for (Object[] row : args) {
+                pending.computeIfAbsent((String) row[0], id -> new LongAdder()).add((Long) row[1]);
+            }
+            return;
+        }
+        
+        long nowMs = System.currentTimeMillis();
+        for (Object[] row : args) {
+            String stationId = (String) row[0];
+            totals.merge(stationId, (Long) row[1], Long::sum);
+            if (nowMs - lastUpstreamClick.getOrDefault(stationId, 0L) >= UPSTREAM_CLICK_WINDOW_MS) {
+                clickQueue.add(stationId);
+            }
+        }
+        LOG.debug("Stored plays for {} stations", args.size());
+    }
+    
+    /**
+     * Send queued clicks to Radio Browser, a bounded number per round
+     */
+    @Scheduled(fixedDelayString = "${app.radio.plays.upstream-interval-ms:60000}")
+    public void sendUpstreamClicks() {
+        int sent = 0;
+        for (Iterator<String> it = clickQueue.iterator(); it.hasNext() && sent < clicksPerRound; ) {
+            String stationId = it.next();
+            it.remove();
+            try {
+                mirrors.execute(baseUrl -> restTemplate.execute(
+                    baseUrl + "/url/" + stationId,
+                    HttpMethod.GET,
+                    request -> request.getHeaders().set("User-Agent", userAgent),
+                    response -> null
+                ), false);
+                lastUpstreamClick.put(stationId, System.currentTimeMillis());
+                sent++;
+            } catch (RuntimeException e) {
+                // Dropped: the station is queued again with its next play
+                LOG.debug("Could not send click for station {}: {}", stationId, e.getMessage());
+            }
+        }
+        
+        // Forget clicks older than the upstream window
+        long cutoff = System.currentTimeMillis() - UPSTREAM_CLICK_WINDOW_MS;
+        lastUpstreamClick.values().removeIf(at -> at < cutoff);
+        
+        if (sent > 0) {
+            LOG.debug("Sent {} station clicks to Radio Browser", sent);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
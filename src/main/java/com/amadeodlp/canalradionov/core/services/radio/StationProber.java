@@ -0,0 +1,360 @@
+package com.amadeodlp.canalradionov.core.services.radio;
+
+import com.amadeodlp.canalradionov.core.model.radio.StationProbe;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.net.ProtocolException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that popular stations' streams actually play, instead of trusting the upstream's
+ * periodic check. Each probe opens the stream asynchronously, reads the first few kilobytes and
+ * hangs up, recording how long the server took to answer and whether the content looks like the
+ * advertised codec.
+ * Stations are visited by popularity: the most listened to are re-probed most often, and a
+ * semaphore bounds how many probes are open at once. Results are applied to the current index,
+ * where they override the upstream online flag.
+ */
+@Service
+public class StationProber {
+    private static final Logger LOG = LoggerFactory.getLogger(StationProber.class);
+    
+    private final RadioStationSync stationSync;
+    private final HttpClient httpClient;
+    private final ExecutorService executor;
+    private final String userAgent;
+    private final boolean enabled;
+    private final int topStations;
+    private final int probeBytes;
+    private final Duration timeout;
+    private final long baseIntervalMs;
+    private final long maxIntervalMs;
+    private final Semaphore permits;
+    
+    private final Map<String, StationProbe> results = new ConcurrentHashMap<>();
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    
+    private final Counter aliveCount;
+    private final Counter deadCount;
+    private final Timer latency;
+    
+    public StationProber(
+            RadioStationSync stationSync,
+            MeterRegistry meterRegistry,
+            @Value("${app.radio.user-agent:CanalRadioNov/1.0}") String userAgent,
+            @Value("${app.radio.probe.enabled:true}") boolean enabled,
+            @Value("${app.radio.probe.top-stations:2000}") int topStations,
+            @Value("${app.radio.probe.max-concurrent:16}") int maxConcurrent,
+            @Value("${app.radio.probe.bytes:4096}") int probeBytes,
+            @Value("${app.radio.probe.timeout-ms:5000}") long timeoutMs,
+            @Value("${app.radio.probe.base-interval-seconds:300}") long baseIntervalSeconds,
+            @Value("${app.radio.probe.max-interval-seconds:3600}") long maxIntervalSeconds) {
+        this.stationSync = stationSync;
+        this.userAgent = userAgent;
+        this.enabled = enabled;
+        this.topStations = topStations;
+        this.probeBytes = probeBytes;
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.baseIntervalMs = TimeUnit.SECONDS.toMillis(baseIntervalSeconds);
+        this.maxIntervalMs = TimeUnit.SECONDS.toMillis(maxIntervalSeconds);
+        this.permits = new Semaphore(maxConcurrent);
+        
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "station-probe-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(executor)
+                .build();
+        
+        this.aliveCount = meterRegistry.counter("radio.probe.results", "result", "alive");
+        this.deadCount = meterRegistry.counter("radio.probe.results", "result", "dead");
+        this.latency = meterRegistry.timer("radio.probe.latency");
+    }
+    
+    /**
+     * The last probe of a station
+     * 
+     * @return The result, or null if the station has not been probed
+     */
+    public StationProbe lastProbe(String stationId) {
+        return results.get(stationId);
+    }
+    
+    /**
+     * Publish results to the current index, then start the probes that are due, most popular first.
+     * Stops for this round once every probe slot is taken.
+     */
+    @Scheduled(
+        initialDelayString = "${app.radio.probe.tick-ms:30000}",
+        fixedDelayString = "${app.radio.probe.tick-ms:30000}"
+    )
+    public void probeDue() {
+        RadioStationIndex index = stationSync.currentIndex();
+        if (!enabled || index == null) {
+            return;
+        }
+        publish(index);
+        
+        StationCatalog catalog = index.catalog();
+        int[] byPopularity = index.byPopularity();
+        long now = System.currentTimeMillis();
+        int started = 0;
+        
+        for (int rank = 0; rank < Math.min(topStations, byPopularity.length); rank++) {
+            int position = byPopularity[rank];
+            String stationId = catalog.id(position);
+            StationProbe last = results.get(stationId);
+            if (last != null && now - last.checkedAt() < interval(rank)) {
+                continue;
+            }
+            if (catalog.streamUrl(position) == null || inFlight.contains(stationId)) {
+                continue;
+            }
+            if (!permits.tryAcquire()) {
+                break;
+            }
+            
+            inFlight.add(stationId);
+            started++;
+            probe(stationId, catalog.streamUrl(position), catalog.codec(position))
+                    .whenComplete((probe, error) -> {
+                        if (probe != null) {
+                            record(probe);
+                        }
+                        inFlight.remove(stationId);
+                        permits.release();
+                    });
+        }
+        
+        if (started > 0) {
+            LOG.debug("Started {} station probes", started);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+    
+    /**
+     * Open a stream and classify what comes back. Never completes exceptionally.
+     */
+    CompletableFuture<StationProbe> probe(String stationId, String streamUrl, String expectedCodec) {
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(streamUrl))
+                    .timeout(timeout)
+                    .header("User-Agent", userAgent)
+                    .GET()
+                    .build();
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(dead(stationId, 0));
+        }
+        
+        long started = System.nanoTime();
+        FirstBytesSubscriber firstBytes = new FirstBytesSubscriber(probeBytes);
+        
+        return PublicHttp.send(httpClient, request, info -> firstBytes.responded())
+                .orTimeout(timeout.toMillis() * 2, TimeUnit.MILLISECONDS)
+                .handle((response, error) -> {
+                    // Latency is time to the response headers, not to the end of the sample
+                    long respondedAt = firstBytes.respondedAt() != 0 ? firstBytes.respondedAt() : System.nanoTime();
+                    int elapsedMs = (int) ((respondedAt - started) / 1_000_000);
+                    if (error != null) {
+                        firstBytes.cancel();
+                        // Shoutcast v1 answers "ICY 200 OK", which the JDK client rejects but means the server is up
+                        return hasCause(error, ProtocolException.class)
+                                ? new StationProbe(stationId, true, elapsedMs, null, null, 0, true, System.currentTimeMillis())
+                                : dead(stationId, elapsedMs);
+                    }
+                    return classify(stationId, response, expectedCodec, elapsedMs);
+                });
+    }
+    
+    private StationProbe classify(String stationId, HttpResponse<byte[]> response, String expectedCodec, int elapsedMs) {
+        byte[] body = response.body();
+        String contentType = response.headers().firstValue("Content-Type")
+                .map(value -> value.toLowerCase(Locale.ROOT))
+                .orElse(null);
+        int bitrate = response.headers().firstValue("icy-br")
+                .map(StationProber::parseBitrate)
+                .orElse(0);
+        
+        String codec = codecOf(contentType);
+        if (codec == null) {
+            codec = sniff(body);
+        }
+        
+        // A web page or an empty answer is not a stream, whatever the status code
+        boolean alive = response.statusCode() / 100 == 2
+                && body.length > 0
+                && (contentType == null || !contentType.startsWith("text/html"))
+                && codec != null;
+        
+        boolean codecMatches = expectedCodec == null || codec == null || "PLAYLIST".equals(codec)
+                || family(expectedCodec).equals(family(codec));
+        
+        return alive
+                ? new StationProbe(stationId, true, elapsedMs, contentType, codec, bitrate, codecMatches, System.currentTimeMillis())
+                : dead(stationId, elapsedMs);
+    }
+    
+    private void record(StationProbe probe) {
+        results.put(probe.stationId(), probe);
+        if (probe.alive()) {
+            aliveCount.increment();
+            latency.record(probe.latencyMs(), TimeUnit.MILLISECONDS);
+        } else {
+            deadCount.increment();
+        }
+    }
+    
+    /**
+     * Map results by station id onto the index's positions, dropping stations no longer listed
+     */
+    private void publish(RadioStationIndex index) {
+        RoaringBitmap alive = new RoaringBitmap();
+        RoaringBitmap dead = new RoaringBitmap();
+        
+        results.values().removeIf(probe -> {
+            int position = index.catalog().positionOf(probe.stationId());
+            if (position < 0) {
+                return true;
+            }
+            (probe.alive() ? alive : dead).add(position);
+            return false;
+        });
+        
+        index.applyHealth(alive, dead);
+    }
+    
+    /**
+     * Re-probe interval by popularity rank: the top 100 every base interval, the next 100 twice
+     * as long, and so on up to the maximum
+     */
+    private long interval(int rank) {
+        return Math.min(maxIntervalMs, baseIntervalMs * (1 + rank / 100));
+    }
+    
+    private static StationProbe dead(String stationId, int elapsedMs) {
+        return new StationProbe(stationId, false, elapsedMs, null, null, 0, false, System.currentTimeMillis());
+    }
+    
+    static String codecOf(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        if (contentType.startsWith("audio/mpeg") || contentType.startsWith("audio/mp3")) {
+            return "MP3";
+        }
+        if (contentType.startsWith("audio/aac") || contentType.startsWith("audio/aacp") || contentType.startsWith("audio/x-aac")) {
+            return "AAC";
+        }
+        if (contentType.startsWith("application/ogg") || contentType.startsWith("audio/ogg")) {
+            return "OGG";
+        }
+        if (contentType.startsWith("audio/flac")) {
+            return "FLAC";
+        }
+        if (contentType.contains("mpegurl") || contentType.contains("scpls")) {
+            return "PLAYLIST";
+        }
+        if (contentType.startsWith("audio/")) {
+            return "AUDIO";
+        }
+        return null;
+    }
+    
+    /**
+     * Recognize a stream from its first bytes: container magic, a playlist, or an MPEG/ADTS frame sync
+     */
+    static String sniff(byte[] body) {
+        if (startsWith(body, "OggS")) {
+            return "OGG";
+        }
+        if (startsWith(body, "fLaC")) {
+            return "FLAC";
+        }
+        if (startsWith(body, "ID3")) {
+            return "MP3";
+        }
+        if (startsWith(body, "#EXTM3U") || startsWith(body, "[playlist]") || startsWith(body, "http")) {
+            return "PLAYLIST";
+        }
+        for (int i = 0; i + 1 < body.length; i++) {
+            if ((body[i] & 0xFF) == 0xFF) {
+                int next = body[i + 1] & 0xFF;
+                if ((next & 0xF6) == 0xF0) {
+                    return "AAC";
+                }
+                if ((next & 0xE0) == 0xE0) {
+                    return "MP3";
+                }
+            }
+        }
+        return null;
+    }
+    
+    private static String family(String codec) {
+        String upper = codec.toUpperCase(Locale.ROOT);
+        if (upper.startsWith("AAC")) {
+            return "AAC";
+        }
+        if (upper.contains("OGG") || upper.contains("VORBIS") || upper.contains("OPUS")) {
+            return "OGG";
+        }
+        return upper;
+    }
+    
+    private static boolean startsWith(byte[] body, String prefix) {
+        byte[] bytes = prefix.getBytes(StandardCharsets.US_ASCII);
+        return body.length >= bytes.length && Arrays.equals(body, 0, bytes.length, bytes, 0, bytes.length);
+    }
+    
+    private static int parseBitrate(String value) {
+        try {
+            return Integer.parseInt(value.split(",")[0].trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+    
+    private static boolean hasCause(Throwable error, Class<? extends Throwable> type) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,266 @@
+package com.amadeodlp.canalradionov.core.services.radio;
+
+import com.amadeodlp.canalradionov.core.model.radio.RadioStationDto;
+import com.amadeodlp.canalradionov.core.model.radio.ResolvedStream;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Turns listed station URLs into the endpoints players can open directly.
+ * Redirects are followed, and PLS/M3U playlists are fetched and replaced by their first stream,
+ * up to a few levels deep. Only public addresses are contacted, see {@link PublicHttp}. Audio responses are dropped as soon as their headers arrive, so an
+ * endless stream costs one small read. Results are cached by listed URL in the radioStreams cache.
+ * Failures are not cached. A batch is resolved concurrently, with a cap on open requests shared
+ * by all callers.
+ */
+@Service
+public class StreamUrlResolver {
+    private static final Logger LOG = LoggerFactory.getLogger(StreamUrlResolver.class);
+    
+    private static final int MAX_PLAYLIST_DEPTH = 3;
+    
+    // Enough for any real playlist; other bodies are cut off here
+    private static final int PLAYLIST_BYTES = 64 * 1024;
+    
+    private final RadioBrowserService radioBrowserService;
+    private final Cache cache;
+    private final HttpClient httpClient;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final Duration timeout;
+    private final String userAgent;
+    private final int maxBatch;
+    
+    public StreamUrlResolver(
+            RadioBrowserService radioBrowserService,
+            CacheManager cacheManager,
+            @Value("${app.radio.user-agent:CanalRadioNov/1.0}") String userAgent,
+            @Value("${app.radio.resolve.timeout-ms:5000}") long timeoutMs,
+            @Value("${app.radio.resolve.max-concurrent:32}") int maxConcurrent,
+            @Value("${app.radio.resolve.max-batch:100}") int maxBatch) {
+        this.radioBrowserService = radioBrowserService;
+        this.cache = cacheManager.getCache("radioStreams");
+        this.userAgent = userAgent;
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.permits = new Semaphore(maxConcurrent);
+        this.maxBatch = maxBatch;
+        
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "stream-resolve-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(executor)
+                .build();
+    }
+    
+    public int maxBatch() {
+        return maxBatch;
+    }
+    
+    /**
+     * Resolve one station's stream
+     * 
+     * @return The resolution, or null if the station is unknown
+     */
+    public ResolvedStream resolve(String stationId) {
+        List<ResolvedStream> resolved = resolveAll(List.of(stationId));
+        return resolved.isEmpty() ? null : resolved.get(0);
+    }
+    
+    /**
+     * Resolve a page of stations at once, in the order given. Unknown stations are left out.
+     */
+    public List<ResolvedStream> resolveAll(List<String> stationIds) {
+        List<CompletableFuture<ResolvedStream>> pending = new ArrayList<>(stationIds.size());
+        
+        for (String stationId : stationIds.subList(0, Math.min(stationIds.size(), maxBatch))) {
+            RadioStationDto station;
+            try {
+                station = radioBrowserService.getStation(stationId);
+            } catch (RuntimeException e) {
+                LOG.warn("Could not look up station {} to resolve: {}", stationId, e.getMessage());
+                continue;
+            }
+            if (station == null || station.streamUrl() == null) {
+                continue;
+            }
+            
+            ResolvedStream cached = cache.get(station.streamUrl(), ResolvedStream.class);
+            if (cached != null) {
+                pending.add(CompletableFuture.completedFuture(
+                        new ResolvedStream(stationId, cached.streamUrl(), cached.resolvedUrl(), cached.fromPlaylist())));
+            } else {
+                pending.add(resolveStation(stationId, station.streamUrl()));
+            }
+        }
+        
+        List<ResolvedStream> resolved = new ArrayList<>(pending.size());
+        for (CompletableFuture<ResolvedStream> future : pending) {
+            resolved.add(future.join());
+        }
+        return resolved;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+    
+    private CompletableFuture<ResolvedStream> resolveStation(String stationId, String streamUrl) {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            return CompletableFuture.completedFuture(new ResolvedStream(stationId, streamUrl, null, false));
+        }
+        
+        return follow(streamUrl, 0, false)
+                .handle((resolution, error) -> {
+                    permits.release();
+                    if (error != null) {
+                        LOG.debug("Could not resolve {}: {}", streamUrl, error.getMessage());
+                        return new ResolvedStream(stationId, streamUrl, null, false);
+                    }
+                    ResolvedStream resolved = new ResolvedStream(stationId, streamUrl, resolution.url(), resolution.fromPlaylist());
+                    cache.put(streamUrl, resolved);
+                    return resolved;
+                });
+    }
+    
+    /**
+     * Request a URL and, if it turns out to be a playlist, continue with its first entry
+     */
+    private CompletableFuture<Resolution> follow(String url, int depth, boolean fromPlaylist) {
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(timeout)
+                    .header("User-Agent", userAgent)
+                    .GET()
+                    .build();
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        
+        // Audio is recognized from the headers alone; anything else may be a playlist, so read it
+        AtomicReference<FirstBytesSubscriber> body = new AtomicReference<>();
+        HttpResponse.BodyHandler<byte[]> handler = info -> {
+            String contentType = info.headers().firstValue("Content-Type").orElse("");
+            body.set(new FirstBytesSubscriber(isAudio(contentType) ? 0 : PLAYLIST_BYTES));
+            return body.get();
+        };
+        
+        return PublicHttp.send(httpClient, request, handler)
+                .orTimeout(timeout.toMillis() * 2, TimeUnit.MILLISECONDS)
+                .whenComplete((response, error) -> {
+                    if (error != null && body.get() != null) {
+                        body.get().cancel();
+                    }
+                })
+                .thenCompose(response -> {
+                    if (response.statusCode() / 100 != 2) {
+                        return CompletableFuture.failedFuture(
+                                new IllegalStateException("HTTP " + response.statusCode() + " from " + response.uri()));
+                    }
+                    
+                    String contentType = response.headers().firstValue("Content-Type").orElse("").toLowerCase(Locale.ROOT);
+                    String text = new String(response.body(), StandardCharsets.UTF_8);
+                    if (isPlaylist(response.uri(), contentType, text)) {
+                        if (depth >= MAX_PLAYLIST_DEPTH) {
+                            return CompletableFuture.failedFuture(new IllegalStateException("Playlists nested too deep at " + response.uri()));
+                        }
+                        String entry = firstEntry(response.uri(), text);
+                        if (entry == null) {
+                            return CompletableFuture.failedFuture(new IllegalStateException("Empty playlist at " + response.uri()));
+                        }
+                        return follow(entry, depth + 1, true);
+                    }
+                    return CompletableFuture.completedFuture(new Resolution(response.uri().toString(), fromPlaylist));
+                });
+    }
+    
+    private static boolean isAudio(String contentType) {
+        String lower = contentType.toLowerCase(Locale.ROOT);
+        return (lower.startsWith("audio/") || lower.startsWith("application/ogg"))
+                && !lower.contains("mpegurl") && !lower.contains("scpls");
+    }
+    
+    /**
+     * PLS or plain M3U, by content type, extension or content. HLS playlists are streams in
+     * their own right and are left alone.
+     */
+    static boolean isPlaylist(URI uri, String contentType, String text) {
+        if (text.contains("#EXT-X-")) {
+            return false;
+        }
+        String path = uri.getPath() != null ? uri.getPath().toLowerCase(Locale.ROOT) : "";
+        String start = text.stripLeading();
+        return contentType.contains("scpls")
+                || contentType.contains("mpegurl")
+                || path.endsWith(".pls")
+                || path.endsWith(".m3u")
+                || start.regionMatches(true, 0, "[playlist]", 0, 10)
+                || start.startsWith("#EXTM3U");
+    }
+    
+    /**
+     * First stream entry of a PLS (FileN=...) or M3U (non-comment lines), resolved against the playlist URL
+     */
+    static String firstEntry(URI playlist, String text) {
+        for (String line : text.split("\\r?\\n")) {
+            String trimmed = line.trim();
+            String candidate = null;
+            if (trimmed.regionMatches(true, 0, "file", 0, 4) && trimmed.indexOf('=') > 4) {
+                candidate = trimmed.substring(trimmed.indexOf('=') + 1).trim();
+            } else if (!trimmed.isEmpty() && !trimmed.startsWith("#") && !trimmed.startsWith("[") && !trimmed.contains("=")) {
+                candidate = trimmed;
+            }
+            if (candidate == null || candidate.isEmpty()) {
+                continue;
+            }
+            try {
+                URI entry = playlist.resolve(candidate);
+                if ("http".equalsIgnoreCase(entry.getScheme()) || "https".equalsIgnoreCase(entry.getScheme())) {
+                    return entry.toString();
+                }
+            } catch (IllegalArgumentException e) {
+                // Not a URL; try the next line
+            }
+        }
+        return null;
+    }
+    
+    private record Resolution(String url, boolean fromPlaylist) {
+    }
+}
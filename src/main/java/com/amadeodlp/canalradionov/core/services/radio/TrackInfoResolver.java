@@ -0,0 +1,310 @@
+package com.amadeodlp.canalradionov.core.services.radio;
+
+import com.amadeodlp.canalradionov.core.exceptions.UpstreamUnavailableException;
+import com.amadeodlp.canalradionov.core.model.lastfm.CachedTrack;
+import com.amadeodlp.canalradionov.core.model.lastfm.TrackInfo;
+import com.amadeodlp.canalradionov.core.model.lastfm.TrackQuery;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resolves track metadata through the lastFm cache and a prioritized request queue.
+ * Cache hits return at once. Misses become queued lookups, and one dispatcher thread hands them to
+ * workers as they free up, interactive lookups first, then batch, then prefetch. Workers are paced by
+ * {@link LastFmRequestBudget}, which LastFmService takes from on every call. Concurrent requests
+ * for the same track share one lookup, and a queued prefetch is promoted when a user asks for it.
+ * Once the queue is full, batch lookups and prefetches are dropped; single lookups get twice the
+ * room before they are refused.
+ */
+@Service
+public class TrackInfoResolver {
+    private static final Logger LOG = LoggerFactory.getLogger(TrackInfoResolver.class);
+    
+    public enum Priority {
+        INTERACTIVE, BATCH, PREFETCH
+    }
+    
+    private final LastFmService lastFmService;
+    private final long waitMs;
+    private final int maxQueued;
+    private final int maxBatch;
+    
+    private final PriorityBlockingQueue<Ticket> queue = new PriorityBlockingQueue<>(64,
+            Comparator.comparing(Ticket::priority).thenComparingLong(Ticket::sequence));
+    private final Map<String, Lookup> pending = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ThreadPoolExecutor workers;
+    private final Semaphore idleWorkers;
+    private final Thread dispatcher;
+    
+    private final Counter dropped;
+    
+    public TrackInfoResolver(
+            LastFmService lastFmService,
+            MeterRegistry meterRegistry,
+            @Value("${app.lastfm.resolver.workers:4}") int workerCount,
+            @Value("${app.lastfm.resolver.wait-ms:5000}") long waitMs,
+            @Value("${app.lastfm.resolver.max-queued:1000}") int maxQueued,
+            @Value("${app.lastfm.resolver.max-batch:50}") int maxBatch) {
+        this.lastFmService = lastFmService;
+        this.waitMs = waitMs;
+        this.maxQueued = maxQueued;
+        this.maxBatch = maxBatch;
+        
+        // Lookups are only handed over when a worker is idle, so priority order holds until the last moment
+        this.idleWorkers = new Semaphore(workerCount);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "lastfm-lookup-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.dispatcher = new Thread(this::dispatch, "lastfm-dispatch");
+        this.dispatcher.setDaemon(true);
+        
+        this.dropped = meterRegistry.counter("lastfm.lookups.dropped");
+        meterRegistry.gauge("lastfm.lookups.queued", pending, Map::size);
+    }
+    
+    // Not from the constructor, so the dispatcher never sees a partly built resolver
+    @PostConstruct
+    public void start() {
+        dispatcher.start();
+    }
+    
+    public int maxBatch() {
+        return maxBatch;
+    }
+    
+    /**
+     * Look up one track for a user, wiki included, waiting for it
+     * 
+     * @return The track, or empty if Last.fm does not know it
+     * @throws UpstreamUnavailableException If Last.fm fails or the lookup does not get through in time
+     */
+    public Optional<TrackInfo> resolve(String artist, String track) {
+        if (isBlank(artist) || isBlank(track)) {
+            return Optional.empty();
+        }
+        
+        CachedTrack cached = lastFmService.peekTrackInfo(artist, track, true);
+        if (!cached.isMiss()) {
+            return cached.toOptional();
+        }
+        
+        try {
+            return enqueue(artist, track, Priority.INTERACTIVE).get(waitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Queued too long or Last.fm was slow; an empty budget is reported by the lookup itself
+            throw new UpstreamUnavailableException("Last.fm lookup timed out", e);
+        } catch (ExecutionException e) {
+            throw unavailable(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UpstreamUnavailableException("Interrupted waiting for Last.fm", e);
+        }
+    }
+    
+    /**
+     * Look up many tracks in one call, waiting at most once for all of them. Wikis are left out.
+     * Lookups still queued at the deadline carry on in the background and land in the cache.
+     * 
+     * @return One entry per query, in order: the track, or null if unknown, failed or not yet resolved
+     */
+    public List<TrackInfo> resolveAll(List<TrackQuery> queries) {
+        List<CompletableFuture<Optional<TrackInfo>>> lookups = new ArrayList<>(queries.size());
+        for (TrackQuery query : queries.subList(0, Math.min(queries.size(), maxBatch))) {
+            CachedTrack cached = isBlank(query.artist()) || isBlank(query.track())
+                    ? CachedTrack.absent()
+                    : cached(query.artist(), query.track());
+            lookups.add(cached.isMiss()
+                    ? enqueue(query.artist(), query.track(), Priority.BATCH)
+                    : CompletableFuture.completedFuture(cached.toOptional()));
+        }
+        
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMs);
+        List<TrackInfo> results = new ArrayList<>(lookups.size());
+        for (CompletableFuture<Optional<TrackInfo>> lookup : lookups) {
+            try {
+                long remaining = Math.max(0, deadline - System.nanoTime());
+                results.add(lookup.get(remaining, TimeUnit.NANOSECONDS).map(TrackInfoResolver::withoutWiki).orElse(null));
+            } catch (TimeoutException | ExecutionException e) {
+                results.add(null);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new UpstreamUnavailableException("Interrupted waiting for Last.fm", e);
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Start a lookup without waiting for it. The wiki is left out.
+     * 
+     * @return The lookup, already complete on a cache hit
+     */
+    public CompletableFuture<Optional<TrackInfo>> lookup(String artist, String track, Priority priority) {
+        if (isBlank(artist) || isBlank(track)) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        CachedTrack cached = cached(artist, track);
+        return cached.isMiss()
+                ? enqueue(artist, track, priority).thenApply(result -> result.map(TrackInfoResolver::withoutWiki))
+                : CompletableFuture.completedFuture(cached.toOptional());
+    }
+    
+    /**
+     * Warm the cache for a track nobody has asked for yet, if there is room in the queue
+     */
+    public void prefetch(String artist, String track) {
+        if (isBlank(artist) || isBlank(track) || !cached(artist, track).isMiss()) {
+            return;
+        }
+        enqueue(artist, track, Priority.PREFETCH);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.interrupt();
+        workers.shutdownNow();
+    }
+    
+    private CompletableFuture<Optional<TrackInfo>> enqueue(String artist, String track, Priority priority) {
+        String key = LastFmService.trackKey(artist, track);
+        
+        // Background lookups stop at maxQueued; users get twice that headroom, then a 503
+        int limit = priority == Priority.INTERACTIVE ? maxQueued * 2 : maxQueued;
+        if (pending.size() >= limit && !pending.containsKey(key)) {
+            dropped.increment();
+            return priority == Priority.INTERACTIVE
+                    ? CompletableFuture.failedFuture(new UpstreamUnavailableException("Last.fm lookup queue full", null))
+                    : CompletableFuture.completedFuture(Optional.empty());
+        }
+        
+        Lookup lookup = pending.computeIfAbsent(key, k -> new Lookup(k, artist, track));
+        if (lookup.promote(priority)) {
+            queue.add(new Ticket(lookup, priority, sequence.incrementAndGet()));
+        }
+        return lookup.result;
+    }
+    
+    private void dispatch() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                // Wait for a worker first, so a lookup queued meanwhile can still jump ahead
+                idleWorkers.acquire();
+                
+                Lookup lookup;
+                do {
+                    lookup = queue.take().lookup();
+                } while (!lookup.claim());
+                
+                Lookup claimed = lookup;
+                workers.execute(() -> {
+                    try {
+                        claimed.run();
+                    } finally {
+                        idleWorkers.release();
+                    }
+                });
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                LOG.error("Last.fm dispatcher error: {}", e.getMessage(), e);
+            }
+        }
+    }
+    
+    /**
+     * The cached track without its wiki
+     */
+    private CachedTrack cached(String artist, String track) {
+        return lastFmService.peekTrackInfo(artist, track, false);
+    }
+    
+    private static TrackInfo withoutWiki(TrackInfo track) {
+        return new TrackInfo(track.name(), track.artist(), track.album(), track.url(), track.imageUrl(),
+                track.listeners(), track.playCount(), "", track.isLoved(), track.tags());
+    }
+    
+    private static UpstreamUnavailableException unavailable(ExecutionException e) {
+        if (e.getCause() instanceof UpstreamUnavailableException upstream) {
+            return upstream;
+        }
+        return new UpstreamUnavailableException("Last.fm lookup failed", e.getCause());
+    }
+    
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+    
+    private record Ticket(Lookup lookup, Priority priority, long sequence) {
+    }
+    
+    // One queued track, possibly behind several tickets after promotion
+    private final class Lookup {
+        final String key;
+        final String artist;
+        final String track;
+        final CompletableFuture<Optional<TrackInfo>> result = new CompletableFuture<>();
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private Priority priority;
+        
+        Lookup(String key, String artist, String track) {
+            this.key = key;
+            this.artist = artist;
+            this.track = track;
+        }
+        
+        /**
+         * Whether this priority beats the best one queued so far and needs a ticket of its own
+         */
+        synchronized boolean promote(Priority requested) {
+            if (claimed.get() || (priority != null && priority.compareTo(requested) <= 0)) {
+                return false;
+            }
+            priority = requested;
+            return true;
+        }
+        
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+        
+        void run() {
+            try {
+                // Fills the lastFm cache, so the answer is stored for everyone else
+                result.complete(lastFmService.getTrackInfo(artist, track));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            } finally {
+                pending.remove(key, this);
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.amadeodlp.canalradionov.core.services.radio;
+
+import com.amadeodlp.canalradionov.core.model.lastfm.TrackInfo;
+import com.amadeodlp.canalradionov.core.model.lastfm.TrackSearchPage;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Paged track search for infinite scroll.
+ * Each search term gets a cursor that merges Last.fm's fixed-size result pages into one list,
+ * without the duplicates Last.fm repeats across pages. Client pages are slices of that list, so
+ * any page size works. Serving a page starts loading the next upstream page in the background
+ * when the cursor is not a full page ahead, so scrolling is normally answered from memory.
+ * Upstream pages are also kept in the lastFm cache, so an evicted cursor rebuilds without
+ * calling Last.fm.
+ */
+@Service
+public class TrackSearchService {
+    private static final Logger LOG = LoggerFactory.getLogger(TrackSearchService.class);
+    
+    private final LastFmService lastFmService;
+    private final int upstreamPageSize;
+    private final int maxUpstreamPages;
+    private final int maxPageSize;
+    private final ThreadPoolExecutor prefetcher;
+    
+    // Normalized term -> merged results so far
+    private final Cache<String, Cursor> cursors;
+    
+    public TrackSearchService(
+            LastFmService lastFmService,
+            @Value("${app.lastfm.search.upstream-page-size:30}") int upstreamPageSize,
+            @Value("${app.lastfm.search.max-upstream-pages:10}") int maxUpstreamPages,
+            @Value("${app.lastfm.search.max-page-size:50}") int maxPageSize,
+            @Value("${app.lastfm.search.cursor-idle-minutes:10}") long cursorIdleMinutes,
+            @Value("${app.lastfm.search.max-cursors:10000}") long maxCursors) {
+        this.lastFmService = lastFmService;
+        this.upstreamPageSize = upstreamPageSize;
+        this.maxUpstreamPages = maxUpstreamPages;
+        this.maxPageSize = maxPageSize;
+        this.cursors = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofMinutes(cursorIdleMinutes))
+                .maximumSize(maxCursors)
+                .build();
+        
+        // Prefetches wait on the shared Last.fm budget, so a short queue is plenty; beyond it they are skipped
+        AtomicInteger threadCount = new AtomicInteger();
+        this.prefetcher = new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(32), runnable -> {
+                    Thread thread = new Thread(runnable, "track-search-prefetch-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+    
+    public int maxPageSize() {
+        return maxPageSize;
+    }
+    
+    /**
+     * The last page number that can have results at this page size
+     */
+    public int maxPage(int pageSize) {
+        return (maxResults() + pageSize - 1) / pageSize;
+    }
+    
+    private int maxResults() {
+        return maxUpstreamPages * upstreamPageSize;
+    }
+    
+    /**
+     * One page of results, loading from Last.fm only what the cursor does not have yet
+     * 
+     * @param page The page number, from 1
+     * @throws com.amadeodlp.canalradionov.core.exceptions.UpstreamUnavailableException If a needed page cannot be fetched
+     */
+    public TrackSearchPage search(String query, int page, int pageSize) {
+        // Past the last result Last.fm will ever be asked for, there is nothing to load
+        long start = (long) (page - 1) * pageSize;
+        if (query == null || query.isBlank() || page < 1 || pageSize < 1 || start >= maxResults()) {
+            return new TrackSearchPage(query, page, pageSize, List.of(), false);
+        }
+        
+        Cursor cursor = cursors.get(LastFmService.normalizeKey(query), key -> new Cursor(query));
+        int end = (int) Math.min(start + pageSize, maxResults());
+        while (!cursor.covers(end)) {
+            try {
+                loadNext(cursor, false).join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        
+        TrackSearchPage result = cursor.page(page, pageSize);
+        
+        // Stay a page ahead so the next scroll is served from memory
+        if (!cursor.covers(end + pageSize)) {
+            loadNext(cursor, true);
+        }
+        return result;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        prefetcher.shutdownNow();
+    }
+    
+    /**
+     * Append the cursor's next upstream page. A load already running is shared rather than repeated.
+     * 
+     * @param async Whether to load in the background; skipped if the prefetch queue is full
+     */
+    private CompletableFuture<Void> loadNext(Cursor cursor, boolean async) {
+        CompletableFuture<Void> loading = new CompletableFuture<>();
+        int upstreamPage;
+        synchronized (cursor) {
+            if (cursor.loading != null) {
+                return cursor.loading;
+            }
+            if (cursor.exhausted) {
+                return CompletableFuture.completedFuture(null);
+            }
+            cursor.loading = loading;
+            upstreamPage = cursor.loadedPages + 1;
+        }
+        
+        Runnable load = () -> {
+            try {
+                List<TrackInfo> tracks = lastFmService.searchPage(cursor.query, upstreamPage, upstreamPageSize);
+                cursor.append(tracks, upstreamPage, tracks.size() < upstreamPageSize || upstreamPage >= maxUpstreamPages);
+                loading.complete(null);
+            } catch (RuntimeException e) {
+                cursor.release(loading);
+                loading.completeExceptionally(e);
+            }
+        };
+        
+        if (!async) {
+            load.run();
+            return loading;
+        }
+        try {
+            prefetcher.execute(load);
+        } catch (RejectedExecutionException e) {
+            LOG.debug("Prefetch queue full, not prefetching page {} of {}", upstreamPage, cursor.query);
+            cursor.release(loading);
+            loading.complete(null);
+        }
+        return loading;
+    }
+    
+    private static final class Cursor {
+        final String query;
+        final List<TrackInfo> tracks = new ArrayList<>();
+        final Set<String> seen = new HashSet<>();
+        int loadedPages;
+        boolean exhausted;
+        CompletableFuture<Void> loading;
+        
+        Cursor(String query) {
+            this.query = query;
+        }
+        
+        synchronized boolean covers(int count) {
+            return tracks.size() >= count || exhausted;
+        }
+        
+        synchronized void append(List<TrackInfo> page, int pageNumber, boolean last) {
+            for (TrackInfo track : page) {
+                if (seen.add(LastFmService.trackKey(track.artist(), track.name()))) {
+                    tracks.add(track);
+                }
+            }
+            loadedPages = pageNumber;
+            exhausted = last;
+            loading = null;
+        }
+        
+        synchronized void release(CompletableFuture<Void> failed) {
+            if (loading == failed) {
+                loading = null;
+            }
+        }
+        
+        synchronized TrackSearchPage page(int page, int pageSize) {
+            int from = (int) Math.min(tracks.size(), (long) (page - 1) * pageSize);
+            int to = (int) Math.min(tracks.size(), (long) page * pageSize);
+            boolean hasMore = tracks.size() > to || !exhausted;
+            return new TrackSearchPage(query, page, pageSize, List.copyOf(tracks.subList(from, to)), hasMore);
+        }
+    }
+}
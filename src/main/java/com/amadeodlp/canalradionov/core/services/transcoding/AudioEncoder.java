@@ -0,0 +1,35 @@
+package com.amadeodlp.canalradionov.core.services.transcoding;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Pluggable audio encoder used by the transcoding stage.
+ * Implementations write an HLS media playlist (index.m3u8) plus its segments into the target directory.
+ */
+public interface AudioEncoder {
+
+    /**
+     * Encode a finished source file into a single rendition, blocking until done
+     *
+     * @param source Local path of the source audio
+     * @param targetDir Directory that receives the playlist and segments
+     * @param bitrateKbps Target audio bitrate
+     */
+    void encode(Path source, Path targetDir, int bitrateKbps) throws IOException, InterruptedException;
+
+    /**
+     * Start a long-running encoder for a live source
+     *
+     * @param sourceUrl Ingest URL of the live stream
+     * @param targetDir Directory that receives the rolling playlist and segments
+     * @param bitrateKbps Target audio bitrate
+     * @return The running encoder process
+     */
+    Process startLive(String sourceUrl, Path targetDir, int bitrateKbps) throws IOException;
+
+    /**
+     * Codec string advertised in the master playlist (RFC 6381)
+     */
+    String codec();
+}
@@ -0,0 +1,112 @@
+package com.amadeodlp.canalradionov.core.services.transcoding;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AudioEncoder backed by an external ffmpeg process producing AAC-LC HLS renditions
+ */
+public class FfmpegAudioEncoder implements AudioEncoder {
+    private static final Logger LOG = LoggerFactory.getLogger(FfmpegAudioEncoder.class);
+    
+    private static final String PLAYLIST_NAME = "index.m3u8";
+    
+    private final String command;
+    private final int segmentSeconds;
+    private final long timeoutSeconds;
+    
+    public FfmpegAudioEncoder(String command, int segmentSeconds, long timeoutSeconds) {
+        this.command = command;
+        this.segmentSeconds = segmentSeconds;
+        this.timeoutSeconds = timeoutSeconds;
+    }
+    
+    @Override
+    public void encode(Path source, Path targetDir, int bitrateKbps) throws IOException, InterruptedException {
+        Files.createDirectories(targetDir);
+        
+        List<String> args = baseArgs(source.toString(), bitrateKbps);
+        args.add("-hls_playlist_type");
+        args.add("vod");
+        args.add(targetDir.resolve(PLAYLIST_NAME).toString());
+        
+        Process process = start(args, targetDir);
+        boolean exited;
+        try {
+            exited = process.waitFor(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            // The pool is shutting down, the encoder must not outlive it
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+        if (!exited) {
+            process.destroyForcibly();
+            throw new IOException("Encoder timed out after " + timeoutSeconds + "s at " + bitrateKbps + "k");
+        }
+        
+        if (process.exitValue() != 0) {
+            throw new IOException("Encoder exited with code " + process.exitValue() + " at " + bitrateKbps + "k");
+        }
+    }
+    
+    @Override
+    public Process startLive(String sourceUrl, Path targetDir, int bitrateKbps) throws IOException {
+        Files.createDirectories(targetDir);
+        
+        List<String> args = baseArgs(sourceUrl, bitrateKbps);
+        args.add("-hls_list_size");
+        args.add("10");
+        args.add("-hls_flags");
+        args.add("delete_segments");
+        args.add(targetDir.resolve(PLAYLIST_NAME).toString());
+        
+        return start(args, targetDir);
+    }
+    
+    @Override
+    public String codec() {
+        return "mp4a.40.2";
+    }
+    
+    private List<String> baseArgs(String input, int bitrateKbps) {
+        List<String> args = new ArrayList<>();
+        args.add(command);
+        args.add("-hide_banner");
+        args.add("-loglevel");
+        args.add("error");
+        args.add("-y");
+        args.add("-i");
+        args.add(input);
+        args.add("-vn");
+        args.add("-c:a");
+        args.add("aac");
+        args.add("-b:a");
+        args.add(bitrateKbps + "k");
+        // Low rungs are meant for poor mobile links, mono keeps them intelligible
+        args.add("-ac");
+        args.add(bitrateKbps < 64 ? "1" : "2");
+        args.add("-f");
+        args.add("hls");
+        args.add("-hls_time");
+        args.add(String.valueOf(segmentSeconds));
+        return args;
+    }
+    
+    private Process start(List<String> args, Path targetDir) throws IOException {
+        LOG.debug("Starting encoder: {}", String.join(" ", args));
+        
+        // Encoder output goes to a log file so a chatty process can never block on a full pipe
+        return new ProcessBuilder(args)
+                .redirectErrorStream(true)
+                .redirectOutput(targetDir.resolve("encoder.log").toFile())
+                .start();
+    }
+}
@@ -0,0 +1,77 @@
+package com.amadeodlp.canalradionov.core.services.transcoding;
+
+import com.amadeodlp.canalradionov.core.model.media.Episode;
+import com.amadeodlp.canalradionov.core.model.transcoding.BitrateLadder;
+import com.amadeodlp.canalradionov.core.model.transcoding.Rendition;
+
+import java.nio.file.Path;
+
+/**
+ * Service producing multi-bitrate renditions for episodes and live broadcasts
+ */
+public interface TranscodingService {
+    
+    /**
+     * Queue an episode for transcoding into the configured bitrate ladder
+     * 
+     * @param showId The show the episode belongs to
+     * @param episode The episode to transcode
+     * @return The ladder with its renditions in PENDING state, or the existing ladder if one is in progress
+     */
+    BitrateLadder transcodeEpisode(String showId, Episode episode);
+    
+    /**
+     * Get the ladder of an episode
+     * 
+     * @return The ladder or null if the episode was never transcoded
+     */
+    BitrateLadder getEpisodeLadder(String showId, String episodeId);
+    
+    /**
+     * Start live encoders for every rung of the ladder of a broadcast
+     * 
+     * @param broadcastId The broadcast session ID
+     * @return The live ladder
+     */
+    BitrateLadder startLiveLadder(String broadcastId);
+    
+    /**
+     * Stop the live encoders of a broadcast and drop its segments
+     * 
+     * @param broadcastId The broadcast session ID
+     */
+    void stopLiveLadder(String broadcastId);
+    
+    /**
+     * Get the live ladder of a broadcast
+     * 
+     * @return The ladder or null if the broadcast has no live encoders
+     */
+    BitrateLadder getBroadcastLadder(String broadcastId);
+    
+    /**
+     * Pick the best rendition for a client bandwidth estimate
+     * 
+     * @param ladder The ladder to choose from
+     * @param bandwidthKbps Client bandwidth estimate in kbps
+     * @return The chosen rendition or null if nothing is playable yet
+     */
+    Rendition selectRendition(BitrateLadder ladder, int bandwidthKbps);
+    
+    /**
+     * Build an HLS master playlist for a ladder
+     * 
+     * @param ladder The ladder
+     * @param bandwidthKbps Optional client bandwidth estimate; the matching rendition is listed first
+     *                      so players start on it before their own adaptation kicks in
+     * @return The playlist body
+     */
+    String buildMasterPlaylist(BitrateLadder ladder, Integer bandwidthKbps);
+    
+    /**
+     * Resolve a live playlist or segment file on local disk
+     * 
+     * @return The file path or null if it does not exist
+     */
+    Path resolveLiveFile(String broadcastId, String variant, String fileName);
+}
@@ -0,0 +1,466 @@
+package com.amadeodlp.canalradionov.core.services.transcoding;
+
+import com.amadeodlp.canalradionov.core.model.media.Episode;
+import com.amadeodlp.canalradionov.core.model.transcoding.BitrateLadder;
+import com.amadeodlp.canalradionov.core.model.transcoding.Rendition;
+import com.amadeodlp.canalradionov.core.model.transcoding.TranscodeStatus;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Service
+public class TranscodingServiceImpl implements TranscodingService {
+    private static final Logger LOG = LoggerFactory.getLogger(TranscodingServiceImpl.class);
+    
+    private static final Pattern SAFE_NAME = Pattern.compile("[A-Za-z0-9_.-]+");
+    private static final Pattern VARIANT = Pattern.compile("\\d+k");
+    
+    private final S3Client s3Client;
+    private final AudioEncoder encoder;
+    private final ExecutorService executor;
+    private final String bucketName;
+    private final String cloudfrontDomain;
+    private final int[] ladderKbps;
+    private final Path workDir;
+    private final String liveIngestUrl;
+    private final int maxLiveBroadcasts;
+    
+    // Ladders by "episode:{showId}/{episodeId}" or "broadcast:{id}"
+    private final Map<String, BitrateLadder> ladders = new ConcurrentHashMap<>();
+    
+    // Running live encoder processes by broadcast ID
+    private final Map<String, List<Process>> liveEncoders = new ConcurrentHashMap<>();
+    
+    public TranscodingServiceImpl(
+            S3Client s3Client,
+            AudioEncoder encoder,
+            @Qualifier("transcodingExecutor") ExecutorService executor,
+            @Value("${app.media.bucket-name:canal-radio-nov-media}") String bucketName,
+            @Value("${app.media.cloudfront-domain:}") String cloudfrontDomain,
+            @Value("${app.transcoding.ladder:32,64,128}") int[] ladderKbps,
+            @Value("${app.transcoding.work-dir:${java.io.tmpdir}/canalradionov-transcoding}") String workDir,
+            @Value("${app.transcoding.live-ingest-url:}") String liveIngestUrl,
+            @Value("${app.transcoding.max-live-broadcasts:4}") int maxLiveBroadcasts) {
+        this.s3Client = s3Client;
+        this.encoder = encoder;
+        this.executor = executor;
+        this.bucketName = bucketName;
+        this.cloudfrontDomain = cloudfrontDomain;
+        this.ladderKbps = Arrays.stream(ladderKbps).sorted().distinct().toArray();
+        this.workDir = Paths.get(workDir);
+        this.liveIngestUrl = liveIngestUrl;
+        this.maxLiveBroadcasts = maxLiveBroadcasts;
+        
+        if (liveIngestUrl.isBlank()) {
+            LOG.info("No live ingest URL configured, broadcasts will not be transcoded");
+        }
+    }
+    
+    @Override
+    public BitrateLadder transcodeEpisode(String showId, Episode episode) {
+        String sourceId = showId + "/" + episode.id();
+        String ladderKey = "episode:" + sourceId;
+        
+        String sourceKey = episode.audioUrl().startsWith("/") ? episode.audioUrl().substring(1) : episode.audioUrl();
+        String outputPrefix = "media/renditions/episodes/" + sourceId + "/";
+        
+        List<Rendition> renditions = Arrays.stream(ladderKbps)
+                .mapToObj(kbps -> new Rendition(
+                    kbps,
+                    encoder.codec(),
+                    publicUrl(outputPrefix + kbps + "k/index.m3u8"),
+                    TranscodeStatus.PENDING
+                ))
+                .collect(Collectors.toList());
+        BitrateLadder queued = new BitrateLadder(sourceId, "episode", false, renditions, LocalDateTime.now());
+        
+        // Atomic, so two requests for the same episode cannot both queue it; only a failed ladder is replaced
+        BitrateLadder ladder = ladders.compute(ladderKey, (key, existing) ->
+                existing != null && existing.renditions().stream().noneMatch(r -> r.status() == TranscodeStatus.FAILED)
+                        ? existing : queued);
+        if (ladder != queued) {
+            LOG.info("Episode {} already has a ladder, skipping", sourceId);
+            return ladder;
+        }
+        
+        LOG.info("Queueing transcoding for episode {}", sourceId);
+        
+        AtomicReference<Path> jobDir = new AtomicReference<>();
+        try {
+            CompletableFuture.supplyAsync(() -> downloadSource(sourceKey), executor)
+                    .thenCompose(source -> {
+                        jobDir.set(source.getParent());
+                        // One task per rung so the ladder spreads over the pool instead of holding one worker
+                        CompletableFuture<?>[] steps = Arrays.stream(ladderKbps)
+                                .mapToObj(kbps -> encodeAsync(ladderKey, source, outputPrefix, kbps))
+                                .toArray(CompletableFuture[]::new);
+                        return CompletableFuture.allOf(steps);
+                    })
+                    // On the outer future, so the job directory goes whichever step failed
+                    .whenComplete((ignored, e) -> {
+                        if (jobDir.get() != null) {
+                            deleteQuietly(jobDir.get());
+                        }
+                    })
+                    .exceptionally(e -> {
+                        LOG.error("Transcoding failed for episode {}: {}", sourceId, e.getMessage(), e);
+                        failPending(ladderKey);
+                        return null;
+                    });
+        } catch (RejectedExecutionException e) {
+            LOG.warn("Transcoding queue is full, rejecting episode {}", sourceId);
+            failPending(ladderKey);
+            throw new IllegalStateException("Transcoding queue is full");
+        }
+        
+        return ladder;
+    }
+    
+    @Override
+    public BitrateLadder getEpisodeLadder(String showId, String episodeId) {
+        return ladders.get("episode:" + showId + "/" + episodeId);
+    }
+    
+    @Override
+    public BitrateLadder startLiveLadder(String broadcastId) {
+        String ladderKey = "broadcast:" + broadcastId;
+        
+        if (liveIngestUrl.isBlank()) {
+            throw new IllegalStateException("Live transcoding is not configured");
+        }
+        
+        // Relative to the master playlist served by BroadcastController
+        List<Rendition> renditions = Arrays.stream(ladderKbps)
+                .mapToObj(kbps -> new Rendition(
+                    kbps,
+                    encoder.codec(),
+                    "/api/broadcast/" + broadcastId + "/hls/" + kbps + "k/index.m3u8",
+                    TranscodeStatus.PENDING
+                ))
+                .collect(Collectors.toList());
+        
+        BitrateLadder ladder = new BitrateLadder(broadcastId, "broadcast", true, renditions, LocalDateTime.now());
+        List<Process> processes = new CopyOnWriteArrayList<>();
+        
+        // Checked and claimed together, so concurrent starts cannot pass the limit or replace a running ladder
+        synchronized (liveEncoders) {
+            if (liveEncoders.containsKey(broadcastId)) {
+                LOG.info("Broadcast {} is already being transcoded", broadcastId);
+                return ladders.get(ladderKey);
+            }
+            if (liveEncoders.size() >= maxLiveBroadcasts) {
+                LOG.warn("Live encoder limit reached ({}), not transcoding broadcast {}", maxLiveBroadcasts, broadcastId);
+                throw new IllegalStateException("Too many live broadcasts are being transcoded");
+            }
+            ladders.put(ladderKey, ladder);
+            liveEncoders.put(broadcastId, processes);
+        }
+        
+        LOG.info("Starting live ladder for broadcast {}", broadcastId);
+        
+        String sourceUrl = String.format(liveIngestUrl, broadcastId);
+        try {
+            // Only the process launch runs on the pool, encoders themselves live outside the JVM
+            executor.execute(() -> launchLiveEncoders(ladderKey, broadcastId, sourceUrl, processes));
+        } catch (RejectedExecutionException e) {
+            LOG.warn("Transcoding queue is full, rejecting broadcast {}", broadcastId);
+            liveEncoders.remove(broadcastId, processes);
+            failPending(ladderKey);
+            throw new IllegalStateException("Transcoding queue is full");
+        }
+        
+        return ladder;
+    }
+    
+    @Override
+    public void stopLiveLadder(String broadcastId) {
+        LOG.info("Stopping live ladder for broadcast {}", broadcastId);
+        
+        ladders.remove("broadcast:" + broadcastId);
+        
+        List<Process> processes = liveEncoders.remove(broadcastId);
+        if (processes != null) {
+            processes.forEach(Process::destroy);
+        }
+        
+        deleteQuietly(workDir.resolve("live").resolve(broadcastId));
+    }
+    
+    @Override
+    public BitrateLadder getBroadcastLadder(String broadcastId) {
+        String ladderKey = "broadcast:" + broadcastId;
+        BitrateLadder ladder = ladders.get(ladderKey);
+        if (ladder == null) {
+            return null;
+        }
+        
+        // A live rung is playable once its encoder has written the first playlist
+        for (Rendition rendition : ladder.renditions()) {
+            if (rendition.status() == TranscodeStatus.RUNNING
+                    && Files.isRegularFile(liveDir(broadcastId, rendition.bitrateKbps()).resolve("index.m3u8"))) {
+                updateRendition(ladderKey, rendition.bitrateKbps(), TranscodeStatus.READY);
+            }
+        }
+        return ladders.get(ladderKey);
+    }
+    
+    @Override
+    public Rendition selectRendition(BitrateLadder ladder, int bandwidthKbps) {
+        List<Rendition> playable = playable(ladder);
+        if (playable.isEmpty()) {
+            return null;
+        }
+        
+        // Keep 20% headroom so a rung does not stall as soon as the link wobbles
+        Rendition selected = playable.get(0);
+        for (Rendition rendition : playable) {
+            if (rendition.bitrateKbps() * 1.2 <= bandwidthKbps) {
+                selected = rendition;
+            }
+        }
+        return selected;
+    }
+    
+    @Override
+    public String buildMasterPlaylist(BitrateLadder ladder, Integer bandwidthKbps) {
+        List<Rendition> variants = new ArrayList<>(playable(ladder));
+        
+        if (bandwidthKbps != null && !variants.isEmpty()) {
+            Rendition selected = selectRendition(ladder, bandwidthKbps);
+            variants.remove(selected);
+            variants.add(0, selected);
+        }
+        
+        StringBuilder sb = new StringBuilder();
+        sb.append("#EXTM3U\n");
+        sb.append("#EXT-X-VERSION:3\n");
+        sb.append("#EXT-X-INDEPENDENT-SEGMENTS\n");
+        
+        for (Rendition rendition : variants) {
+            // BANDWIDTH is the peak in bits/s; allow ~10% for MPEG-TS container overhead
+            int average = rendition.bitrateKbps() * 1000;
+            int peak = average + average / 10;
+            sb.append("#EXT-X-STREAM-INF:BANDWIDTH=").append(peak)
+              .append(",AVERAGE-BANDWIDTH=").append(average)
+              .append(",CODECS=\"").append(rendition.codec()).append("\"\n");
+            sb.append(rendition.playlistUrl()).append('\n');
+        }
+        
+        return sb.toString();
+    }
+    
+    @Override
+    public Path resolveLiveFile(String broadcastId, String variant, String fileName) {
+        if (!liveEncoders.containsKey(broadcastId)
+                || !VARIANT.matcher(variant).matches()
+                || !SAFE_NAME.matcher(fileName).matches()) {
+            return null;
+        }
+        
+        Path file = workDir.resolve("live").resolve(broadcastId).resolve(variant).resolve(fileName);
+        return Files.isRegularFile(file) ? file : null;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        liveEncoders.values().forEach(processes -> processes.forEach(Process::destroy));
+        liveEncoders.clear();
+    }
+    
+    private void launchLiveEncoders(String ladderKey, String broadcastId, String sourceUrl, List<Process> processes) {
+        for (int kbps : ladderKbps) {
+            if (liveEncoders.get(broadcastId) != processes) {
+                // Broadcast was stopped, and maybe started again, before we got to it
+                return;
+            }
+            
+            try {
+                Process process = encoder.startLive(sourceUrl, liveDir(broadcastId, kbps), kbps);
+                processes.add(process);
+                updateRendition(ladderKey, kbps, TranscodeStatus.RUNNING);
+                
+                process.onExit().thenAccept(exited -> {
+                    if (exited.exitValue() != 0 && liveEncoders.get(broadcastId) == processes) {
+                        LOG.warn("Live encoder for broadcast {} at {}k exited with code {}",
+                                broadcastId, kbps, exited.exitValue());
+                        updateRendition(ladderKey, kbps, TranscodeStatus.FAILED);
+                    }
+                });
+                
+                if (liveEncoders.get(broadcastId) != processes) {
+                    process.destroy();
+                }
+            } catch (IOException e) {
+                LOG.error("Could not start live encoder for broadcast {} at {}k", broadcastId, kbps, e);
+                updateRendition(ladderKey, kbps, TranscodeStatus.FAILED);
+            }
+        }
+    }
+    
+    private Path liveDir(String broadcastId, int kbps) {
+        return workDir.resolve("live").resolve(broadcastId).resolve(kbps + "k");
+    }
+    
+    private Path downloadSource(String sourceKey) {
+        try {
+            Files.createDirectories(workDir);
+            Path jobDir = Files.createTempDirectory(workDir, "job-");
+            Path source = jobDir.resolve("source");
+            
+            try {
+                s3Client.getObject(GetObjectRequest.builder()
+                        .bucket(bucketName)
+                        .key(sourceKey)
+                        .build(), ResponseTransformer.toFile(source));
+            } catch (RuntimeException e) {
+                // The caller only learns of the job directory from the source path, so it goes here
+                deleteQuietly(jobDir);
+                throw e;
+            }
+            
+            return source;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private CompletableFuture<Void> encodeAsync(String ladderKey, Path source, String outputPrefix, int kbps) {
+        try {
+            return CompletableFuture.runAsync(() -> encodeAndPublish(ladderKey, source, outputPrefix, kbps), executor);
+        } catch (RejectedExecutionException e) {
+            // Rungs already queued still need the source, so only this one fails
+            LOG.warn("Transcoding queue is full, dropping rendition {}k under {}", kbps, outputPrefix);
+            updateRendition(ladderKey, kbps, TranscodeStatus.FAILED);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+    
+    private void encodeAndPublish(String ladderKey, Path source, String outputPrefix, int kbps) {
+        updateRendition(ladderKey, kbps, TranscodeStatus.RUNNING);
+        
+        Path targetDir = source.getParent().resolve(kbps + "k");
+        try {
+            encoder.encode(source, targetDir, kbps);
+            
+            try (Stream<Path> files = Files.list(targetDir)) {
+                for (Path file : files.collect(Collectors.toList())) {
+                    String name = file.getFileName().toString();
+                    if (name.equals("encoder.log")) {
+                        continue;
+                    }
+                    
+                    s3Client.putObject(PutObjectRequest.builder()
+                            .bucket(bucketName)
+                            .key(outputPrefix + kbps + "k/" + name)
+                            .contentType(contentType(name))
+                            .build(), RequestBody.fromFile(file));
+                }
+            }
+            
+            updateRendition(ladderKey, kbps, TranscodeStatus.READY);
+            LOG.info("Rendition {}k published under {}", kbps, outputPrefix);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            updateRendition(ladderKey, kbps, TranscodeStatus.FAILED);
+        } catch (Exception e) {
+            LOG.error("Rendition {}k failed under {}: {}", kbps, outputPrefix, e.getMessage(), e);
+            updateRendition(ladderKey, kbps, TranscodeStatus.FAILED);
+        }
+    }
+    
+    private List<Rendition> playable(BitrateLadder ladder) {
+        return ladder.renditions().stream()
+                .filter(r -> r.status() == TranscodeStatus.READY)
+                .sorted(Comparator.comparingInt(Rendition::bitrateKbps))
+                .collect(Collectors.toList());
+    }
+    
+    private void updateRendition(String ladderKey, int kbps, TranscodeStatus status) {
+        ladders.computeIfPresent(ladderKey, (key, ladder) -> new BitrateLadder(
+            ladder.sourceId(),
+            ladder.sourceType(),
+            ladder.isLive(),
+            ladder.renditions().stream()
+                    .map(r -> r.bitrateKbps() == kbps ? r.withStatus(status) : r)
+                    .collect(Collectors.toList()),
+            ladder.createdAt()
+        ));
+    }
+    
+    private void failPending(String ladderKey) {
+        for (int kbps : ladderKbps) {
+            BitrateLadder ladder = ladders.get(ladderKey);
+            if (ladder == null) {
+                return;
+            }
+            boolean pending = ladder.renditions().stream()
+                    .anyMatch(r -> r.bitrateKbps() == kbps && r.status() == TranscodeStatus.PENDING);
+            if (pending) {
+                updateRendition(ladderKey, kbps, TranscodeStatus.FAILED);
+            }
+        }
+    }
+    
+    private String publicUrl(String objectKey) {
+        if (cloudfrontDomain != null && !cloudfrontDomain.isEmpty()) {
+            return "https://" + cloudfrontDomain + "/" + objectKey;
+        }
+        return "https://" + bucketName + ".s3." + s3Client.serviceClientConfiguration().region() + ".amazonaws.com/" + objectKey;
+    }
+    
+    private static String contentType(String fileName) {
+        if (fileName.endsWith(".m3u8")) {
+            return "application/vnd.apple.mpegurl";
+        }
+        if (fileName.endsWith(".ts")) {
+            return "video/mp2t";
+        }
+        return "application/octet-stream";
+    }
+    
+    private static void deleteQuietly(Path dir) {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    LOG.debug("Could not delete {}", path);
+                }
+            });
+        } catch (IOException e) {
+            LOG.debug("Could not clean up {}", dir);
+        }
+    }
+}
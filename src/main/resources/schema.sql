@@ -0,0 +1,14 @@
+CREATE TABLE IF NOT EXISTS playback_position (
+    user_id VARCHAR(128) NOT NULL,
+    media_id VARCHAR(256) NOT NULL,
+    position_ms BIGINT NOT NULL,
+    state VARCHAR(16) NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (user_id, media_id)
+);
+
+CREATE TABLE IF NOT EXISTS station_plays (
+    station_id VARCHAR(64) NOT NULL PRIMARY KEY,
+    play_count BIGINT NOT NULL,
+    updated_at TIMESTAMP NOT NULL
+);
@@ -0,0 +1,79 @@
+package com.amadeodlp.canalradionov.app.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StaleWhileRevalidateCacheTest {
+    
+    // Refreshes only run when the test says so, and are refused while the queue is "full"
+    private final List<Runnable> refreshes = new ArrayList<>();
+    private final AtomicBoolean queueFull = new AtomicBoolean();
+    
+    // No TTL, so every entry is stale as soon as it is written
+    private final StaleWhileRevalidateCache cache = new StaleWhileRevalidateCache("test", Duration.ZERO, Duration.ofHours(1), 100,
+            task -> {
+                if (queueFull.get()) {
+                    throw new RejectedExecutionException("full");
+                }
+                refreshes.add(task);
+            });
+    
+    @Test
+    void staleValueIsServedWhileOneRefreshRuns() throws InterruptedException {
+        AtomicInteger loads = new AtomicInteger();
+        cache.put("key", "old");
+        Thread.sleep(1);
+        
+        assertEquals("old", cache.get("key", () -> "new-" + loads.incrementAndGet()));
+        assertEquals("old", cache.get("key", () -> "new-" + loads.incrementAndGet()));
+        assertEquals(1, refreshes.size());
+        assertEquals(0, loads.get());
+        
+        refreshes.get(0).run();
+        assertEquals("new-1", cache.get("key").get());
+    }
+    
+    @Test
+    void failedRefreshKeepsTheStaleValue() throws InterruptedException {
+        cache.put("key", "old");
+        Thread.sleep(1);
+        
+        assertEquals("old", cache.get("key", () -> {
+            throw new IllegalStateException("upstream down");
+        }));
+        refreshes.get(0).run();
+        assertEquals("old", cache.get("key").get());
+        
+        // The failed refresh no longer blocks the next one
+        cache.get("key", () -> "new");
+        assertEquals(2, refreshes.size());
+    }
+    
+    @Test
+    void rejectedRefreshServesStaleAndIsRetriedLater() throws InterruptedException {
+        cache.put("key", "old");
+        Thread.sleep(1);
+        
+        queueFull.set(true);
+        assertEquals("old", cache.get("key", () -> "new"));
+        assertEquals(0, refreshes.size());
+        
+        queueFull.set(false);
+        assertEquals("old", cache.get("key", () -> "new"));
+        assertEquals(1, refreshes.size());
+    }
+    
+    @Test
+    void missingKeyIsLoadedByTheCaller() {
+        assertEquals("loaded", cache.get("key", () -> "loaded"));
+        assertEquals(0, refreshes.size());
+    }
+}
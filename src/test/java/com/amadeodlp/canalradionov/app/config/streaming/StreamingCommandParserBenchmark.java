@@ -0,0 +1,75 @@
+package com.amadeodlp.canalradionov.app.config.streaming;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the old substring matching of streaming commands with the token-stream parser.
+ * Run with the main method from the IDE or the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamingCommandParserBenchmark {
+    
+    @Param({
+            "{\"action\":\"play\",\"mediaId\":\"episode-42\"}",
+            "{\"action\":\"pauseStream\",\"position\":183000}",
+            "{\"client\":{\"device\":\"web\",\"version\":\"2.3.1\"},\"action\":\"stopStream\",\"position\":5}"
+    })
+    private String payload;
+    
+    private StreamingCommandParser parser;
+    
+    @Setup
+    public void setUp() {
+        parser = new StreamingCommandParser(new ObjectMapper().getFactory());
+    }
+    
+    @Benchmark
+    public Object legacyContains() {
+        // The matching the handler did before typed commands
+        if (payload.contains("\"action\":\"play\"")) {
+            int start = payload.indexOf("\"mediaId\":\"") + 11;
+            int end = payload.indexOf("\"", start);
+            return payload.substring(start, end);
+        } else if (payload.contains("\"action\":\"pauseStream\"")) {
+            return "paused";
+        } else if (payload.contains("\"action\":\"resumeStream\"")) {
+            return "resumed";
+        } else if (payload.contains("\"action\":\"stopStream\"")) {
+            return "stopped";
+        }
+        return null;
+    }
+    
+    @Benchmark
+    public StreamingCommand tokenStream() throws IOException {
+        return parser.parse(payload);
+    }
+    
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(StreamingCommandParserBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,31 @@
+package com.amadeodlp.canalradionov.app.config.streaming;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StreamingCommandParserTest {
+    
+    private final StreamingCommandParser parser = new StreamingCommandParser(new ObjectMapper().getFactory());
+    
+    @Test
+    void readsKnownFieldsAndSkipsOthers() throws IOException {
+        assertEquals(new StreamingCommand.Play("episode-42"),
+                parser.parse("{\"client\":{\"action\":\"stopStream\"},\"action\":\"play\",\"mediaId\":\"episode-42\"}"));
+        assertEquals(new StreamingCommand.Pause(183000L), parser.parse("{\"action\":\"pauseStream\",\"position\":183000}"));
+    }
+    
+    @Test
+    void nestedValuesInKnownFieldsAreSkippedWhole() throws IOException {
+        // Without skipping, the nested "action" would be read as the top-level one
+        assertEquals(new StreamingCommand.Stop(5L),
+                parser.parse("{\"mediaId\":{\"action\":\"play\"},\"action\":\"stopStream\",\"position\":5}"));
+        assertEquals(new StreamingCommand.Heartbeat(null),
+                parser.parse("{\"position\":[1,{\"action\":\"play\"}],\"action\":\"heartbeat\"}"));
+        assertEquals(new StreamingCommand.Unknown(null),
+                parser.parse("{\"action\":{\"action\":\"play\"},\"mediaId\":\"x\"}"));
+    }
+}
@@ -0,0 +1,45 @@
+package com.amadeodlp.canalradionov.app.web.controller.media;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AudioStreamControllerTest {
+    
+    private static final long LENGTH = 1000;
+    private static final long[] WHOLE_FILE = new long[0];
+    
+    @Test
+    void closedRangesAreClampedToTheFile() {
+        assertArrayEquals(new long[] {0, 499}, AudioStreamController.parseRange("bytes=0-499", LENGTH));
+        assertArrayEquals(new long[] {500, 999}, AudioStreamController.parseRange("bytes=500-5000", LENGTH));
+        assertArrayEquals(new long[] {7, 7}, AudioStreamController.parseRange("bytes=7-7", LENGTH));
+    }
+    
+    @Test
+    void openEndedRangeRunsToTheEnd() {
+        assertArrayEquals(new long[] {900, 999}, AudioStreamController.parseRange("bytes=900-", LENGTH));
+    }
+    
+    @Test
+    void suffixRangeCountsFromTheEnd() {
+        assertArrayEquals(new long[] {900, 999}, AudioStreamController.parseRange("bytes=-100", LENGTH));
+        assertArrayEquals(new long[] {0, 999}, AudioStreamController.parseRange("bytes=-5000", LENGTH));
+    }
+    
+    @Test
+    void rangesPastTheEndAreUnsatisfiable() {
+        assertNull(AudioStreamController.parseRange("bytes=1000-", LENGTH));
+        assertNull(AudioStreamController.parseRange("bytes=2000-3000", LENGTH));
+        assertNull(AudioStreamController.parseRange("bytes=-0", LENGTH));
+        assertNull(AudioStreamController.parseRange("bytes=0-", 0));
+    }
+    
+    @Test
+    void invalidAndMultipartRangesServeTheWholeFile() {
+        for (String header : new String[] {"bytes=5-3", "bytes=0-1,5-9", "bytes=abc", "bytes=1-x", "items=0-5", "bytes=5"}) {
+            assertArrayEquals(WHOLE_FILE, AudioStreamController.parseRange(header, LENGTH), header);
+        }
+    }
+}
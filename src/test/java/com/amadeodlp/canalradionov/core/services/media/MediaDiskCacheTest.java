@@ -0,0 +1,112 @@
+package com.amadeodlp.canalradionov.core.services.media;
+
+import com.amadeodlp.canalradionov.core.model.media.CachedMedia;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MediaDiskCacheTest {
+    
+    // Every object in the fake bucket is these four bytes
+    private static final byte[] CONTENT = "abcd".getBytes(StandardCharsets.US_ASCII);
+    
+    @TempDir
+    Path cacheDir;
+    
+    private final S3Client s3Client = mock(S3Client.class);
+    
+    @Test
+    void leftoverTempFilesAreRemovedOnStartup() throws IOException {
+        Path download = Files.createDirectories(cacheDir.resolve("media")).resolve(".download-123.tmp");
+        Files.write(download, CONTENT);
+        Path indexSave = Files.write(cacheDir.resolve(".index.tmp"), CONTENT);
+        Path media = Files.write(cacheDir.resolve("media/kept.tmp"), CONTENT);
+        
+        cache(100);
+        
+        assertFalse(Files.exists(download));
+        assertFalse(Files.exists(indexSave));
+        assertTrue(Files.exists(media));
+    }
+    
+    @Test
+    void leastRecentlyUsedEntryIsEvictedAndServedEntriesAreSkipped() throws IOException {
+        seed("media/a.mp3", "media/b.mp3", "media/c.mp3");
+        MediaDiskCache cache = cache(3 * CONTENT.length);
+        assertEquals(3L * CONTENT.length, cache.sizeBytes());
+        
+        // Reading "a" makes it the most recent and pins it; "b" is now the eldest
+        CachedMedia a = cache.get("media/a.mp3");
+        cache.get("media/d.mp3");
+        
+        assertFalse(Files.exists(cacheDir.resolve("media/b.mp3")));
+        for (String key : List.of("media/a.mp3", "media/c.mp3", "media/d.mp3")) {
+            assertTrue(Files.exists(cacheDir.resolve(key)), key);
+        }
+        assertEquals(3L * CONTENT.length, cache.sizeBytes());
+        cache.release(a);
+    }
+    
+    @Test
+    void pinnedEntriesLetTheCacheRunOverBudget() throws IOException {
+        seed("media/a.mp3", "media/b.mp3");
+        MediaDiskCache cache = cache(2 * CONTENT.length);
+        
+        cache.get("media/a.mp3");
+        cache.get("media/b.mp3");
+        cache.get("media/c.mp3");
+        
+        assertEquals(3L * CONTENT.length, cache.sizeBytes());
+        for (String key : List.of("media/a.mp3", "media/b.mp3", "media/c.mp3")) {
+            assertTrue(Files.exists(cacheDir.resolve(key)), key);
+        }
+    }
+    
+    private MediaDiskCache cache(long maxBytes) {
+        when(s3Client.headObject(any(HeadObjectRequest.class))).thenAnswer(invocation ->
+                HeadObjectResponse.builder().contentLength((long) CONTENT.length).build());
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenAnswer(invocation ->
+                new ResponseInputStream<>(GetObjectResponse.builder().contentLength((long) CONTENT.length).build(),
+                        AbortableInputStream.create(new ByteArrayInputStream(CONTENT))));
+        
+        MediaObjectIndex index = new MediaObjectIndex(s3Client, "bucket", "", Duration.ofMinutes(5),
+                Duration.ofSeconds(30), 1000);
+        return new MediaDiskCache(s3Client, index, "bucket", cacheDir.toString(), maxBytes, new SimpleMeterRegistry());
+    }
+    
+    /**
+     * Files and an index left by an earlier run, least recently used first
+     */
+    private void seed(String... keys) throws IOException {
+        StringBuilder index = new StringBuilder();
+        for (String key : keys) {
+            Path file = cacheDir.resolve(key);
+            Files.createDirectories(file.getParent());
+            Files.write(file, CONTENT);
+            index.append(key).append('\t').append(CONTENT.length).append("\t\t0\n");
+        }
+        Files.writeString(cacheDir.resolve(".index"), index);
+    }
+}
@@ -0,0 +1,115 @@
+package com.amadeodlp.canalradionov.core.services.playback;
+
+import com.amadeodlp.canalradionov.core.model.playback.PlaybackSession;
+import com.amadeodlp.canalradionov.core.model.playback.PlaybackState;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlaybackSessionServiceImplTest {
+    
+    private final JdbcTemplate jdbcTemplate = database();
+    private final PlaybackSessionServiceImpl service = new PlaybackSessionServiceImpl(jdbcTemplate, 16, 90);
+    
+    @Test
+    void pauseResumeAndStopFollowTheStateMachine() {
+        assertEquals(PlaybackState.PLAYING, service.play("c1", "user", "m1", "s1").state());
+        
+        PlaybackSession paused = service.pause("c1", 5_000L);
+        assertEquals(PlaybackState.PAUSED, paused.state());
+        assertEquals(5_000, paused.positionMs());
+        assertThrows(IllegalStateException.class, () -> service.pause("c1", null));
+        
+        PlaybackSession resumed = service.resume("c1", null);
+        assertEquals(PlaybackState.PLAYING, resumed.state());
+        assertTrue(resumed.positionMs() >= 5_000);
+        
+        PlaybackSession stopped = service.stop("c1", 8_000L);
+        assertEquals(PlaybackState.STOPPED, stopped.state());
+        assertEquals(8_000, stopped.positionMs());
+        
+        // Stopping frees the connection's session
+        assertThrows(IllegalStateException.class, () -> service.resume("c1", null));
+        assertThrows(IllegalStateException.class, () -> service.heartbeat("c1", null));
+    }
+    
+    @Test
+    void seekingMovesThePosition() {
+        service.play("c1", "user", "m1", "s1");
+        
+        long playing = service.heartbeat("c1", 42_000L).positionMs();
+        assertTrue(playing >= 42_000 && playing < 43_000, String.valueOf(playing));
+        
+        assertEquals(10_000, service.pause("c1", 10_000L).positionMs());
+        assertEquals(12_000, service.heartbeat("c1", 12_000L).positionMs());
+    }
+    
+    @Test
+    void reconnectResumesWhereTheListenerLeftOff() {
+        service.play("c1", "user", "m1", "s1");
+        service.pause("c1", 30_000L);
+        service.close("c1");
+        
+        PlaybackSession reconnected = service.play("c2", "user", "m1", "s2");
+        assertEquals(PlaybackState.PLAYING, reconnected.state());
+        assertEquals(30_000, reconnected.positionMs());
+        assertEquals("s2", reconnected.sessionId());
+    }
+    
+    @Test
+    void stoppedMediaStartsOver() {
+        service.play("c1", "user", "m1", "s1");
+        service.stop("c1", 9_000L);
+        
+        assertEquals(0, service.play("c2", "user", "m1", "s2").positionMs());
+    }
+    
+    @Test
+    void flushWritesTheLatestPositionPerListenerAndMedia() {
+        service.play("c1", "user", "m1", "s1");
+        service.pause("c1", 1_000L);
+        service.heartbeat("c1", 2_000L);
+        service.play("c2", "anonymous", "m1", "s2");
+        service.flush();
+        
+        assertEquals(1, rows());
+        assertEquals(2_000L, storedPosition("user", "m1"));
+        
+        // The second flush updates the same row
+        service.heartbeat("c1", 7_000L);
+        service.close("c1");
+        service.flush();
+        assertEquals(1, rows());
+        assertEquals(7_000L, storedPosition("user", "m1"));
+        
+        // A fresh node reads it back from the database
+        PlaybackSessionServiceImpl restarted = new PlaybackSessionServiceImpl(jdbcTemplate, 16, 90);
+        PlaybackSession resumed = restarted.getResumePosition("user", "m1").orElseThrow();
+        assertEquals(PlaybackState.PAUSED, resumed.state());
+        assertEquals(7_000, resumed.positionMs());
+    }
+    
+    private int rows() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM playback_position", Integer.class);
+    }
+    
+    private long storedPosition(String userId, String mediaId) {
+        return jdbcTemplate.queryForObject("SELECT position_ms FROM playback_position WHERE user_id = ? AND media_id = ?",
+                Long.class, userId, mediaId);
+    }
+    
+    private static JdbcTemplate database() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:playback-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        return new JdbcTemplate(dataSource);
+    }
+}
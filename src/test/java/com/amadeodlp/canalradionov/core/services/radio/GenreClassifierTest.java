@@ -0,0 +1,46 @@
+package com.amadeodlp.canalradionov.core.services.radio;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GenreClassifierTest {
+    
+    private final GenreClassifier classifier = GenreClassifier.defaults();
+    
+    @Test
+    void keywordsMatchAnywhereInTheTag() {
+        assertEquals(List.of("pop", "80s"), classifier.genres(classifier.classify("80s Pop")));
+        assertEquals(List.of("soul"), classifier.genres(classifier.classify("R&B")));
+        assertTrue(classifier.isMusic("rockabilly"));
+        assertFalse(classifier.isMusic("news"));
+        assertFalse(classifier.isMusic(""));
+    }
+    
+    @Test
+    void matchesCountForParentGenres() {
+        assertEquals(List.of("rock", "punk"), classifier.genres(classifier.classify("Punk Rock")));
+        assertEquals(List.of("rock", "metal"), classifier.genres(classifier.classify("metalcore")));
+        assertEquals(List.of("electronic", "house"), classifier.genres(classifier.classify("deep house")));
+    }
+    
+    @Test
+    void overlappingKeywordsAreAllFound() {
+        Map<String, List<String>> taxonomy = new LinkedHashMap<>();
+        taxonomy.put("latin", List.of("latin", "salsa"));
+        taxonomy.put("salsa dura", List.of("salsa dura"));
+        taxonomy.put("dub", List.of("dub"));
+        GenreClassifier custom = GenreClassifier.compile(taxonomy, Map.of("salsa dura", "latin"));
+        
+        assertEquals(List.of("latin", "salsa dura"), custom.genres(custom.classify("SALSA DURA")));
+        assertEquals(List.of("latin", "dub"), custom.genres(custom.classify("latin dubstep")));
+        assertEquals(1, custom.genreId("Salsa Dura"));
+        assertEquals(-1, custom.genreId("pop"));
+    }
+}
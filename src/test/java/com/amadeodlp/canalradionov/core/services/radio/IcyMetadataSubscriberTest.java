@@ -0,0 +1,79 @@
+package com.amadeodlp.canalradionov.core.services.radio;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IcyMetadataSubscriberTest {
+    
+    @Test
+    void skipsAudioAndEmptyBlocksToTheFirstTitle() {
+        byte[] stream = icyStream(100, "", "StreamTitle='Guns N' Roses - Patience';StreamUrl='';", "StreamTitle='Later';");
+        
+        // Chunk boundaries must not matter, down to one byte at a time
+        for (int chunk : new int[] {1, 7, 100, stream.length}) {
+            IcyMetadataSubscriber subscriber = new IcyMetadataSubscriber(100, 3);
+            boolean[] cancelled = feed(subscriber, stream, chunk);
+            assertEquals("Guns N' Roses - Patience", subscriber.getBody().toCompletableFuture().join());
+            assertTrue(cancelled[0]);
+        }
+    }
+    
+    @Test
+    void givesUpAfterMaxBlocks() {
+        IcyMetadataSubscriber subscriber = new IcyMetadataSubscriber(50, 2);
+        boolean[] cancelled = feed(subscriber, icyStream(50, "", "", "StreamTitle='Too late';"), 13);
+        assertNull(subscriber.getBody().toCompletableFuture().join());
+        assertTrue(cancelled[0]);
+    }
+    
+    @Test
+    void decodesUtf8OrFallsBackToLatin1() {
+        assertEquals("Ol\u00e9", IcyMetadataSubscriber.decode("Ol\u00e9\0\0".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("Ol\u00e9", IcyMetadataSubscriber.decode("Ol\u00e9".getBytes(StandardCharsets.ISO_8859_1)));
+        assertNull(IcyMetadataSubscriber.streamTitle("StreamTitle='';"));
+        assertNull(IcyMetadataSubscriber.streamTitle("StreamUrl='x';"));
+    }
+    
+    private static byte[] icyStream(int metaInt, String... blocks) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String block : blocks) {
+            out.writeBytes(new byte[metaInt]);
+            byte[] text = block.getBytes(StandardCharsets.UTF_8);
+            int units = (text.length + 15) / 16;
+            out.write(units);
+            out.writeBytes(text);
+            out.writeBytes(new byte[units * 16 - text.length]);
+        }
+        return out.toByteArray();
+    }
+    
+    private static boolean[] feed(IcyMetadataSubscriber subscriber, byte[] stream, int chunk) {
+        boolean[] cancelled = new boolean[1];
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+            
+            @Override
+            public void cancel() {
+                cancelled[0] = true;
+            }
+        });
+        for (int offset = 0; offset < stream.length && !cancelled[0]; offset += chunk) {
+            subscriber.onNext(List.of(ByteBuffer.wrap(stream, offset, Math.min(chunk, stream.length - offset))));
+        }
+        if (!cancelled[0]) {
+            subscriber.onComplete();
+        }
+        return cancelled;
+    }
+}
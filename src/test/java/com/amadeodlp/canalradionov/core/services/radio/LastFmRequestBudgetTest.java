@@ -0,0 +1,40 @@
+package com.amadeodlp.canalradionov.core.services.radio;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LastFmRequestBudgetTest {
+    
+    @Test
+    void burstIsAvailableAtOnceThenCallersWait() throws InterruptedException {
+        LastFmRequestBudget budget = new LastFmRequestBudget(0.001, 2);
+        
+        assertEquals(0, budget.tryAcquire());
+        assertEquals(0, budget.tryAcquire());
+        assertTrue(budget.tryAcquire() > 0);
+        assertFalse(budget.acquire(10, TimeUnit.MILLISECONDS));
+    }
+    
+    @Test
+    void tokensRefillAtTheConfiguredRate() throws InterruptedException {
+        LastFmRequestBudget budget = new LastFmRequestBudget(100, 1);
+        assertEquals(0, budget.tryAcquire());
+        
+        long started = System.nanoTime();
+        assertTrue(budget.acquire(1, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(5));
+    }
+    
+    @Test
+    void unboundedWaitDoesNotOverflow() throws InterruptedException {
+        LastFmRequestBudget budget = new LastFmRequestBudget(100, 1);
+        assertEquals(0, budget.tryAcquire());
+        
+        assertTrue(budget.acquire(Long.MAX_VALUE, TimeUnit.NANOSECONDS));
+    }
+}
@@ -0,0 +1,22 @@
+package com.amadeodlp.canalradionov.core.services.radio;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class LastFmServiceTest {
+    
+    @Test
+    void trackKeysIgnoreCaseSpacingAndUnicodeForms() {
+        String key = LastFmService.trackKey("Daft Punk", "One More Time");
+        assertEquals(key, LastFmService.trackKey("daft punk ", "one  more\ttime"));
+        assertEquals(key, LastFmService.trackKey("\uFF24aft Punk", "One More Time"));
+        assertEquals(LastFmService.trackKey("Beyonc\u00e9", "Halo"), LastFmService.trackKey("Beyonce\u0301", "Halo"));
+    }
+    
+    @Test
+    void artistAndTrackStaySeparate() {
+        assertNotEquals(LastFmService.trackKey("A - B", "C"), LastFmService.trackKey("A", "B - C"));
+    }
+}
@@ -0,0 +1,31 @@
+package com.amadeodlp.canalradionov.core.services.radio;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PublicHttpTest {
+    
+    @Test
+    void internalAddressesAreNotPublic() throws UnknownHostException {
+        for (String address : new String[] {"127.0.0.1", "10.1.2.3", "172.16.0.1", "192.168.1.1", "169.254.169.254",
+                "0.0.0.0", "100.64.1.1", "224.0.0.1", "::1", "fd00::1", "fe80::1", "::ffff:127.0.0.1"}) {
+            assertFalse(PublicHttp.isPublic(InetAddress.getByName(address)), address);
+        }
+        assertTrue(PublicHttp.isPublic(InetAddress.getByName("8.8.8.8")));
+        assertTrue(PublicHttp.isPublic(InetAddress.getByName("2001:4860:4860::8888")));
+    }
+    
+    @Test
+    void onlyPublicHttpUrlsAreAllowed() {
+        assertThrows(IllegalArgumentException.class, () -> PublicHttp.requirePublic(URI.create("http://127.0.0.1:8080/admin")));
+        assertThrows(IllegalArgumentException.class, () -> PublicHttp.requirePublic(URI.create("http://[::1]/")));
+        assertThrows(IllegalArgumentException.class, () -> PublicHttp.requirePublic(URI.create("file:///etc/passwd")));
+    }
+}
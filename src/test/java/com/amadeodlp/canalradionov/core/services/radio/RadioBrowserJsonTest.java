@@ -0,0 +1,72 @@
+package com.amadeodlp.canalradionov.core.services.radio;
+
+import com.amadeodlp.canalradionov.core.model.radio.RadioStationDto;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RadioBrowserJsonTest {
+    
+    @Test
+    void stationsAreMappedFromUpstreamFieldNames() throws IOException {
+        String json = """
+                [{"changeuuid":"x","stationuuid":"a1","name":" Jazz FM ","url":"http://jazz/stream",
+                  "url_resolved":"https://jazz/live","favicon":"","tags":"Jazz, Smooth Jazz,",
+                  "countrycode":"gb","language":"english","codec":"MP3","bitrate":128,
+                  "lastcheckok":1,"geo_lat":null,"extra":{"nested":[1,2]}},
+                 {"stationuuid":"b2","name":"Talk","url":"http://talk","url_resolved":"","tags":"",
+                  "lastcheckok":0}]
+                """;
+        
+        List<RadioStationDto> stations = RadioBrowserJson.readStationDtos(stream(json));
+        
+        assertEquals(2, stations.size());
+        RadioStationDto jazz = stations.get(0);
+        assertEquals("a1", jazz.stationId());
+        assertEquals("Jazz FM", jazz.name());
+        assertEquals("https://jazz/live", jazz.streamUrl());
+        assertNull(jazz.logoUrl());
+        assertEquals("GB", jazz.countryCode());
+        assertEquals("jazz, smooth jazz", jazz.genres());
+        assertEquals(128, jazz.bitrate());
+        assertTrue(jazz.isSecure());
+        assertTrue(jazz.isOnline());
+        
+        RadioStationDto talk = stations.get(1);
+        assertEquals("http://talk", talk.streamUrl());
+        assertEquals("", talk.genres());
+        assertFalse(talk.isSecure());
+        assertFalse(talk.isOnline());
+    }
+    
+    @Test
+    void tagsAreFilteredWhileReading() throws IOException {
+        String json = """
+                [{"name":"rock","stationcount":120},{"name":"news","stationcount":500},
+                 {"name":"jazz","stationcount":3},{"name":"pop","stationcount":"40"}]
+                """;
+        
+        List<String> names = RadioBrowserJson.readTagNames(stream(json), 5, GenreClassifier.defaults()::isMusic);
+        
+        assertEquals(List.of("rock", "pop"), names);
+    }
+    
+    @Test
+    void nonArrayResponseIsRejected() {
+        assertThrows(IOException.class, () -> RadioBrowserJson.readStationDtos(stream("{\"error\":\"busy\"}")));
+    }
+    
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,108 @@
+package com.amadeodlp.canalradionov.core.services.radio;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives the mirror pool against local stub servers
+ */
+class RadioBrowserMirrorsTest {
+    
+    private final RestTemplate restTemplate = new RestTemplate();
+    private final List<HttpServer> servers = new ArrayList<>();
+    private RadioBrowserMirrors mirrors;
+    
+    @AfterEach
+    void tearDown() {
+        if (mirrors != null) {
+            mirrors.shutdown();
+        }
+        servers.forEach(server -> server.stop(0));
+    }
+    
+    @Test
+    void slowMirrorIsHedged() throws IOException {
+        String slow = stub(1000, 200, "slow");
+        String fast = stub(0, 200, "fast");
+        mirrors = pool(List.of(slow, fast), 5);
+        
+        for (int i = 0; i < 8; i++) {
+            long started = System.nanoTime();
+            String body = mirrors.execute(baseUrl -> restTemplate.getForObject(baseUrl + "/ping", String.class));
+            long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+            
+            assertEquals("fast", body);
+            assertTrue(elapsedMs < 800, "Request took " + elapsedMs + " ms despite hedging");
+        }
+    }
+    
+    @Test
+    void failingMirrorIsEjected() throws IOException {
+        String broken = stub(0, 500, "broken");
+        String healthy = stub(0, 200, "ok");
+        mirrors = pool(List.of(broken, healthy), 2);
+        
+        for (int i = 0; i < 10; i++) {
+            assertEquals("ok", mirrors.execute(baseUrl -> restTemplate.getForObject(baseUrl + "/ping", String.class)));
+        }
+        
+        assertEquals(List.of(healthy), mirrors.healthyMirrors());
+    }
+    
+    @Test
+    void lastMirrorIsNeverEjected() throws IOException {
+        String broken = stub(0, 500, "broken");
+        mirrors = pool(List.of(broken), 1);
+        
+        for (int i = 0; i < 3; i++) {
+            try {
+                mirrors.execute(baseUrl -> restTemplate.getForObject(baseUrl + "/ping", String.class));
+            } catch (RuntimeException expected) {
+                // The only mirror is down
+            }
+        }
+        
+        assertEquals(List.of(broken), mirrors.healthyMirrors());
+    }
+    
+    private RadioBrowserMirrors pool(List<String> urls, int failureThreshold) {
+        return new RadioBrowserMirrors(urls, "unused.invalid", urls.get(0), Duration.ofMillis(20),
+                Duration.ofMillis(100), failureThreshold, Duration.ofSeconds(60), 8);
+    }
+    
+    private String stub(long delayMs, int status, String body) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/json/ping", exchange -> {
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        servers.add(server);
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/json";
+    }
+}
@@ -0,0 +1,46 @@
+package com.amadeodlp.canalradionov.core.services.radio;
+
+import com.amadeodlp.canalradionov.core.model.radio.RadioFilter;
+import com.amadeodlp.canalradionov.core.model.radio.RadioStationDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RadioStationIndexTest {
+    
+    private final RadioStationIndex index = RadioStationIndex.build(catalog(64), GenreClassifier.defaults());
+    
+    @Test
+    void negativeOffsetStartsAtTheFirstMatch() {
+        // Two French stations out of 64 take the sparse path, which indexes by offset directly
+        for (boolean reverse : new boolean[] {true, false}) {
+            List<RadioStationDto> page = index.search(filter("FR", 10, -5, reverse));
+            assertEquals(2, page.size());
+        }
+        
+        // Most stations take the path that walks the whole order
+        assertEquals(10, index.search(filter(null, 10, -1, true)).size());
+    }
+    
+    @Test
+    void limitIsClampedToAtLeastOne() {
+        assertEquals(1, index.search(filter(null, -1, 0, true)).size());
+        assertEquals(64, index.search(filter(null, Integer.MAX_VALUE, 0, true)).size());
+    }
+    
+    private static RadioFilter filter(String countryCode, Integer limit, Integer offset, boolean reverse) {
+        return new RadioFilter(null, null, countryCode, null, null, true, true, limit, offset, "votes", reverse);
+    }
+    
+    private static StationCatalog catalog(int size) {
+        StationCatalog.Builder builder = StationCatalog.builder();
+        for (int i = 0; i < size; i++) {
+            builder.add("id-" + i, "Station " + i, "http://stream/" + i, null, List.of("pop"),
+                    i < 2 ? "France" : "Germany", i < 2 ? "FR" : "DE", "english", "MP3", 128,
+                    false, i, i, 0, true, false);
+        }
+        return builder.build();
+    }
+}
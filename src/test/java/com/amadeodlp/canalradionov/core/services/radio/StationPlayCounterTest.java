@@ -0,0 +1,78 @@
+package com.amadeodlp.canalradionov.core.services.radio;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StationPlayCounterTest {
+    
+    private final JdbcTemplate jdbcTemplate = database();
+    private final StationPlayCounter counter = counter();
+    
+    @Test
+    void flushAddsDedupedPlaysToTheStoredTotals() {
+        assertTrue(counter.record("a", "l1"));
+        assertTrue(counter.record("a", "l2"));
+        assertTrue(counter.record("b", "l1"));
+        assertFalse(counter.record("a", "l1"));
+        counter.flush();
+        
+        assertEquals(2, rows());
+        assertEquals(2L, storedPlays("a"));
+        assertEquals(1L, storedPlays("b"));
+        assertEquals(2L, counter.totalPlays("a"));
+        
+        // The MERGE adds to the existing row
+        counter.record("a", "l3");
+        counter.flush();
+        assertEquals(2, rows());
+        assertEquals(3L, storedPlays("a"));
+        assertEquals(3L, counter.totalPlays("a"));
+        
+        StationPlayCounter restarted = counter();
+        restarted.loadTotals();
+        assertEquals(3L, restarted.totalPlays("a"));
+        assertEquals(1L, restarted.totalPlays("b"));
+    }
+    
+    @Test
+    void idleStationsAreForgottenAndCountedAgainOnTheirNextPlay() {
+        counter.record("a", "l1");
+        counter.flush();
+        // Nothing new, so the station is dropped from the pending plays
+        counter.flush();
+        
+        counter.record("a", "l2");
+        counter.flush();
+        assertEquals(2L, storedPlays("a"));
+        assertEquals(2L, counter.totalPlays("a"));
+    }
+    
+    private StationPlayCounter counter() {
+        return new StationPlayCounter(jdbcTemplate, null, null, "test", 30, 1_000, 20);
+    }
+    
+    private int rows() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM station_plays", Integer.class);
+    }
+    
+    private long storedPlays(String stationId) {
+        return jdbcTemplate.queryForObject("SELECT play_count FROM station_plays WHERE station_id = ?",
+                Long.class, stationId);
+    }
+    
+    private static JdbcTemplate database() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:plays-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        return new JdbcTemplate(dataSource);
+    }
+}
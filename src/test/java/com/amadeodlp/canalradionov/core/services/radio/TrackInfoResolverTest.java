@@ -0,0 +1,130 @@
+package com.amadeodlp.canalradionov.core.services.radio;
+
+import com.amadeodlp.canalradionov.core.exceptions.UpstreamUnavailableException;
+import com.amadeodlp.canalradionov.core.model.lastfm.CachedTrack;
+import com.amadeodlp.canalradionov.core.model.lastfm.TrackInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrackInfoResolverTest {
+    
+    // Tracks in the order Last.fm was asked for them; "blocker" holds the only worker until released
+    private final List<String> fetched = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch blockerStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseBlocker = new CountDownLatch(1);
+    
+    private final LastFmService lastFmService = new LastFmService(null, new LastFmRequestBudget(1000, 100),
+            new ConcurrentMapCacheManager("lastFm", "lastFmWiki"), "test", 0) {
+        @Override
+        public CachedTrack peekTrackInfo(String artist, String trackName, boolean withWiki) {
+            return CachedTrack.miss();
+        }
+        
+        @Override
+        public Optional<TrackInfo> getTrackInfo(String artist, String trackName) {
+            fetched.add(trackName);
+            if (trackName.equals("blocker")) {
+                blockerStarted.countDown();
+                try {
+                    releaseBlocker.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return Optional.empty();
+        }
+    };
+    
+    private TrackInfoResolver resolver;
+    
+    @AfterEach
+    void shutdown() {
+        releaseBlocker.countDown();
+        resolver.shutdown();
+    }
+    
+    @Test
+    void interactiveLookupsGoFirstAndPrefetchesArePromoted() throws Exception {
+        startResolver(100);
+        CompletableFuture<?> blocker = occupyWorker();
+        
+        resolver.prefetch("artist", "prefetch");
+        resolver.prefetch("artist", "promoted");
+        CompletableFuture<?> batch = resolver.lookup("artist", "batch", TrackInfoResolver.Priority.BATCH);
+        CompletableFuture<?> interactive = resolver.lookup("artist", "interactive", TrackInfoResolver.Priority.INTERACTIVE);
+        CompletableFuture<?> promoted = resolver.lookup("artist", "promoted", TrackInfoResolver.Priority.INTERACTIVE);
+        
+        releaseBlocker.countDown();
+        CompletableFuture.allOf(blocker, batch, interactive, promoted).get(5, TimeUnit.SECONDS);
+        waitForFetches(5);
+        
+        assertEquals(List.of("blocker", "interactive", "promoted", "batch", "prefetch"), fetched);
+    }
+    
+    @Test
+    void concurrentRequestsForOneTrackShareALookup() throws Exception {
+        startResolver(100);
+        CompletableFuture<?> blocker = occupyWorker();
+        
+        CompletableFuture<?> first = resolver.lookup("Artist", "Track", TrackInfoResolver.Priority.BATCH);
+        CompletableFuture<?> second = resolver.lookup("artist ", "track", TrackInfoResolver.Priority.INTERACTIVE);
+        resolver.prefetch("ARTIST", "TRACK");
+        
+        releaseBlocker.countDown();
+        CompletableFuture.allOf(blocker, first, second).get(5, TimeUnit.SECONDS);
+        
+        assertEquals(List.of("blocker", "Track"), fetched);
+    }
+    
+    @Test
+    void fullQueueDropsBackgroundLookupsAndRefusesUsersLater() throws Exception {
+        startResolver(2);
+        occupyWorker();
+        resolver.lookup("artist", "queued", TrackInfoResolver.Priority.BATCH);
+        
+        // The blocker and one queued lookup fill the background share
+        assertEquals(Optional.empty(), resolver.lookup("artist", "dropped", TrackInfoResolver.Priority.BATCH).get(1, TimeUnit.SECONDS));
+        
+        resolver.lookup("artist", "first", TrackInfoResolver.Priority.INTERACTIVE);
+        resolver.lookup("artist", "second", TrackInfoResolver.Priority.INTERACTIVE);
+        ExecutionException refused = assertThrows(ExecutionException.class,
+                () -> resolver.lookup("artist", "refused", TrackInfoResolver.Priority.INTERACTIVE).get(1, TimeUnit.SECONDS));
+        assertInstanceOf(UpstreamUnavailableException.class, refused.getCause());
+        assertFalse(fetched.contains("dropped"));
+    }
+    
+    private void startResolver(int maxQueued) {
+        resolver = new TrackInfoResolver(lastFmService, new SimpleMeterRegistry(), 1, 5000, maxQueued, 50);
+        resolver.start();
+    }
+    
+    private CompletableFuture<?> occupyWorker() throws InterruptedException {
+        CompletableFuture<?> blocker = resolver.lookup("artist", "blocker", TrackInfoResolver.Priority.BATCH);
+        assertTrue(blockerStarted.await(5, TimeUnit.SECONDS));
+        return blocker;
+    }
+    
+    private void waitForFetches(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (fetched.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.amadeodlp.canalradionov.core.services.radio;
+
+import com.amadeodlp.canalradionov.core.model.lastfm.TrackInfo;
+import com.amadeodlp.canalradionov.core.model.lastfm.TrackSearchPage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrackSearchServiceTest {
+    
+    // Last.fm's answer three tracks per page; "c" comes back on page two, and page three is the last
+    private static final List<List<String>> UPSTREAM = List.of(List.of("a", "b", "c"), List.of("c", "d", "e"), List.of("f"));
+    
+    private final Map<Integer, AtomicInteger> fetches = new ConcurrentHashMap<>();
+    private final CountDownLatch secondPageStarted = new CountDownLatch(1);
+    private volatile CountDownLatch secondPageGate = new CountDownLatch(0);
+    
+    private final LastFmService lastFmService = new LastFmService(null, new LastFmRequestBudget(1000, 100),
+            new ConcurrentMapCacheManager("lastFm", "lastFmWiki"), "test", 0) {
+        @Override
+        public List<TrackInfo> searchPage(String searchTerm, int page, int limit) {
+            fetches.computeIfAbsent(page, key -> new AtomicInteger()).incrementAndGet();
+            if (page == 2) {
+                secondPageStarted.countDown();
+                try {
+                    secondPageGate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return page <= UPSTREAM.size() ? UPSTREAM.get(page - 1).stream().map(TrackSearchServiceTest::track).toList() : List.of();
+        }
+    };
+    
+    private final TrackSearchService service = new TrackSearchService(lastFmService, 3, 10, 50, 10, 100);
+    
+    @AfterEach
+    void shutdown() {
+        secondPageGate.countDown();
+        service.shutdown();
+    }
+    
+    @Test
+    void pagesSliceTheMergedResultsWithoutDuplicates() {
+        TrackSearchPage first = service.search("query", 1, 2);
+        assertEquals(List.of("a", "b"), names(first));
+        assertTrue(first.hasMore());
+        
+        assertEquals(List.of("c", "d"), names(service.search("Query ", 2, 2)));
+        
+        TrackSearchPage last = service.search("query", 3, 2);
+        assertEquals(List.of("e", "f"), names(last));
+        assertFalse(last.hasMore());
+        
+        // Each upstream page was fetched once, whether by a read or a prefetch
+        assertEquals(3, fetches.size());
+        fetches.values().forEach(count -> assertEquals(1, count.get()));
+    }
+    
+    @Test
+    void nextPageWaitsForThePrefetchInsteadOfRepeatingIt() throws Exception {
+        secondPageGate = new CountDownLatch(1);
+        service.search("query", 1, 3);
+        assertTrue(secondPageStarted.await(5, TimeUnit.SECONDS));
+        
+        CompletableFuture<TrackSearchPage> next = CompletableFuture.supplyAsync(() -> service.search("query", 2, 3));
+        Thread.sleep(50);
+        secondPageGate.countDown();
+        
+        assertEquals(List.of("d", "e", "f"), names(next.get(5, TimeUnit.SECONDS)));
+        assertEquals(1, fetches.get(2).get());
+    }
+    
+    @Test
+    void pagesPastTheUpstreamLimitAreEmptyWithoutFetching() {
+        // Ten upstream pages of three tracks
+        assertEquals(15, service.maxPage(2));
+        
+        TrackSearchPage page = service.search("query", Integer.MAX_VALUE, 50);
+        assertTrue(page.tracks().isEmpty());
+        assertFalse(page.hasMore());
+        assertTrue(fetches.isEmpty());
+    }
+    
+    private static TrackInfo track(String name) {
+        return new TrackInfo(name, "artist", "", "", "", 0, 0, "", false, new String[0]);
+    }
+    
+    private static List<String> names(TrackSearchPage page) {
+        return page.tracks().stream().map(TrackInfo::name).toList();
+    }
+}
@@ -0,0 +1,248 @@
+package com.amadeodlp.canalradionov.core.services.transcoding;
+
+import com.amadeodlp.canalradionov.core.model.media.Episode;
+import com.amadeodlp.canalradionov.core.model.transcoding.BitrateLadder;
+import com.amadeodlp.canalradionov.core.model.transcoding.Rendition;
+import com.amadeodlp.canalradionov.core.model.transcoding.TranscodeStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+class TranscodingServiceImplTest {
+    
+    private static final int MAX_LIVE = 2;
+    
+    @TempDir
+    Path tempDir;
+    
+    private final S3Client s3Client = mock(S3Client.class);
+    private final FakeEncoder encoder = new FakeEncoder();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private TranscodingServiceImpl service;
+    
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.shutdown();
+        }
+        executor.shutdownNow();
+    }
+    
+    @Test
+    void failedDownloadFailsTheLadderAndRemovesTheJobDirectory() throws Exception {
+        doThrow(SdkClientException.create("S3 is down"))
+                .when(s3Client).getObject(any(GetObjectRequest.class), any(ResponseTransformer.class));
+        
+        service().transcodeEpisode("show", episode());
+        BitrateLadder ladder = awaitSettled();
+        
+        assertTrue(ladder.renditions().stream().allMatch(r -> r.status() == TranscodeStatus.FAILED));
+        assertEquals(0, jobDirectories());
+    }
+    
+    @Test
+    void failedEncodeFailsTheLadderAndRemovesTheJobDirectory() throws Exception {
+        encoder.failEncodes = true;
+        
+        service().transcodeEpisode("show", episode());
+        BitrateLadder ladder = awaitSettled();
+        
+        assertTrue(ladder.renditions().stream().allMatch(r -> r.status() == TranscodeStatus.FAILED));
+        assertEquals(0, jobDirectories());
+    }
+    
+    @Test
+    void liveBroadcastsStopAtTheLimitAndDuplicatesAreIgnored() throws Exception {
+        TranscodingServiceImpl service = service();
+        service.startLiveLadder("a");
+        service.startLiveLadder("b");
+        assertThrows(IllegalStateException.class, () -> service.startLiveLadder("c"));
+        drainExecutor();
+        assertEquals(2 * 3, encoder.started.size());
+        
+        // A second start for a running broadcast keeps the first ladder and its encoders
+        assertEquals("a", service.startLiveLadder("a").sourceId());
+        drainExecutor();
+        assertEquals(2 * 3, encoder.started.size());
+        assertTrue(encoder.started.stream().allMatch(Process::isAlive));
+        
+        service.stopLiveLadder("a");
+        assertEquals(3, encoder.started.stream().filter(process -> !process.isAlive()).count());
+        
+        service.startLiveLadder("c");
+        drainExecutor();
+        assertEquals(3 * 3, encoder.started.size());
+    }
+    
+    @Test
+    void concurrentStartsDoNotPassTheLimit() throws Exception {
+        TranscodingServiceImpl service = service();
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        CountDownLatch go = new CountDownLatch(1);
+        AtomicInteger started = new AtomicInteger();
+        try {
+            List<Future<?>> calls = new CopyOnWriteArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                String broadcastId = "broadcast-" + i;
+                calls.add(callers.submit(() -> {
+                    go.await();
+                    try {
+                        service.startLiveLadder(broadcastId);
+                        started.incrementAndGet();
+                    } catch (IllegalStateException e) {
+                        // Over the limit
+                    }
+                    return null;
+                }));
+            }
+            go.countDown();
+            for (Future<?> call : calls) {
+                call.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        
+        assertEquals(MAX_LIVE, started.get());
+    }
+    
+    private TranscodingServiceImpl service() {
+        service = new TranscodingServiceImpl(s3Client, encoder, executor, "bucket", "cdn.example.com",
+                new int[] {64, 32, 128}, tempDir.resolve("work").toString(), "http://ingest/%s", MAX_LIVE);
+        return service;
+    }
+    
+    private BitrateLadder awaitSettled() throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            BitrateLadder ladder = service.getEpisodeLadder("show", "episode");
+            if (ladder.renditions().stream().map(Rendition::status)
+                    .noneMatch(status -> status == TranscodeStatus.PENDING || status == TranscodeStatus.RUNNING)) {
+                // Cleanup runs on the pool right after the last rung settles
+                drainExecutor();
+                return ladder;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Ladder did not settle");
+    }
+    
+    private void drainExecutor() throws Exception {
+        executor.submit(() -> { }).get(5, TimeUnit.SECONDS);
+    }
+    
+    private long jobDirectories() throws IOException {
+        Path workDir = tempDir.resolve("work");
+        if (!Files.isDirectory(workDir)) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.list(workDir)) {
+            return files.filter(path -> path.getFileName().toString().startsWith("job-")).count();
+        }
+    }
+    
+    private static Episode episode() {
+        return new Episode("episode", "Episode", "", "/media/episode.mp3", 60, LocalDateTime.now(), 0, "");
+    }
+    
+    private static final class FakeEncoder implements AudioEncoder {
+        final List<FakeProcess> started = new CopyOnWriteArrayList<>();
+        volatile boolean failEncodes;
+        
+        @Override
+        public void encode(Path source, Path targetDir, int bitrateKbps) throws IOException {
+            Files.createDirectories(targetDir);
+            if (failEncodes) {
+                throw new IOException("Encoder crashed at " + bitrateKbps + "k");
+            }
+        }
+        
+        @Override
+        public Process startLive(String sourceUrl, Path targetDir, int bitrateKbps) {
+            FakeProcess process = new FakeProcess();
+            started.add(process);
+            return process;
+        }
+        
+        @Override
+        public String codec() {
+            return "mp4a.40.2";
+        }
+    }
+    
+    private static final class FakeProcess extends Process {
+        private final CompletableFuture<Process> exit = new CompletableFuture<>();
+        
+        @Override
+        public OutputStream getOutputStream() {
+            return OutputStream.nullOutputStream();
+        }
+        
+        @Override
+        public InputStream getInputStream() {
+            return InputStream.nullInputStream();
+        }
+        
+        @Override
+        public InputStream getErrorStream() {
+            return InputStream.nullInputStream();
+        }
+        
+        @Override
+        public int waitFor() {
+            exit.join();
+            return 0;
+        }
+        
+        @Override
+        public int exitValue() {
+            if (!exit.isDone()) {
+                throw new IllegalThreadStateException();
+            }
+            return 0;
+        }
+        
+        @Override
+        public boolean isAlive() {
+            return !exit.isDone();
+        }
+        
+        @Override
+        public void destroy() {
+            exit.complete(this);
+        }
+        
+        @Override
+        public CompletableFuture<Process> onExit() {
+            return exit;
+        }
+    }
+}